@@ -4,4 +4,5 @@ module app {
     requires com.miglayout.swing;
     requires image;
     requires security;
+    requires engine;
 }
\ No newline at end of file
@@ -1,33 +1,70 @@
 package org.example.catpoint.app.application;
 
 import net.miginfocom.swing.MigLayout;
+import org.example.catpoint.engine.EngineServer;
+import org.example.catpoint.engine.RemoteSecurityService;
+import org.example.catpoint.security.application.CoalescingStatusDispatcher;
+import org.example.catpoint.security.data.CoalescingSecurityRepository;
+import org.example.catpoint.security.data.EventLogSecurityRepositoryImpl;
 import org.example.catpoint.security.data.PretendDatabaseSecurityRepositoryImpl;
 import org.example.catpoint.security.data.SecurityRepository;
+import org.example.catpoint.security.metrics.MetricsRegistry;
+import org.example.catpoint.image.service.AwsImageService;
+import org.example.catpoint.image.service.CachingImageService;
 import org.example.catpoint.image.service.FakeImageService;
+import org.example.catpoint.image.service.ImageService;
 import org.example.catpoint.security.service.SecurityService;
 
 import javax.swing.*;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
+import java.time.Duration;
 
 /**
  * This is the primary JFrame for the application that contains all the top-level JPanels.
  *
  * We're not using any dependency injection framework, so this class also handles constructing
  * all our dependencies and providing them to other classes as necessary.
+ *
+ * The image service is chosen with the catpoint.imageService system property: "fake" (the
+ * default) or "aws" for Rekognition. Setting catpoint.imageBatchMillis collects camera frames
+ * for up to that many milliseconds and classifies them in batches.
+ *
+ * State is kept in user preferences unless the catpoint.dataDir system property names a
+ * directory for an event log, which is needed for large numbers of sensors. If the
+ * catpoint.engine property gives the host:port of a headless engine, the app is a console for
+ * that engine instead and keeps no state of its own.
+ *
+ * Latency histograms and counters are published over JMX as org.example.catpoint:type=Metrics,name="app".
  */
 public class CatpointGui extends JFrame {
-    private SecurityRepository securityRepository = new PretendDatabaseSecurityRepositoryImpl();
-    private FakeImageService imageService = new FakeImageService();
-    private SecurityService securityService = new SecurityService(securityRepository, imageService);
-    private DisplayPanel displayPanel = new DisplayPanel(securityService);
+    private ImageService imageService = new CachingImageService(createImageService());
+    private Closeable backend;
+    private SecurityService securityService = createSecurityService();
+    private CoalescingStatusDispatcher statusDispatcher = createStatusDispatcher(securityService);
+    private DisplayPanel displayPanel = new DisplayPanel(securityService, statusDispatcher);
     private ControlPanel controlPanel = new ControlPanel(securityService);
-    private SensorPanel sensorPanel = new SensorPanel(securityService);
-    private ImagePanel imagePanel = new ImagePanel(securityService);
+    private SensorPanel sensorPanel = new SensorPanel(securityService, statusDispatcher);
+    private ImagePanel imagePanel = new ImagePanel(securityService, statusDispatcher);
 
     public CatpointGui() {
         setLocation(100, 100);
         setSize(600, 850);
         setTitle("Very Secure App");
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+        MetricsRegistry.getDefault().registerMBean("app");
+
+        //write out any buffered repository changes, or disconnect from the engine, before the JVM exits
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                backend.close();
+            } catch (IOException ioe) {
+                throw new UncheckedIOException(ioe);
+            }
+        }));
 
         JPanel mainPanel = new JPanel();
         mainPanel.setLayout(new MigLayout());
@@ -39,4 +76,58 @@ public class CatpointGui extends JFrame {
         getContentPane().add(mainPanel);
 
     }
+
+    /**
+     * Panels listen through a dispatcher that batches status changes onto the event dispatch
+     * thread, so bulk changes such as arming cost the UI one update.
+     */
+    private static CoalescingStatusDispatcher createStatusDispatcher(SecurityService securityService) {
+        CoalescingStatusDispatcher dispatcher = new CoalescingStatusDispatcher(SwingUtilities::invokeLater);
+        securityService.addStatusListener(dispatcher);
+        return dispatcher;
+    }
+
+    private SecurityService createSecurityService() {
+        String engine = System.getProperty("catpoint.engine");
+        if (engine != null) {
+            int separator = engine.lastIndexOf(':');
+            InetSocketAddress address = separator < 0 ? new InetSocketAddress(engine, EngineServer.DEFAULT_PORT)
+                    : new InetSocketAddress(engine.substring(0, separator), Integer.parseInt(engine.substring(separator + 1)));
+            try {
+                RemoteSecurityService remote = RemoteSecurityService.connect(address, imageService);
+                backend = remote;
+                return remote;
+            } catch (IOException ioe) {
+                throw new UncheckedIOException("Unable to connect to engine at " + engine, ioe);
+            }
+        }
+        CoalescingSecurityRepository repository = new CoalescingSecurityRepository(createSecurityRepository());
+        backend = repository;
+        Long imageBatchMillis = Long.getLong("catpoint.imageBatchMillis");
+        if (imageBatchMillis != null) {
+            return new SecurityService(repository, imageService, Duration.ofMillis(imageBatchMillis));
+        }
+        return new SecurityService(repository, imageService);
+    }
+
+    /**
+     * Preferences rewrite every sensor on each change, so many sensors need the event log instead.
+     * Sensors already kept in preferences are carried over the first time it is used.
+     */
+    private static SecurityRepository createSecurityRepository() {
+        String dataDir = System.getProperty("catpoint.dataDir");
+        if (dataDir == null) {
+            return new PretendDatabaseSecurityRepositoryImpl();
+        }
+        return EventLogSecurityRepositoryImpl.migrateFrom(PretendDatabaseSecurityRepositoryImpl::new, Path.of(dataDir));
+    }
+
+    private static ImageService createImageService() {
+        String choice = System.getProperty("catpoint.imageService", "fake");
+        return switch (choice) {
+            case "aws" -> new AwsImageService();
+            case "fake" -> new FakeImageService();
+            default -> throw new IllegalArgumentException("Unknown image service: " + choice);
+        };
+    }
 }
@@ -1,6 +1,7 @@
 package org.example.catpoint.app.application;
 
 import net.miginfocom.swing.MigLayout;
+import org.example.catpoint.security.application.CoalescingStatusDispatcher;
 import org.example.catpoint.security.application.StatusListener;
 import org.example.catpoint.security.data.AlarmStatus;
 import org.example.catpoint.security.service.SecurityService;
@@ -16,11 +17,11 @@ public class DisplayPanel extends JPanel implements StatusListener {
 
     private JLabel currentStatusLabel;
 
-    public DisplayPanel(SecurityService securityService) {
+    public DisplayPanel(SecurityService securityService, CoalescingStatusDispatcher statusDispatcher) {
         super();
         setLayout(new MigLayout());
 
-        securityService.addStatusListener(this);
+        statusDispatcher.addStatusListener(this);
 
         JLabel panelLabel = new JLabel("Very Secure Home Security");
         JLabel systemStatusLabel = new JLabel("System Status:");
@@ -1,10 +1,16 @@
 package org.example.catpoint.app.application;
 
 import net.miginfocom.swing.MigLayout;
+import org.example.catpoint.security.application.CoalescingStatusDispatcher;
 import org.example.catpoint.security.application.StatusListener;
+import org.example.catpoint.security.camera.CameraFeed;
+import org.example.catpoint.security.camera.DirectoryFrameSource;
+import org.example.catpoint.security.camera.FrameSource;
+import org.example.catpoint.security.camera.MjpegFrameSource;
 import org.example.catpoint.security.data.AlarmStatus;
 import org.example.catpoint.security.service.SecurityService;
 import org.example.catpoint.app.service.StyleService;
+import org.example.catpoint.app.service.ThumbnailService;
 
 import javax.imageio.ImageIO;
 import javax.swing.*;
@@ -12,66 +18,205 @@ import java.awt.*;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
-/** Panel containing the 'camera' output. Allows users to 'refresh' the camera
- * by uploading their own picture, and 'scan' the picture, sending it for image analysis
+/** Panel containing the 'camera' output. Allows users to connect a camera, either a folder the
+ * camera saves snapshots to or an MJPEG recording, whose frames are scanned continuously, or to
+ * upload their own picture and 'scan' it, sending it for image analysis.
+ *
+ * Camera frames are scanned at most catpoint.cameraFps times a second, 5 by default.
  */
 public class ImagePanel extends JPanel implements StatusListener {
     private SecurityService securityService;
 
     private JLabel cameraHeader;
-    private JLabel cameraLabel;
+    private CameraView cameraView;
+    private ThumbnailService thumbnailService;
     private BufferedImage currentCameraImage;
+    private CameraFeed cameraFeed;
+    private final AtomicReference<BufferedImage> pendingFrame = new AtomicReference<>();
+    private final AtomicBoolean scaling = new AtomicBoolean();
 
     private int IMAGE_WIDTH = 300;
     private int IMAGE_HEIGHT = 225;
 
-    public ImagePanel(SecurityService securityService) {
+    private static final int DEFAULT_CAMERA_FPS = 5;
+    private static final int CAMERA_DECODE_THREADS = 2;
+    private static final int CAMERA_DECODE_QUEUE_CAPACITY = 2;
+
+    public ImagePanel(SecurityService securityService, CoalescingStatusDispatcher statusDispatcher) {
         super();
         setLayout(new MigLayout());
         this.securityService = securityService;
-        securityService.addStatusListener(this);
+        statusDispatcher.addStatusListener(this);
 
         cameraHeader = new JLabel("Camera Feed");
         cameraHeader.setFont(StyleService.HEADING_FONT);
 
-        cameraLabel = new JLabel();
-        cameraLabel.setBackground(Color.WHITE);
-        cameraLabel.setPreferredSize(new Dimension(IMAGE_WIDTH, IMAGE_HEIGHT));
-        cameraLabel.setBorder(BorderFactory.createLineBorder(Color.DARK_GRAY));
+        thumbnailService = new ThumbnailService(IMAGE_WIDTH, IMAGE_HEIGHT);
+        cameraView = new CameraView();
+        cameraView.setBorder(BorderFactory.createLineBorder(Color.DARK_GRAY));
+        Insets border = cameraView.getInsets();
+        cameraView.setPreferredSize(new Dimension(IMAGE_WIDTH + border.left + border.right,
+                IMAGE_HEIGHT + border.top + border.bottom));
 
-        //button allowing users to select a file to be the current camera image
-        JButton addPictureButton = new JButton("Refresh Camera");
+        //button allowing users to connect a camera, or select a still picture as before
+        JButton addPictureButton = new JButton("Connect Camera");
         addPictureButton.addActionListener(e -> {
             JFileChooser chooser = new JFileChooser();
             chooser.setCurrentDirectory(new File("."));
-            chooser.setDialogTitle("Select Picture");
-            chooser.setFileSelectionMode(JFileChooser.FILES_ONLY);
+            chooser.setDialogTitle("Select Snapshot Folder, MJPEG Recording or Picture");
+            chooser.setFileSelectionMode(JFileChooser.FILES_AND_DIRECTORIES);
             if(chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) {
                 return;
             }
+            File selected = chooser.getSelectedFile();
             try {
-                currentCameraImage = ImageIO.read(chooser.getSelectedFile());
-                Image tmp = new ImageIcon(currentCameraImage).getImage();
-                cameraLabel.setIcon(new ImageIcon(tmp.getScaledInstance(IMAGE_WIDTH, IMAGE_HEIGHT, Image.SCALE_SMOOTH)));
-            } catch (IOException |NullPointerException ioe) {
+                if (selected.isDirectory()) {
+                    connectCamera(selected.getPath(), new DirectoryFrameSource(selected.toPath()));
+                } else if (isMjpeg(selected)) {
+                    connectCamera(selected.getPath(), MjpegFrameSource.ofFile(selected.toPath(), frameInterval()));
+                } else {
+                    disconnectCamera();
+                    loadPicture(selected);
+                }
+            } catch (IOException ioe) {
                 JOptionPane.showMessageDialog(null, "Invalid image selected.");
             }
-            repaint();
         });
 
-        //button that sends the image to the image service
+        //button that sends the image to the image service without blocking the UI while it scans
         JButton scanPictureButton = new JButton("Scan Picture");
         scanPictureButton.addActionListener(e -> {
-            securityService.processImage(currentCameraImage);
+            securityService.processImageAsync(currentCameraImage, SwingUtilities::invokeLater);
         });
 
         add(cameraHeader, "span 3, wrap");
-        add(cameraLabel, "span 3, wrap");
+        add(cameraView, "span 3, wrap");
         add(addPictureButton);
         add(scanPictureButton);
     }
 
+    private void connectCamera(String cameraId, FrameSource source) throws IOException {
+        disconnectCamera();
+        cameraFeed = new CameraFeed(cameraId, source, securityService, CAMERA_DECODE_THREADS, CAMERA_DECODE_QUEUE_CAPACITY,
+                frameInterval());
+        cameraFeed.addFrameListener(this::showFrame);
+        cameraFeed.start();
+    }
+
+    private void disconnectCamera() throws IOException {
+        if (cameraFeed != null) {
+            cameraFeed.close();
+            securityService.removeCamera(cameraFeed.getCameraId());
+            cameraFeed = null;
+        }
+    }
+
+    /**
+     * Decodes the picture in the background and shows it once it is ready.
+     */
+    private void loadPicture(File file) {
+        new SwingWorker<BufferedImage, Void>() {
+            @Override
+            protected BufferedImage doInBackground() throws IOException {
+                return ImageIO.read(file);
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    BufferedImage picture = get();
+                    if (picture == null) {
+                        throw new IOException("Unsupported image format");
+                    }
+                    showFrame(picture);
+                } catch (InterruptedException | ExecutionException | IOException e) {
+                    JOptionPane.showMessageDialog(null, "Invalid image selected.");
+                }
+            }
+        }.execute();
+    }
+
+    /**
+     * Shows the frame once it has been scaled in the background. May be called from any thread;
+     * frames arriving while an earlier one is being scaled replace each other, so only the
+     * newest is scaled next.
+     */
+    private void showFrame(BufferedImage frame) {
+        pendingFrame.set(frame);
+        if (scaling.compareAndSet(false, true)) {
+            new ThumbnailWorker().execute();
+        }
+    }
+
+    /**
+     * Scales pending frames until none are left, handing each thumbnail to the event dispatch thread.
+     */
+    private class ThumbnailWorker extends SwingWorker<Void, BufferedImage[]> {
+        @Override
+        protected Void doInBackground() {
+            try {
+                do {
+                    BufferedImage frame;
+                    while ((frame = pendingFrame.getAndSet(null)) != null) {
+                        publish(new BufferedImage[]{frame, thumbnailService.scale(frame)});
+                    }
+                    scaling.set(false);
+                    //a frame may have arrived after the queue was drained but before scaling was cleared
+                } while (pendingFrame.get() != null && scaling.compareAndSet(false, true));
+            } catch (RuntimeException e) {
+                scaling.set(false);
+                throw e;
+            }
+            return null;
+        }
+
+        @Override
+        protected void process(List<BufferedImage[]> scaled) {
+            BufferedImage[] newest = scaled.get(scaled.size() - 1);
+            currentCameraImage = newest[0];
+            cameraView.setThumbnail(newest[1]);
+        }
+    }
+
+    /**
+     * Paints the cached thumbnail as it is, so repaints never scale.
+     */
+    private static class CameraView extends JComponent {
+        private BufferedImage thumbnail;
+
+        void setThumbnail(BufferedImage thumbnail) {
+            this.thumbnail = thumbnail;
+            repaint();
+        }
+
+        @Override
+        protected void paintComponent(Graphics g) {
+            super.paintComponent(g);
+            if (thumbnail != null) {
+                Insets insets = getInsets();
+                synchronized (thumbnail) {
+                    g.drawImage(thumbnail, insets.left, insets.top, null);
+                }
+            }
+        }
+    }
+
+    private static boolean isMjpeg(File file) {
+        String name = file.getName().toLowerCase(Locale.ROOT);
+        return name.endsWith(".mjpeg") || name.endsWith(".mjpg");
+    }
+
+    private static Duration frameInterval() {
+        return Duration.ofNanos(1_000_000_000L / Math.max(1, Integer.getInteger("catpoint.cameraFps", DEFAULT_CAMERA_FPS)));
+    }
+
     @Override
     public void notify(AlarmStatus status) {
         //no behavior necessary
@@ -2,17 +2,25 @@ package org.example.catpoint.app.application;
 
 import net.miginfocom.swing.MigLayout;
 import org.example.catpoint.app.service.StyleService;
+import org.example.catpoint.security.application.CoalescingStatusDispatcher;
 import org.example.catpoint.security.application.StatusListener;
 import org.example.catpoint.security.data.AlarmStatus;
+import org.example.catpoint.security.data.ArmingStatus;
 import org.example.catpoint.security.service.SecurityService;
 import org.example.catpoint.security.data.Sensor;
 import org.example.catpoint.security.data.SensorType;
 
 import javax.swing.*;
+import java.awt.Dimension;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Panel that allows users to add sensors to their system. Sensors may be
- * manually set to "active" and "inactive" to test the system.
+ * manually set to "active" and "inactive" to test the system by ticking
+ * them in the sensor list.
+ *
+ * The free version allows 4 sensors; the catpoint.maxSensors system property raises the limit.
  */
 public class SensorPanel extends JPanel implements StatusListener {
 
@@ -25,10 +33,16 @@ public class SensorPanel extends JPanel implements StatusListener {
     private JComboBox newSensorTypeDropdown = new JComboBox(SensorType.values());
     private JButton addNewSensorButton = new JButton("Add New Sensor");
 
-    private JPanel sensorListPanel;
+    private JButton removeSensorButton = new JButton("Remove Selected Sensors");
+
+    private static final int DEFAULT_MAX_SENSORS = 4;
+    private final int maxSensors = Integer.getInteger("catpoint.maxSensors", DEFAULT_MAX_SENSORS);
+
+    private SensorTableModel sensorTableModel;
+    private JTable sensorTable;
     private JPanel newSensorPanel;
 
-    public SensorPanel(SecurityService securityService) {
+    public SensorPanel(SecurityService securityService, CoalescingStatusDispatcher statusDispatcher) {
         super();
         setLayout(new MigLayout());
         this.securityService = securityService;
@@ -37,17 +51,22 @@ public class SensorPanel extends JPanel implements StatusListener {
         addNewSensorButton.addActionListener(e ->
                 addSensor(new Sensor(newSensorNameField.getText(),
                         SensorType.valueOf(newSensorTypeDropdown.getSelectedItem().toString()))));
+        removeSensorButton.addActionListener(e -> removeSelectedSensors());
 
         newSensorPanel = buildAddSensorPanel();
-        sensorListPanel = new JPanel();
-        sensorListPanel.setLayout(new MigLayout());
-
-        updateSensorList(sensorListPanel);
+        sensorTableModel = new SensorTableModel(securityService::changeSensorActivationStatus);
+        sensorTableModel.setSensors(securityService.getSensors());
+        //the table only renders the rows in view and repaints just the rows the model reports
+        sensorTable = new JTable(sensorTableModel);
+        sensorTable.setFillsViewportHeight(true);
+        sensorTable.getColumnModel().getColumn(SensorTableModel.NAME_COLUMN).setPreferredWidth(200);
+        sensorTable.setPreferredScrollableViewportSize(new Dimension(400, 8 * sensorTable.getRowHeight()));
 
         add(panelLabel, "wrap");
         add(newSensorPanel, "span");
-        add(sensorListPanel, "span");
-        securityService.addStatusListener(this);
+        add(new JScrollPane(sensorTable), "span, wrap");
+        add(removeSensorButton, "span");
+        statusDispatcher.addStatusListener(this);
     }
 
     /**
@@ -65,60 +84,27 @@ public class SensorPanel extends JPanel implements StatusListener {
     }
 
     /**
-     * Requests the current list of sensors and updates the provided panel to display them. Sensors
-     * will display in the order that they are created.
-     * @param p The Panel to populate with the current list of sensors
-     */
-    private void updateSensorList(JPanel p) {
-        p.removeAll();
-        securityService.getSensors().stream().sorted().forEach(s -> {
-            JLabel sensorLabel = new JLabel(String.format("%s(%s): %s", s.getName(),  s.getSensorType().toString(),(s.getActive() ? "Active" : "Inactive")));
-            JButton sensorToggleButton = new JButton((s.getActive() ? "Deactivate" : "Activate"));
-            JButton sensorRemoveButton = new JButton("Remove Sensor");
-
-            sensorToggleButton.addActionListener(e -> setSensorActivity(s, !s.getActive()) );
-            sensorRemoveButton.addActionListener(e -> removeSensor(s));
-
-            //hard code some sizes, tsk tsk
-            p.add(sensorLabel, "width 300:300:300");
-            p.add(sensorToggleButton, "width 100:100:100");
-            p.add(sensorRemoveButton, "wrap");
-        });
-
-        repaint();
-        revalidate();
-    }
-
-    /**
-     * Asks the securityService to change a sensor activation status and then rebuilds the current sensor list
-     * @param sensor The sensor to update
-     * @param isActive The sensor's activation status
-     */
-    private void setSensorActivity(Sensor sensor, Boolean isActive) {
-        securityService.changeSensorActivationStatus(sensor, isActive);
-        updateSensorList(sensorListPanel);
-    }
-
-    /**
-     * Adds a sensor to the securityService and then rebuilds the sensor list
+     * Adds a sensor to the securityService, which tells the panel to add its row
      * @param sensor The sensor to add
      */
     private void addSensor(Sensor sensor) {
-        if(securityService.getSensors().size() < 4) {
+        if(securityService.getSensorCount() < maxSensors) {
             securityService.addSensor(sensor);
-            updateSensorList(sensorListPanel);
         } else {
             JOptionPane.showMessageDialog(null, "To add more than 4 sensors, please subscribe to our Premium Membership!");
         }
     }
 
     /**
-     * Remove a sensor from the securityService and then rebuild the sensor list
-     * @param sensor The sensor to remove
+     * Removes the sensors selected in the list from the securityService, which tells the panel to drop their rows
      */
-    private void removeSensor(Sensor sensor) {
-        securityService.removeSensor(sensor);
-        updateSensorList(sensorListPanel);
+    private void removeSelectedSensors() {
+        int[] selected = sensorTable.getSelectedRows();
+        List<Sensor> sensors = new ArrayList<>(selected.length);
+        for (int row : selected) {
+            sensors.add(sensorTableModel.getSensorAt(sensorTable.convertRowIndexToModel(row)));
+        }
+        sensors.forEach(securityService::removeSensor);
     }
 
     @Override
@@ -133,6 +119,42 @@ public class SensorPanel extends JPanel implements StatusListener {
 
     @Override
     public void sensorStatusChanged() {
-        updateSensorList(sensorListPanel);
+        onEventDispatchThread(() -> sensorTableModel.setSensors(securityService.getSensors()));
+    }
+
+    @Override
+    public void armingStatusChanged(ArmingStatus previous, ArmingStatus current) {
+        //sensors reset by arming are reported one by one, so there is nothing to refresh
+    }
+
+    @Override
+    public void sensorAdded(Sensor sensor) {
+        onEventDispatchThread(() -> sensorTableModel.sensorChanged(sensor));
+    }
+
+    @Override
+    public void sensorRemoved(Sensor sensor) {
+        onEventDispatchThread(() -> sensorTableModel.sensorRemoved(sensor));
+    }
+
+    @Override
+    public void sensorActivated(Sensor sensor) {
+        onEventDispatchThread(() -> sensorTableModel.sensorChanged(sensor));
+    }
+
+    @Override
+    public void sensorDeactivated(Sensor sensor) {
+        onEventDispatchThread(() -> sensorTableModel.sensorChanged(sensor));
+    }
+
+    /**
+     * Listeners may be called from background threads, but the model belongs to the UI.
+     */
+    private static void onEventDispatchThread(Runnable update) {
+        if (SwingUtilities.isEventDispatchThread()) {
+            update.run();
+        } else {
+            SwingUtilities.invokeLater(update);
+        }
     }
 }
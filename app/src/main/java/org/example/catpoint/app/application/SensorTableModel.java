@@ -0,0 +1,203 @@
+package org.example.catpoint.app.application;
+
+import org.example.catpoint.security.data.Sensor;
+import org.example.catpoint.security.data.SensorType;
+
+import javax.swing.table.AbstractTableModel;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.BiConsumer;
+
+/**
+ * Table model listing sensors in the order that they sort, one row per sensor.
+ *
+ * Each row keeps a copy of what it displays, so changes are found by comparing the sensors with
+ * the rows rather than by rebuilding the table, and only rows that actually changed are
+ * reported to the table. When many rows change at once, such as on the first load, the table
+ * is told to reload instead. Must be used on the event dispatch thread.
+ */
+class SensorTableModel extends AbstractTableModel {
+
+    static final int NAME_COLUMN = 0;
+    static final int TYPE_COLUMN = 1;
+    static final int ACTIVE_COLUMN = 2;
+
+    private static final int BULK_CHANGE_LIMIT = 64;
+    private static final String[] COLUMN_NAMES = {"Name", "Type", "Active"};
+    //same order as Sensor.compareTo
+    private static final Comparator<Row> ORDER = Comparator.<Row, String>comparing(row -> row.name)
+            .thenComparing(row -> row.sensorType.toString())
+            .thenComparing(row -> row.sensorId);
+
+    private final List<Row> rows = new ArrayList<>();
+    private final Map<UUID, Row> rowsById = new HashMap<>();
+    private final BiConsumer<Sensor, Boolean> activationChanger;
+
+    /**
+     * @param activationChanger Called when the user ticks or unticks a sensor's Active cell
+     */
+    SensorTableModel(BiConsumer<Sensor, Boolean> activationChanger) {
+        this.activationChanger = activationChanger;
+    }
+
+    /**
+     * Brings the rows in line with the given sensors, reporting only added, removed and changed rows.
+     */
+    void setSensors(Collection<Sensor> sensors) {
+        Set<UUID> present = new HashSet<>();
+        int changes = 0;
+        int kept = 0;
+        for (Sensor sensor : sensors) {
+            present.add(sensor.getSensorId());
+            Row existing = rowsById.get(sensor.getSensorId());
+            if (existing != null) {
+                kept++;
+            }
+            if (existing == null || !existing.shows(sensor)) {
+                changes++;
+            }
+        }
+        changes += rows.size() - kept;
+        //past a point, one reload is cheaper for the table than an event per row
+        if (changes > BULK_CHANGE_LIMIT) {
+            reload(sensors);
+            return;
+        }
+        for (int i = rows.size() - 1; i >= 0; i--) {
+            if (!present.contains(rows.get(i).sensorId)) {
+                rowsById.remove(rows.remove(i).sensorId);
+                fireTableRowsDeleted(i, i);
+            }
+        }
+        for (Sensor sensor : sensors) {
+            sensorChanged(sensor);
+        }
+    }
+
+    private void reload(Collection<Sensor> sensors) {
+        rows.clear();
+        rowsById.clear();
+        for (Sensor sensor : sensors) {
+            Row row = new Row(sensor);
+            rows.add(row);
+            rowsById.put(row.sensorId, row);
+        }
+        rows.sort(ORDER);
+        fireTableDataChanged();
+    }
+
+    /**
+     * Adds the sensor's row, or updates it if the sensor is already listed.
+     */
+    void sensorChanged(Sensor sensor) {
+        Row existing = rowsById.get(sensor.getSensorId());
+        if (existing == null) {
+            Row row = new Row(sensor);
+            int index = -Collections.binarySearch(rows, row, ORDER) - 1;
+            rows.add(index, row);
+            rowsById.put(row.sensorId, row);
+            fireTableRowsInserted(index, index);
+        } else if (!existing.shows(sensor)) {
+            //renaming moves the row, anything else changes it in place
+            if (!existing.name.equals(sensor.getName()) || existing.sensorType != sensor.getSensorType()) {
+                sensorRemoved(sensor);
+                sensorChanged(sensor);
+                return;
+            }
+            existing.sensor = sensor;
+            existing.active = Boolean.TRUE.equals(sensor.getActive());
+            int index = indexOf(existing);
+            fireTableRowsUpdated(index, index);
+        }
+    }
+
+    void sensorRemoved(Sensor sensor) {
+        Row existing = rowsById.remove(sensor.getSensorId());
+        if (existing != null) {
+            int index = indexOf(existing);
+            rows.remove(index);
+            fireTableRowsDeleted(index, index);
+        }
+    }
+
+    Sensor getSensorAt(int rowIndex) {
+        return rows.get(rowIndex).sensor;
+    }
+
+    private int indexOf(Row row) {
+        return Collections.binarySearch(rows, row, ORDER);
+    }
+
+    @Override
+    public int getRowCount() {
+        return rows.size();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMN_NAMES.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMN_NAMES[column];
+    }
+
+    @Override
+    public Class<?> getColumnClass(int column) {
+        return column == ACTIVE_COLUMN ? Boolean.class : String.class;
+    }
+
+    @Override
+    public boolean isCellEditable(int rowIndex, int column) {
+        return column == ACTIVE_COLUMN;
+    }
+
+    @Override
+    public Object getValueAt(int rowIndex, int column) {
+        Row row = rows.get(rowIndex);
+        return switch (column) {
+            case NAME_COLUMN -> row.name;
+            case TYPE_COLUMN -> row.sensorType.toString();
+            default -> row.active;
+        };
+    }
+
+    @Override
+    public void setValueAt(Object value, int rowIndex, int column) {
+        if (column == ACTIVE_COLUMN) {
+            Sensor sensor = rows.get(rowIndex).sensor;
+            activationChanger.accept(sensor, (Boolean) value);
+            sensorChanged(sensor);
+        }
+    }
+
+    private static final class Row {
+        private final UUID sensorId;
+        private final String name;
+        private final SensorType sensorType;
+        private Sensor sensor;
+        private boolean active;
+
+        Row(Sensor sensor) {
+            this.sensorId = sensor.getSensorId();
+            this.name = sensor.getName();
+            this.sensorType = sensor.getSensorType();
+            this.sensor = sensor;
+            this.active = Boolean.TRUE.equals(sensor.getActive());
+        }
+
+        boolean shows(Sensor sensor) {
+            return name.equals(sensor.getName()) && sensorType == sensor.getSensorType()
+                    && active == Boolean.TRUE.equals(sensor.getActive());
+        }
+    }
+}
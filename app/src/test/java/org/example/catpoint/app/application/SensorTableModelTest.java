@@ -0,0 +1,146 @@
+package org.example.catpoint.app.application;
+
+import org.example.catpoint.security.data.Sensor;
+import org.example.catpoint.security.data.SensorType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.swing.event.TableModelEvent;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Checks the events the model reports to its table. Needs no display, since only the model is used.
+ */
+public class SensorTableModelTest {
+
+    private final List<String> events = new ArrayList<>();
+    @SuppressWarnings("unchecked")
+    private final BiConsumer<Sensor, Boolean> activationChanger = mock(BiConsumer.class);
+    private final SensorTableModel model = new SensorTableModel(activationChanger);
+
+    private final Sensor alpha = new Sensor("alpha", SensorType.DOOR);
+    private final Sensor charlie = new Sensor("charlie", SensorType.WINDOW);
+    private final Sensor echo = new Sensor("echo", SensorType.MOTION);
+
+    @BeforeEach
+    void setUp() {
+        model.setSensors(List.of(echo, alpha, charlie));
+        model.addTableModelListener(event -> events.add(describe(event)));
+    }
+
+    private static String describe(TableModelEvent event) {
+        if (event.getLastRow() == Integer.MAX_VALUE) {
+            return "reloaded";
+        }
+        String type = switch (event.getType()) {
+            case TableModelEvent.INSERT -> "inserted";
+            case TableModelEvent.DELETE -> "deleted";
+            default -> "updated";
+        };
+        return event.getFirstRow() == event.getLastRow() ? type + " " + event.getFirstRow()
+                : type + " " + event.getFirstRow() + "-" + event.getLastRow();
+    }
+
+    private List<String> names() {
+        List<String> names = new ArrayList<>();
+        for (int row = 0; row < model.getRowCount(); row++) {
+            names.add((String) model.getValueAt(row, SensorTableModel.NAME_COLUMN));
+        }
+        return names;
+    }
+
+    private static List<Sensor> createSensors(int count) {
+        List<Sensor> sensors = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            sensors.add(new Sensor(String.format("sensor %03d", i), SensorType.DOOR));
+        }
+        return sensors;
+    }
+
+    @Test
+    public void sensorAddedRowInsertedAtItsSortedPosition() {
+        model.sensorChanged(new Sensor("bravo", SensorType.DOOR));
+
+        assertEquals(List.of("inserted 1"), events);
+        assertEquals(List.of("alpha", "bravo", "charlie", "echo"), names());
+    }
+
+    @Test
+    public void sensorRemovedOnlyItsRowDeleted() {
+        model.sensorRemoved(charlie);
+
+        assertEquals(List.of("deleted 1"), events);
+        assertEquals(List.of("alpha", "echo"), names());
+    }
+
+    @Test
+    public void sensorRenamedRowMovedToItsNewPosition() {
+        alpha.setName("delta");
+        model.sensorChanged(alpha);
+
+        assertEquals(List.of("deleted 0", "inserted 1"), events);
+        assertEquals(List.of("charlie", "delta", "echo"), names());
+    }
+
+    @Test
+    public void sensorToggledRowUpdatedInPlace() {
+        charlie.setActive(true);
+        model.sensorChanged(charlie);
+
+        assertEquals(List.of("updated 1"), events);
+        assertEquals(true, model.getValueAt(1, SensorTableModel.ACTIVE_COLUMN));
+    }
+
+    @Test
+    public void sensorUnchangedNoEvent() {
+        model.sensorChanged(alpha);
+        model.setSensors(List.of(alpha, charlie, echo));
+
+        assertEquals(List.of(), events);
+    }
+
+    @Test
+    public void activeCellTickedActivationChangerCalled() {
+        model.setValueAt(true, 0, SensorTableModel.ACTIVE_COLUMN);
+
+        verify(activationChanger).accept(alpha, true);
+    }
+
+    @Test
+    public void setSensorsFewChangesEachRowReported() {
+        Sensor bravo = new Sensor("bravo", SensorType.DOOR);
+        echo.setActive(true);
+        model.setSensors(List.of(alpha, bravo, echo));
+
+        assertEquals(List.of("deleted 1", "inserted 1", "updated 2"), events);
+        assertEquals(List.of("alpha", "bravo", "echo"), names());
+    }
+
+    @Test
+    public void setSensorsUpToBulkLimitRowsInsertedOneByOne() {
+        List<Sensor> sensors = createSensors(61);
+        sensors.addAll(List.of(alpha, charlie, echo));
+        model.setSensors(sensors);
+
+        assertEquals(61, events.size());
+        assertTrue(events.stream().allMatch(event -> event.startsWith("inserted")));
+        assertEquals(64, model.getRowCount());
+    }
+
+    @Test
+    public void setSensorsMoreThanBulkLimitTableReloadedOnce() {
+        List<Sensor> sensors = createSensors(65);
+        model.setSensors(sensors);
+
+        assertEquals(List.of("reloaded"), events);
+        assertEquals(65, model.getRowCount());
+        assertEquals("sensor 000", model.getValueAt(0, SensorTableModel.NAME_COLUMN));
+        assertSame(sensors.get(64), model.getSensorAt(64));
+    }
+}
@@ -0,0 +1,80 @@
+package org.example.catpoint.benchmarks;
+
+import org.example.catpoint.image.service.DetectionResult;
+import org.example.catpoint.image.service.ImageService;
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how long it takes to get through a burst of 10,000 image recognition requests that
+ * block for a Rekognition-like latency, all submitted at once. Compares the virtual thread per
+ * request that image scans now use with a fixed pool of platform threads, which can only have
+ * as many requests waiting as it has threads.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ExecutorBenchmark {
+
+    private static final long REQUEST_LATENCY_MILLIS = 50;
+
+    @Param({"virtual", "platform"})
+    public String executorKind;
+
+    @Param({"10000"})
+    public int requests;
+
+    @Param({"256"})
+    public int platformThreads;
+
+    private final BufferedImage image = new BufferedImage(64, 48, BufferedImage.TYPE_INT_RGB);
+    private final ImageService imageService = (image, confidenceThreshhold) -> {
+        try {
+            Thread.sleep(REQUEST_LATENCY_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Interrupted while waiting for the image service");
+        }
+        return false;
+    };
+    private ExecutorService executor;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        executor = "virtual".equals(executorKind)
+                ? Executors.newVirtualThreadPerTaskExecutor()
+                : Executors.newFixedThreadPool(platformThreads);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        executor.close();
+    }
+
+    @Benchmark
+    public int scanBurst() throws InterruptedException, ExecutionException {
+        List<Future<DetectionResult>> pending = new ArrayList<>(requests);
+        for (int i = 0; i < requests; i++) {
+            pending.add(executor.submit(() -> imageService.classify(image, 50.0f)));
+        }
+        int cats = 0;
+        for (Future<DetectionResult> result : pending) {
+            if (result.get().containsCat()) {
+                cats++;
+            }
+        }
+        return cats;
+    }
+}
@@ -0,0 +1,62 @@
+package org.example.catpoint.benchmarks;
+
+import org.example.catpoint.image.service.JpegEncoder;
+import org.openjdk.jmh.annotations.*;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the local work done per camera frame: the JPEG encoding AwsImageService performs
+ * before every Rekognition call, compared with the plain ImageIO.write it used to do.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ImageBenchmark {
+
+    @Param({"320x240", "640x480", "1920x1080"})
+    public String resolution;
+
+    private BufferedImage image;
+    private JpegEncoder jpegEncoder;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        String[] size = resolution.split("x");
+        int width = Integer.parseInt(size[0]);
+        int height = Integer.parseInt(size[1]);
+        //smooth gradient plus noise, so the encoder sees something closer to a photo than a flat fill
+        Random random = new Random(42);
+        image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int r = (x * 255 / width + random.nextInt(32)) & 0xFF;
+                int g = (y * 255 / height + random.nextInt(32)) & 0xFF;
+                int b = random.nextInt(256);
+                image.setRGB(x, y, r << 16 | g << 8 | b);
+            }
+        }
+        jpegEncoder = new JpegEncoder();
+    }
+
+    @Benchmark
+    public byte[] imageIoWrite() throws IOException {
+        try (ByteArrayOutputStream os = new ByteArrayOutputStream()) {
+            ImageIO.write(image, "jpg", os);
+            return os.toByteArray();
+        }
+    }
+
+    @Benchmark
+    public byte[] pooledJpegEncoder() throws IOException {
+        return jpegEncoder.encode(image);
+    }
+}
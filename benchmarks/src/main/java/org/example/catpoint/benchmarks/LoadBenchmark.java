@@ -0,0 +1,53 @@
+package org.example.catpoint.benchmarks;
+
+import org.example.catpoint.security.data.EventLogSecurityRepositoryImpl;
+import org.example.catpoint.security.data.PretendDatabaseSecurityRepositoryImpl;
+import org.example.catpoint.security.data.SecurityRepository;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures application startup cost: opening a repository whose sensors were stored by an
+ * earlier run. For the preferences-backed repository this is dominated by Gson parsing the
+ * sensor JSON; for the event log by reading the snapshot and replaying the log.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LoadBenchmark {
+
+    @Param({"pretend", "eventlog"})
+    public String repositoryKind;
+
+    @Param({"10", "1000", "100000"})
+    public int sensorCount;
+
+    private Repositories repositories;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        repositories = new Repositories();
+        repositories.open(repositoryKind).updateSensors(Repositories.createSensors(sensorCount));
+        repositories.closeRepository();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        repositories.close();
+    }
+
+    @Benchmark
+    public SecurityRepository load() throws IOException {
+        if ("pretend".equals(repositoryKind)) {
+            return new PretendDatabaseSecurityRepositoryImpl(repositories.preferences());
+        }
+        try (EventLogSecurityRepositoryImpl repository = new EventLogSecurityRepositoryImpl(repositories.directory())) {
+            return repository;
+        }
+    }
+}
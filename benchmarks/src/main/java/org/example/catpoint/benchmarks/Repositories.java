@@ -0,0 +1,96 @@
+package org.example.catpoint.benchmarks;
+
+import org.example.catpoint.security.data.CoalescingSecurityRepository;
+import org.example.catpoint.security.data.EventLogSecurityRepositoryImpl;
+import org.example.catpoint.security.data.PretendDatabaseSecurityRepositoryImpl;
+import org.example.catpoint.security.data.SecurityRepository;
+import org.example.catpoint.security.data.Sensor;
+import org.example.catpoint.security.data.SensorType;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.prefs.BackingStoreException;
+import java.util.prefs.Preferences;
+import java.util.stream.Stream;
+
+/**
+ * Creates repositories for benchmarks in throwaway storage and removes the storage afterwards,
+ * so benchmark runs never touch the application's own preferences or data directory.
+ */
+final class Repositories implements Closeable {
+
+    private final Preferences prefs;
+    private final Path directory;
+    private SecurityRepository repository;
+
+    Repositories() {
+        try {
+            prefs = Preferences.userRoot().node("catpoint-benchmarks-" + UUID.randomUUID());
+            directory = Files.createTempDirectory("catpoint-benchmarks");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @param kind One of "pretend", "eventlog" or "coalescing" (buffered writes over an event log)
+     */
+    SecurityRepository open(String kind) {
+        repository = switch (kind) {
+            case "pretend" -> new PretendDatabaseSecurityRepositoryImpl(prefs);
+            case "eventlog" -> new EventLogSecurityRepositoryImpl(directory);
+            case "coalescing" -> new CoalescingSecurityRepository(new EventLogSecurityRepositoryImpl(directory));
+            default -> throw new IllegalArgumentException("Unknown repository: " + kind);
+        };
+        return repository;
+    }
+
+    Preferences preferences() {
+        return prefs;
+    }
+
+    Path directory() {
+        return directory;
+    }
+
+    /**
+     * Closes the repository opened last, leaving its stored state in place.
+     */
+    void closeRepository() throws IOException {
+        if (repository instanceof Closeable) {
+            ((Closeable) repository).close();
+        }
+        repository = null;
+    }
+
+    static List<Sensor> createSensors(int count) {
+        List<Sensor> sensors = new ArrayList<>(count);
+        SensorType[] types = SensorType.values();
+        for (int i = 0; i < count; i++) {
+            sensors.add(new Sensor("sensor " + i, types[i % types.length]));
+        }
+        return sensors;
+    }
+
+    @Override
+    public void close() throws IOException {
+        closeRepository();
+        try {
+            prefs.removeNode();
+        } catch (BackingStoreException e) {
+            throw new IOException(e);
+        }
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(file);
+            }
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package org.example.catpoint.benchmarks;
+
+import org.example.catpoint.security.data.SecurityRepository;
+import org.example.catpoint.security.data.Sensor;
+import org.example.catpoint.security.data.SensorType;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures repository write throughput at small, typical and very large installation sizes.
+ *
+ * The preferences-backed repository rewrites its whole JSON document on every change, so its
+ * per-operation time grows with the number of sensors; the event log only appends.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RepositoryBenchmark {
+
+    @Param({"pretend", "eventlog"})
+    public String repositoryKind;
+
+    @Param({"10", "1000", "100000"})
+    public int sensorCount;
+
+    private Repositories repositories;
+    private SecurityRepository repository;
+    private List<Sensor> sensors;
+    private Sensor lastAdded;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        repositories = new Repositories();
+        repository = repositories.open(repositoryKind);
+        sensors = Repositories.createSensors(sensorCount);
+        repository.updateSensors(sensors);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        repositories.close();
+    }
+
+    /**
+     * Adds a new sensor and removes the one added by the previous call, so the repository stays
+     * at sensorCount sensors for the whole run. Each call therefore performs two writes.
+     */
+    @Benchmark
+    public void addSensor() {
+        Sensor sensor = new Sensor("added " + next++, SensorType.WINDOW);
+        repository.addSensor(sensor);
+        if (lastAdded != null) {
+            repository.removeSensor(lastAdded);
+        }
+        lastAdded = sensor;
+    }
+
+    @Benchmark
+    public void updateSensor() {
+        Sensor sensor = sensors.get(next++ % sensors.size());
+        sensor.setActive(!sensor.getActive());
+        repository.updateSensor(sensor);
+    }
+}
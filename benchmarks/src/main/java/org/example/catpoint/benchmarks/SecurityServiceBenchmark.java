@@ -0,0 +1,103 @@
+package org.example.catpoint.benchmarks;
+
+import org.example.catpoint.image.service.FakeImageService;
+import org.example.catpoint.security.data.AlarmStatus;
+import org.example.catpoint.security.data.ArmingStatus;
+import org.example.catpoint.security.data.SecurityRepository;
+import org.example.catpoint.security.data.Sensor;
+import org.example.catpoint.security.service.SecurityService;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the sensor event and arming paths of SecurityService against each repository.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SecurityServiceBenchmark {
+
+    @Param({"eventlog", "coalescing", "pretend"})
+    public String repositoryKind;
+
+    @Param({"10", "1000"})
+    public int sensorCount;
+
+    @Param({"DISARMED", "ARMED_HOME"})
+    public ArmingStatus armingStatus;
+
+    private Repositories repositories;
+    private SecurityRepository repository;
+    private SecurityService securityService;
+    private List<Sensor> sensors;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        repositories = new Repositories();
+        repository = repositories.open(repositoryKind);
+        securityService = new SecurityService(repository, new FakeImageService());
+        sensors = Repositories.createSensors(sensorCount);
+        repository.updateSensors(sensors);
+        repository.setArmingStatus(armingStatus);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        repositories.close();
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        //threads start at different sensors so the contended benchmark does not move in lockstep
+        private int next = ThreadLocalRandom.current().nextInt(1 << 16);
+
+        Sensor nextSensor(List<Sensor> sensors) {
+            return sensors.get(next++ % sensors.size());
+        }
+    }
+
+    /**
+     * Flips one sensor per call, cycling through all sensors.
+     */
+    @Benchmark
+    public void changeSensorActivationStatus(Cursor cursor) {
+        Sensor sensor = cursor.nextSensor(sensors);
+        securityService.changeSensorActivationStatus(sensor, !sensor.getActive());
+    }
+
+    /**
+     * The same as changeSensorActivationStatus, with several threads sending events at once.
+     */
+    @Benchmark
+    @Threads(4)
+    public void changeSensorActivationStatusContended(Cursor cursor) {
+        Sensor sensor = cursor.nextSensor(sensors);
+        securityService.changeSensorActivationStatus(sensor, !sensor.getActive());
+    }
+
+    /**
+     * Arming with all sensors active, which deactivates every sensor one at a time.
+     */
+    @State(Scope.Benchmark)
+    public static class AllSensorsActive {
+        @Setup(Level.Invocation)
+        public void activateAll(SecurityServiceBenchmark benchmark) {
+            benchmark.sensors.forEach(sensor -> sensor.setActive(true));
+            benchmark.repository.updateSensors(benchmark.sensors);
+            benchmark.repository.setArmingStatus(ArmingStatus.DISARMED);
+            benchmark.repository.setAlarmStatus(AlarmStatus.NO_ALARM);
+        }
+    }
+
+    @Benchmark
+    public void setArmingStatusWithActiveSensors(AllSensorsActive allSensorsActive) {
+        securityService.setArmingStatus(ArmingStatus.ARMED_HOME);
+    }
+}
@@ -0,0 +1,8 @@
+module engine {
+    requires java.desktop;
+    requires com.google.common;
+    requires image;
+    requires security;
+    requires slf4j.api;
+    exports org.example.catpoint.engine to app;
+}
\ No newline at end of file
@@ -0,0 +1,66 @@
+package org.example.catpoint.engine;
+
+import org.example.catpoint.image.service.FakeImageService;
+import org.example.catpoint.security.data.CoalescingSecurityRepository;
+import org.example.catpoint.security.data.EventLogSecurityRepositoryImpl;
+import org.example.catpoint.security.data.PretendDatabaseSecurityRepositoryImpl;
+import org.example.catpoint.security.metrics.MetricsRegistry;
+import org.example.catpoint.security.service.SecurityService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
+
+/**
+ * Runs the security system without a user interface, serving it to sensor gateways and
+ * consoles over the network.
+ *
+ * Configured with system properties:
+ * <ul>
+ *     <li>catpoint.engine.host - address to listen on, 127.0.0.1 by default</li>
+ *     <li>catpoint.engine.port - port to listen on, 7878 by default</li>
+ *     <li>catpoint.engine.ingestPort - port gateways send binary sensor states to, 7879 by default</li>
+ *     <li>catpoint.engine.ingestReaders - number of threads reading sensor states, 4 by default</li>
+ *     <li>catpoint.dataDir - directory holding the event log, ~/.catpoint by default</li>
+ * </ul>
+ * Latency histograms and counters are published over JMX as
+ * org.example.catpoint:type=Metrics,name="engine".
+ */
+public class CatpointEngine {
+
+    private static final Logger log = LoggerFactory.getLogger(CatpointEngine.class);
+
+    public static void main(String[] args) throws IOException {
+        String host = System.getProperty("catpoint.engine.host", "127.0.0.1");
+        int port = Integer.getInteger("catpoint.engine.port", EngineServer.DEFAULT_PORT);
+        int ingestPort = Integer.getInteger("catpoint.engine.ingestPort", IngestServer.DEFAULT_PORT);
+        int ingestReaders = Integer.getInteger("catpoint.engine.ingestReaders", 4);
+        Path dataDir = Path.of(System.getProperty("catpoint.dataDir",
+                Path.of(System.getProperty("user.home"), ".catpoint").toString()));
+
+        CoalescingSecurityRepository repository = new CoalescingSecurityRepository(
+                EventLogSecurityRepositoryImpl.migrateFrom(PretendDatabaseSecurityRepositoryImpl::new, dataDir));
+        //clients scan their camera images and send the results, so the engine never scans itself
+        SecurityService securityService = new SecurityService(repository, new FakeImageService());
+        EngineServer server = new EngineServer(securityService, new InetSocketAddress(host, port));
+        IngestServer ingestServer = new IngestServer(securityService, new InetSocketAddress(host, ingestPort),
+                ingestReaders);
+
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                ingestServer.close();
+                server.close();
+                repository.close();
+            } catch (IOException e) {
+                log.error("Unable to shut down cleanly", e);
+            }
+        }));
+        MetricsRegistry.getDefault().registerMBean("engine");
+        server.start();
+        ingestServer.start();
+        log.info("Catpoint engine listening on {}, sensor states on {}", server.getLocalAddress(),
+                ingestServer.getLocalAddress());
+    }
+}
@@ -0,0 +1,42 @@
+package org.example.catpoint.engine;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * Pool of equally sized direct buffers. Direct buffers are expensive to allocate and free, so
+ * connections borrow one only while they hold data that has not been processed yet, and a few
+ * pooled buffers serve any number of mostly idle connections. Buffers are made on demand when
+ * the pool is empty, and dropped on return when it is full.
+ */
+final class DirectBufferPool {
+
+    private final int bufferBytes;
+    private final ArrayBlockingQueue<ByteBuffer> free;
+
+    /**
+     * @param bufferBytes Capacity of every buffer
+     * @param maxPooled Largest number of idle buffers kept
+     */
+    DirectBufferPool(int bufferBytes, int maxPooled) {
+        this.bufferBytes = bufferBytes;
+        this.free = new ArrayBlockingQueue<>(maxPooled);
+    }
+
+    /**
+     * @return A cleared buffer
+     */
+    ByteBuffer acquire() {
+        ByteBuffer buffer = free.poll();
+        return buffer != null ? buffer : ByteBuffer.allocateDirect(bufferBytes);
+    }
+
+    void release(ByteBuffer buffer) {
+        buffer.clear();
+        free.offer(buffer);
+    }
+
+    int pooled() {
+        return free.size();
+    }
+}
@@ -0,0 +1,220 @@
+package org.example.catpoint.engine;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * One client connected to the EngineServer.
+ *
+ * Reading and writing happen on the server's selector thread. Complete lines are handed to the
+ * connection's command executor, which runs them one at a time and in order. Output may be sent
+ * from any thread; it is queued and written by the selector thread, several lines per write.
+ * A client that falls so far behind that its queued output exceeds the limit is disconnected
+ * rather than allowed to use up the server's memory.
+ *
+ * While a subscriber's snapshot is being queued, changes broadcast to it are held back and
+ * queued after the snapshot, so an older state in the snapshot never follows a newer change.
+ */
+final class EngineConnection {
+
+    private static final Logger log = LoggerFactory.getLogger(EngineConnection.class);
+
+    private static final int INITIAL_INPUT_BYTES = 4 * 1024;
+    private static final int WRITE_BUFFER_BYTES = 16 * 1024;
+
+    private final EngineServer server;
+    private final SocketChannel channel;
+    private final SelectionKey key;
+    private final Executor commands;
+    private final int maxLineBytes;
+    private final long maxPendingOutputBytes;
+
+    private ByteBuffer input = ByteBuffer.allocate(INITIAL_INPUT_BYTES);
+    private ByteBuffer writeBuffer;
+    private final Queue<ByteBuffer> output = new ConcurrentLinkedQueue<>();
+    private final AtomicLong pendingOutputBytes = new AtomicLong();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private final AtomicBoolean closed = new AtomicBoolean();
+    //changes broadcast while the snapshot is queued; null when not syncing
+    private List<ByteBuffer> heldChanges;
+    private long heldBytes;
+
+    EngineConnection(EngineServer server, SocketChannel channel, SelectionKey key, Executor commands,
+                     int maxLineBytes, long maxPendingOutputBytes) {
+        this.server = server;
+        this.channel = channel;
+        this.key = key;
+        this.commands = commands;
+        this.maxLineBytes = maxLineBytes;
+        this.maxPendingOutputBytes = maxPendingOutputBytes;
+    }
+
+    /**
+     * Reads what has arrived and passes on every complete line. Selector thread only.
+     */
+    void read() throws IOException {
+        if (channel.read(input) < 0) {
+            close();
+            return;
+        }
+        input.flip();
+        int lineStart = input.position();
+        for (int i = lineStart; i < input.limit(); i++) {
+            if (input.get(i) == '\n') {
+                int end = i > lineStart && input.get(i - 1) == '\r' ? i - 1 : i;
+                String line = new String(input.array(), lineStart, end - lineStart, StandardCharsets.UTF_8);
+                commands.execute(() -> server.handle(this, line));
+                lineStart = i + 1;
+            }
+        }
+        input.position(lineStart);
+        input.compact();
+        if (!input.hasRemaining()) {
+            if (input.capacity() >= maxLineBytes) {
+                send(EngineProtocol.ERROR + " Line longer than " + maxLineBytes + " bytes");
+                close();
+                return;
+            }
+            input = ByteBuffer.allocate(Math.min(maxLineBytes, input.capacity() * 2)).put(input.flip());
+        }
+    }
+
+    /**
+     * Queues a line for the client. Safe to call from any thread.
+     */
+    void send(String line) {
+        send(ByteBuffer.wrap((line + "\n").getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Queues bytes for the client. The buffer must not be changed afterwards, but buffers sharing
+     * their content may be queued on other connections.
+     */
+    void send(ByteBuffer bytes) {
+        if (closed.get()) {
+            return;
+        }
+        if (pendingOutputBytes.addAndGet(bytes.remaining()) > maxPendingOutputBytes) {
+            log.warn("Disconnecting engine client that is not keeping up {}", describe());
+            close();
+            return;
+        }
+        output.add(bytes);
+        if (flushScheduled.compareAndSet(false, true)) {
+            server.scheduleFlush(this);
+        }
+    }
+
+    /**
+     * Starts holding back broadcast changes until {@link #endSync()}.
+     */
+    synchronized void startSync() {
+        heldChanges = new ArrayList<>();
+        heldBytes = 0;
+    }
+
+    /**
+     * Queues the changes held back since {@link #startSync()}. Call once the snapshot is queued.
+     */
+    synchronized void endSync() {
+        List<ByteBuffer> held = heldChanges;
+        heldChanges = null;
+        held.forEach(this::send);
+    }
+
+    /**
+     * Queues a broadcast change, or holds it back while the snapshot is being queued. Safe to
+     * call from any thread.
+     */
+    synchronized void sendChange(ByteBuffer bytes) {
+        if (heldChanges == null) {
+            send(bytes);
+            return;
+        }
+        heldBytes += bytes.remaining();
+        if (heldBytes > maxPendingOutputBytes) {
+            log.warn("Disconnecting engine client that is not keeping up {}", describe());
+            close();
+            return;
+        }
+        heldChanges.add(bytes);
+    }
+
+    /**
+     * Writes queued output until it is all written or the socket is full. Selector thread only.
+     */
+    void flush() throws IOException {
+        //cleared first, so output queued while writing schedules another flush
+        flushScheduled.set(false);
+        if (writeBuffer == null) {
+            writeBuffer = ByteBuffer.allocateDirect(WRITE_BUFFER_BYTES);
+        }
+        while (true) {
+            ByteBuffer next;
+            while (writeBuffer.hasRemaining() && (next = output.peek()) != null) {
+                if (next.remaining() <= writeBuffer.remaining()) {
+                    writeBuffer.put(next);
+                    output.poll();
+                } else {
+                    int limit = next.limit();
+                    next.limit(next.position() + writeBuffer.remaining());
+                    writeBuffer.put(next);
+                    next.limit(limit);
+                }
+            }
+            writeBuffer.flip();
+            pendingOutputBytes.addAndGet(-channel.write(writeBuffer));
+            boolean socketFull = writeBuffer.hasRemaining();
+            writeBuffer.compact();
+            if (socketFull) {
+                key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                return;
+            }
+            if (output.isEmpty()) {
+                key.interestOps(SelectionKey.OP_READ);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Disconnects the client. Safe to call from any thread, and more than once.
+     */
+    void close() {
+        if (closed.compareAndSet(false, true)) {
+            server.disconnected(this);
+            key.cancel();
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+                //the connection is gone either way
+            }
+            output.clear();
+        }
+    }
+
+    boolean isClosed() {
+        return closed.get();
+    }
+
+    private String describe() {
+        try {
+            return String.valueOf(channel.getRemoteAddress());
+        } catch (IOException e) {
+            return "(address unknown)";
+        }
+    }
+}
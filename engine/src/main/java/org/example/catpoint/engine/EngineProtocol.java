@@ -0,0 +1,82 @@
+package org.example.catpoint.engine;
+
+import org.example.catpoint.security.data.Sensor;
+
+/**
+ * Text protocol spoken between the engine and its clients: one command or event per line in
+ * UTF-8, with fields separated by single spaces. Free text such as a sensor or camera name is
+ * always the last field, so it may contain spaces.
+ *
+ * Commands, sent by clients:
+ * <ul>
+ *     <li>SUBSCRIBE - send the current state, then every change</li>
+ *     <li>ADD id type name</li>
+ *     <li>REMOVE id</li>
+ *     <li>ACTIVATE id, DEACTIVATE id</li>
+ *     <li>ARM armingStatus</li>
+ *     <li>SET_ALARM alarmStatus - always refused, as the engine decides the alarm status</li>
+ *     <li>DETECTION containsCat confidence camera - the result of scanning a camera image</li>
+ *     <li>FORGET camera - the camera was disconnected</li>
+ * </ul>
+ * Events, sent by the engine to subscribers:
+ * <ul>
+ *     <li>SENSOR id type active name - a sensor was added or changed</li>
+ *     <li>REMOVED id</li>
+ *     <li>ALARM previous current, ARMING previous current</li>
+ *     <li>CAT catDetected</li>
+ *     <li>SYNCED - the current state has been sent</li>
+ * </ul>
+ * A command that cannot be carried out is answered with ERROR message.
+ */
+final class EngineProtocol {
+
+    static final String SUBSCRIBE = "SUBSCRIBE";
+    static final String ADD = "ADD";
+    static final String REMOVE = "REMOVE";
+    static final String ACTIVATE = "ACTIVATE";
+    static final String DEACTIVATE = "DEACTIVATE";
+    static final String ARM = "ARM";
+    static final String SET_ALARM = "SET_ALARM";
+    static final String DETECTION = "DETECTION";
+    static final String FORGET = "FORGET";
+
+    static final String SENSOR = "SENSOR";
+    static final String REMOVED = "REMOVED";
+    static final String ALARM = "ALARM";
+    static final String ARMING = "ARMING";
+    static final String CAT = "CAT";
+    static final String SYNCED = "SYNCED";
+    static final String ERROR = "ERROR";
+
+    private EngineProtocol() {
+    }
+
+    static String sensorLine(Sensor sensor) {
+        return SENSOR + " " + sensor.getSensorId() + " " + sensor.getSensorType() + " "
+                + Boolean.TRUE.equals(sensor.getActive()) + " " + text(sensor.getName());
+    }
+
+    static String addLine(Sensor sensor) {
+        return ADD + " " + sensor.getSensorId() + " " + sensor.getSensorType() + " " + text(sensor.getName());
+    }
+
+    /**
+     * Makes free text safe to send as the last field of a line.
+     */
+    static String text(String text) {
+        return text.replace('\n', ' ').replace('\r', ' ');
+    }
+
+    /**
+     * Splits a line into the command and at most the given number of further fields, the last of
+     * which keeps any spaces.
+     * @throws IllegalArgumentException If the line has fewer fields
+     */
+    static String[] fields(String line, int fields) {
+        String[] split = line.split(" ", fields + 1);
+        if (split.length != fields + 1) {
+            throw new IllegalArgumentException("Expected " + fields + " fields: " + line);
+        }
+        return split;
+    }
+}
@@ -0,0 +1,333 @@
+package org.example.catpoint.engine;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import org.example.catpoint.image.service.DetectionResult;
+import org.example.catpoint.security.application.StatusListener;
+import org.example.catpoint.security.data.AlarmStatus;
+import org.example.catpoint.security.data.ArmingStatus;
+import org.example.catpoint.security.data.Sensor;
+import org.example.catpoint.security.data.SensorType;
+import org.example.catpoint.security.service.SecurityService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serves a SecurityService to sensor gateways and other clients over TCP, using the line
+ * protocol described in {@link EngineProtocol}.
+ *
+ * A single selector thread accepts connections and does all reading and writing, so thousands
+ * of mostly idle connections cost no threads of their own. Each command runs on a virtual thread,
+ * since commands may block on the repository or the service's locks, one at a time per connection
+ * so each client's commands apply in the order it sent them.
+ * Status changes are encoded once and queued on every subscribed connection.
+ */
+public class EngineServer implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(EngineServer.class);
+
+    public static final int DEFAULT_PORT = 7878;
+
+    private static final int ACCEPT_BACKLOG = 4096;
+    private static final int MAX_LINE_BYTES = 64 * 1024;
+    private static final long MAX_PENDING_OUTPUT_BYTES = 32 * 1024 * 1024;
+    //state sent to a new subscriber is queued in pieces of about this size
+    private static final int SNAPSHOT_CHUNK_CHARS = 32 * 1024;
+
+    private final SecurityService securityService;
+    private final ServerSocketChannel serverChannel;
+    private final Selector selector;
+    private final ExecutorService workers;
+    private final Thread selectorThread;
+    private final StatusListener broadcaster = new Broadcaster();
+
+    private final Set<EngineConnection> connections = ConcurrentHashMap.newKeySet();
+    private final Set<EngineConnection> subscribers = ConcurrentHashMap.newKeySet();
+    private final Queue<EngineConnection> pendingFlushes = new ConcurrentLinkedQueue<>();
+    private volatile boolean running;
+
+    /**
+     * @param securityService Service that commands are applied to and whose changes are streamed
+     * @param address Where to listen; port 0 picks a free port
+     */
+    public EngineServer(SecurityService securityService, InetSocketAddress address) throws IOException {
+        this.securityService = securityService;
+        this.selector = Selector.open();
+        this.serverChannel = ServerSocketChannel.open();
+        serverChannel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+        serverChannel.bind(address, ACCEPT_BACKLOG);
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        this.workers = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("engine-worker-", 1).factory());
+        this.selectorThread = new Thread(this::run, "engine-selector");
+    }
+
+    /**
+     * Starts accepting connections and streaming status changes.
+     */
+    public void start() {
+        running = true;
+        securityService.addStatusListener(broadcaster);
+        selectorThread.start();
+    }
+
+    public InetSocketAddress getLocalAddress() throws IOException {
+        return (InetSocketAddress) serverChannel.getLocalAddress();
+    }
+
+    public int getConnectionCount() {
+        return connections.size();
+    }
+
+    /**
+     * Disconnects every client and stops listening.
+     */
+    @Override
+    public void close() throws IOException {
+        running = false;
+        securityService.removeStatusListener(broadcaster);
+        selector.wakeup();
+        try {
+            selectorThread.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        workers.shutdownNow();
+        connections.forEach(EngineConnection::close);
+        serverChannel.close();
+        selector.close();
+    }
+
+    private void run() {
+        while (running) {
+            try {
+                selector.select();
+            } catch (IOException e) {
+                log.error("Engine stopped", e);
+                return;
+            }
+            EngineConnection pending;
+            while ((pending = pendingFlushes.poll()) != null) {
+                flush(pending);
+            }
+            Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+            while (keys.hasNext()) {
+                SelectionKey key = keys.next();
+                keys.remove();
+                if (!key.isValid()) {
+                    continue;
+                }
+                if (key.isAcceptable()) {
+                    accept();
+                    continue;
+                }
+                EngineConnection connection = (EngineConnection) key.attachment();
+                try {
+                    if (key.isReadable()) {
+                        connection.read();
+                    }
+                    if (key.isValid() && key.isWritable()) {
+                        connection.flush();
+                    }
+                } catch (IOException e) {
+                    connection.close();
+                }
+            }
+        }
+    }
+
+    private void accept() {
+        SocketChannel channel;
+        try {
+            //accept everything waiting, since a burst of gateways may connect at once
+            while ((channel = serverChannel.accept()) != null) {
+                channel.configureBlocking(false);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+                EngineConnection connection = new EngineConnection(this, channel, key,
+                        MoreExecutors.newSequentialExecutor(workers), MAX_LINE_BYTES, MAX_PENDING_OUTPUT_BYTES);
+                key.attach(connection);
+                connections.add(connection);
+            }
+        } catch (IOException e) {
+            log.error("Unable to accept engine client", e);
+        }
+    }
+
+    private void flush(EngineConnection connection) {
+        if (connection.isClosed()) {
+            return;
+        }
+        try {
+            connection.flush();
+        } catch (IOException e) {
+            connection.close();
+        }
+    }
+
+    /**
+     * Asks the selector thread to write the connection's queued output.
+     */
+    void scheduleFlush(EngineConnection connection) {
+        pendingFlushes.add(connection);
+        selector.wakeup();
+    }
+
+    void disconnected(EngineConnection connection) {
+        connections.remove(connection);
+        subscribers.remove(connection);
+    }
+
+    /**
+     * Carries out one command line from a client. Runs on a virtual worker thread.
+     */
+    void handle(EngineConnection connection, String line) {
+        String command = line.split(" ", 2)[0];
+        try {
+            switch (command) {
+                case EngineProtocol.SUBSCRIBE -> subscribe(connection);
+                case EngineProtocol.ADD -> {
+                    String[] fields = EngineProtocol.fields(line, 3);
+                    securityService.addSensor(new Sensor(UUID.fromString(fields[1]), fields[3],
+                            SensorType.valueOf(fields[2]), false));
+                }
+                case EngineProtocol.REMOVE -> securityService.removeSensor(sensor(EngineProtocol.fields(line, 1)[1]));
+                case EngineProtocol.ACTIVATE, EngineProtocol.DEACTIVATE -> securityService.changeSensorActivationStatus(
+                        sensor(EngineProtocol.fields(line, 1)[1]), command.equals(EngineProtocol.ACTIVATE));
+                case EngineProtocol.ARM -> securityService.setArmingStatus(
+                        ArmingStatus.valueOf(EngineProtocol.fields(line, 1)[1]));
+                case EngineProtocol.SET_ALARM -> connection.send(EngineProtocol.ERROR
+                        + " The engine decides the alarm status");
+                case EngineProtocol.DETECTION -> {
+                    String[] fields = EngineProtocol.fields(line, 3);
+                    securityService.processDetection(fields[3],
+                            new DetectionResult(Boolean.parseBoolean(fields[1]), Float.parseFloat(fields[2])));
+                }
+                case EngineProtocol.FORGET -> securityService.removeCamera(EngineProtocol.fields(line, 1)[1]);
+                default -> connection.send(EngineProtocol.ERROR + " Unknown command " + EngineProtocol.text(command));
+            }
+        } catch (IllegalArgumentException e) {
+            connection.send(EngineProtocol.ERROR + " " + EngineProtocol.text(String.valueOf(e.getMessage())));
+        } catch (RuntimeException e) {
+            //a failure of the engine itself, so the client only learns that its command failed
+            log.error("Unable to carry out command: {}", line, e);
+            connection.send(EngineProtocol.ERROR + " " + EngineProtocol.text(command + " failed"));
+        }
+    }
+
+    private Sensor sensor(String id) {
+        Sensor sensor = securityService.getSensor(UUID.fromString(id));
+        if (sensor == null) {
+            throw new IllegalArgumentException("No sensor " + id);
+        }
+        return sensor;
+    }
+
+    /**
+     * Adds the connection to the subscribers and sends it the current state. Changes broadcast
+     * while the state is being read are held back by the connection and sent after SYNCED, so
+     * the client applies them on top of the state rather than have older state overwrite them.
+     */
+    private void subscribe(EngineConnection connection) {
+        //commands from one connection run one at a time, so this cannot race another SUBSCRIBE
+        if (subscribers.contains(connection)) {
+            return;
+        }
+        connection.startSync();
+        subscribers.add(connection);
+        ArmingStatus armingStatus = securityService.getArmingStatus();
+        AlarmStatus alarmStatus = securityService.getAlarmStatus();
+        StringBuilder state = new StringBuilder()
+                .append(EngineProtocol.ARMING).append(' ').append(armingStatus).append(' ').append(armingStatus).append('\n')
+                .append(EngineProtocol.ALARM).append(' ').append(alarmStatus).append(' ').append(alarmStatus).append('\n');
+        for (Sensor sensor : securityService.getSensors()) {
+            state.append(EngineProtocol.sensorLine(sensor)).append('\n');
+            if (state.length() >= SNAPSHOT_CHUNK_CHARS) {
+                connection.send(StandardCharsets.UTF_8.encode(state.toString()));
+                state.setLength(0);
+            }
+        }
+        state.append(EngineProtocol.SYNCED).append('\n');
+        connection.send(StandardCharsets.UTF_8.encode(state.toString()));
+        connection.endSync();
+    }
+
+    private void broadcast(String line) {
+        if (subscribers.isEmpty()) {
+            return;
+        }
+        ByteBuffer bytes = ByteBuffer.wrap((line + "\n").getBytes(StandardCharsets.UTF_8)).asReadOnlyBuffer();
+        for (EngineConnection subscriber : subscribers) {
+            subscriber.sendChange(bytes.duplicate());
+        }
+    }
+
+    /**
+     * Streams the service's status changes to subscribers.
+     */
+    private final class Broadcaster implements StatusListener {
+        @Override
+        public void notify(AlarmStatus status) {
+            alarmStatusChanged(status, status);
+        }
+
+        @Override
+        public void alarmStatusChanged(AlarmStatus previous, AlarmStatus current) {
+            broadcast(EngineProtocol.ALARM + " " + previous + " " + current);
+        }
+
+        @Override
+        public void armingStatusChanged(ArmingStatus previous, ArmingStatus current) {
+            broadcast(EngineProtocol.ARMING + " " + previous + " " + current);
+        }
+
+        @Override
+        public void catDetected(boolean catDetected) {
+            broadcast(EngineProtocol.CAT + " " + catDetected);
+        }
+
+        @Override
+        public void sensorStatusChanged() {
+            //sensor changes are sent one by one through the typed callbacks
+        }
+
+        @Override
+        public void sensorAdded(Sensor sensor) {
+            broadcast(EngineProtocol.sensorLine(sensor));
+        }
+
+        @Override
+        public void sensorRemoved(Sensor sensor) {
+            broadcast(EngineProtocol.REMOVED + " " + sensor.getSensorId());
+        }
+
+        @Override
+        public void sensorActivated(Sensor sensor) {
+            broadcast(EngineProtocol.sensorLine(sensor));
+        }
+
+        @Override
+        public void sensorDeactivated(Sensor sensor) {
+            broadcast(EngineProtocol.sensorLine(sensor));
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package org.example.catpoint.engine;
+
+import org.example.catpoint.image.service.FakeImageService;
+import org.example.catpoint.security.data.ArmingStatus;
+import org.example.catpoint.security.data.InMemorySecurityRepositoryImpl;
+import org.example.catpoint.security.data.Sensor;
+import org.example.catpoint.security.data.SensorType;
+import org.example.catpoint.security.service.SecurityService;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how many sensor states an {@link IngestServer} takes in per second over loopback.
+ *
+ * Starts an engine in this process with an in-memory repository, then has a few gateway threads
+ * send full frames that switch their own share of the sensors on and off as fast as they can.
+ * The frames are built once up front and only given a newer timestamp before each send, so the
+ * gateways cost little besides the socket writes, and the server never skips a record as stale.
+ * Every record therefore changes a sensor, and the sent and applied counts should match.
+ *
+ * Configured with system properties:
+ * <ul>
+ *     <li>catpoint.load.sensors - number of sensors, 16384 by default</li>
+ *     <li>catpoint.load.gateways - number of sending connections, 4 by default</li>
+ *     <li>catpoint.load.readers - number of server reader threads, 4 by default</li>
+ *     <li>catpoint.load.seconds - how long to send for, 10 by default</li>
+ * </ul>
+ */
+public class IngestLoadGenerator {
+
+    public static void main(String[] args) throws Exception {
+        int sensorCount = Integer.getInteger("catpoint.load.sensors", 16384);
+        int gatewayCount = Integer.getInteger("catpoint.load.gateways", 4);
+        int readers = Integer.getInteger("catpoint.load.readers", 4);
+        int seconds = Integer.getInteger("catpoint.load.seconds", 10);
+
+        SecurityService securityService = new SecurityService(new InMemorySecurityRepositoryImpl(),
+                new FakeImageService());
+        List<Sensor> sensors = new ArrayList<>(sensorCount);
+        for (int i = 0; i < sensorCount; i++) {
+            Sensor sensor = new Sensor("Sensor " + i, SensorType.MOTION);
+            securityService.addSensor(sensor);
+            sensors.add(sensor);
+        }
+        //armed, so every batch also runs the alarm logic
+        securityService.setArmingStatus(ArmingStatus.ARMED_AWAY);
+
+        try (IngestServer server = new IngestServer(securityService, new InetSocketAddress("127.0.0.1", 0), readers)) {
+            server.start();
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+            List<Thread> gateways = new ArrayList<>();
+            int share = sensorCount / gatewayCount;
+            for (int i = 0; i < gatewayCount; i++) {
+                List<Sensor> own = sensors.subList(i * share, (i + 1) * share);
+                Thread gateway = new Thread(() -> send(server, own, deadline), "gateway-" + (i + 1));
+                gateways.add(gateway);
+                gateway.start();
+            }
+
+            long start = System.nanoTime();
+            long lastRecords = 0;
+            long lastApplied = 0;
+            long lastTime = start;
+            while (System.nanoTime() < deadline) {
+                Thread.sleep(1000);
+                long now = System.nanoTime();
+                long records = server.getRecordsReceived();
+                long applied = server.getSensorsChanged();
+                System.out.printf("%,d events/s, %,d applied/s%n",
+                        (records - lastRecords) * TimeUnit.SECONDS.toNanos(1) / (now - lastTime),
+                        (applied - lastApplied) * TimeUnit.SECONDS.toNanos(1) / (now - lastTime));
+                lastRecords = records;
+                lastApplied = applied;
+                lastTime = now;
+            }
+            for (Thread gateway : gateways) {
+                gateway.join();
+            }
+            long elapsed = System.nanoTime() - start;
+            long received = server.getRecordsReceived();
+            long applied = server.getSensorsChanged();
+            System.out.printf("%,d events in %,d frames over %d gateways: %,d events/s, %,d applied (%,d/s)%n",
+                    received, server.getFramesReceived(), gatewayCount,
+                    received * TimeUnit.SECONDS.toNanos(1) / elapsed, applied,
+                    applied * TimeUnit.SECONDS.toNanos(1) / elapsed);
+            if (applied != received) {
+                System.out.printf("%,d events were not applied, so the events/s figure overstates the work done%n",
+                        received - applied);
+            }
+        }
+    }
+
+    /**
+     * Sends frames turning the sensors on and then off again until the deadline.
+     */
+    private static void send(IngestServer server, List<Sensor> sensors, long deadline) {
+        List<ByteBuffer> frames = new ArrayList<>();
+        for (boolean active : new boolean[]{true, false}) {
+            for (int from = 0; from < sensors.size(); from += IngestProtocol.MAX_RECORDS_PER_FRAME) {
+                List<Sensor> part = sensors.subList(from,
+                        Math.min(sensors.size(), from + IngestProtocol.MAX_RECORDS_PER_FRAME));
+                frames.add(frame(part, active));
+            }
+        }
+        long timestamp = 0;
+        try (SocketChannel channel = SocketChannel.open(server.getLocalAddress())) {
+            while (System.nanoTime() < deadline) {
+                for (ByteBuffer frame : frames) {
+                    //strictly increasing, so no resent frame is older than the last applied report
+                    timestamp = Math.max(timestamp + 1, System.currentTimeMillis());
+                    IngestProtocol.setTimestamps(frame, timestamp);
+                    frame.clear();
+                    while (frame.hasRemaining()) {
+                        channel.write(frame);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static ByteBuffer frame(List<Sensor> sensors, boolean active) {
+        ByteBuffer frame = ByteBuffer.allocateDirect(IngestProtocol.HEADER_BYTES
+                + sensors.size() * IngestProtocol.RECORD_BYTES);
+        frame.putInt(sensors.size());
+        for (Sensor sensor : sensors) {
+            //stamped before each send
+            IngestProtocol.putRecord(frame, sensor.getSensorId().getMostSignificantBits(),
+                    sensor.getSensorId().getLeastSignificantBits(), active, 0);
+        }
+        return frame;
+    }
+}
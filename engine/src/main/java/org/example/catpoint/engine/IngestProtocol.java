@@ -0,0 +1,55 @@
+package org.example.catpoint.engine;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Binary protocol that gateways use to report sensor states to the {@link IngestServer}.
+ *
+ * The connection carries a stream of frames, all numbers big-endian. A frame is a 4 byte
+ * record count, from 1 to {@link #MAX_RECORDS_PER_FRAME}, followed by that many 24 byte records:
+ * <ul>
+ *     <li>8 bytes: most significant half of the sensor's UUID</li>
+ *     <li>8 bytes: least significant half of the sensor's UUID</li>
+ *     <li>8 bytes: the top bit set if the sensor is active, and below it the time the gateway
+ *     saw the state, in milliseconds since the epoch</li>
+ * </ul>
+ * Nothing is sent back. A frame with an invalid record count closes the connection.
+ */
+final class IngestProtocol {
+
+    static final int HEADER_BYTES = 4;
+    static final int RECORD_BYTES = 24;
+    static final int MAX_RECORDS_PER_FRAME = 4096;
+    static final int MAX_FRAME_BYTES = HEADER_BYTES + MAX_RECORDS_PER_FRAME * RECORD_BYTES;
+
+    private static final long ACTIVE_BIT = Long.MIN_VALUE;
+
+    private IngestProtocol() {
+    }
+
+    static void putRecord(ByteBuffer frame, long mostSigBits, long leastSigBits, boolean active, long timestamp) {
+        frame.putLong(mostSigBits)
+                .putLong(leastSigBits)
+                .putLong(active ? timestamp | ACTIVE_BIT : timestamp & ~ACTIVE_BIT);
+    }
+
+    /**
+     * Rewrites the time of every record in a complete frame, keeping the sensors' states.
+     * @param frame Frame starting at index 0
+     */
+    static void setTimestamps(ByteBuffer frame, long timestamp) {
+        int records = frame.getInt(0);
+        for (int i = 0; i < records; i++) {
+            int offset = HEADER_BYTES + i * RECORD_BYTES + 16;
+            frame.putLong(offset, isActive(frame.getLong(offset)) ? timestamp | ACTIVE_BIT : timestamp & ~ACTIVE_BIT);
+        }
+    }
+
+    static boolean isActive(long stateAndTimestamp) {
+        return (stateAndTimestamp & ACTIVE_BIT) != 0;
+    }
+
+    static long timestamp(long stateAndTimestamp) {
+        return stateAndTimestamp & ~ACTIVE_BIT;
+    }
+}
@@ -0,0 +1,281 @@
+package org.example.catpoint.engine;
+
+import org.example.catpoint.security.service.SecurityService;
+import org.example.catpoint.security.service.SensorStateBatch;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Receives sensor states from gateways in the binary {@link IngestProtocol} and applies them to
+ * a SecurityService in batches.
+ *
+ * Connections are spread over a few reader threads, each with its own selector and its own
+ * reusable SensorStateBatch. A connection borrows a pooled direct buffer only while it has
+ * unprocessed bytes. Records are decoded straight from the buffer into the batch, and all
+ * complete frames from one read are applied with a single
+ * {@link SecurityService#applySensorStates(SensorStateBatch)} call, so decoding and applying
+ * records that leave sensors unchanged allocates nothing. A record that changes a sensor is
+ * passed on to the service's listeners, such as the EngineServer's broadcast to subscribers,
+ * which do allocate per change.
+ *
+ * Each record carries the time the gateway saw the state, and the service skips records older
+ * than the last one it applied for the sensor, so reports arriving out of order over different
+ * connections never overwrite a newer state.
+ */
+public class IngestServer implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(IngestServer.class);
+
+    public static final int DEFAULT_PORT = 7879;
+
+    private static final int ACCEPT_BACKLOG = 4096;
+    //room for a full frame plus the start of the next one
+    private static final int BUFFER_BYTES = 2 * IngestProtocol.MAX_FRAME_BYTES;
+    private static final int BATCH_RECORDS = 2 * IngestProtocol.MAX_RECORDS_PER_FRAME;
+
+    private final SecurityService securityService;
+    private final ServerSocketChannel serverChannel;
+    private final DirectBufferPool bufferPool;
+    private final Thread acceptor;
+    private final List<Reader> readers = new ArrayList<>();
+    private volatile boolean running;
+
+    private final AtomicInteger connectionCount = new AtomicInteger();
+    private final LongAdder framesReceived = new LongAdder();
+    private final LongAdder recordsReceived = new LongAdder();
+    private final LongAdder sensorsChanged = new LongAdder();
+
+    /**
+     * @param securityService Service the sensor states are applied to
+     * @param address Where to listen; port 0 picks a free port
+     * @param readerThreads Number of threads reading and applying sensor states
+     */
+    public IngestServer(SecurityService securityService, InetSocketAddress address, int readerThreads)
+            throws IOException {
+        this.securityService = securityService;
+        this.serverChannel = ServerSocketChannel.open();
+        serverChannel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+        serverChannel.bind(address, ACCEPT_BACKLOG);
+        this.bufferPool = new DirectBufferPool(BUFFER_BYTES, 2 * readerThreads);
+        for (int i = 0; i < readerThreads; i++) {
+            readers.add(new Reader(i + 1));
+        }
+        this.acceptor = new Thread(this::accept, "ingest-acceptor");
+    }
+
+    public void start() {
+        running = true;
+        readers.forEach(reader -> reader.thread.start());
+        acceptor.start();
+    }
+
+    public InetSocketAddress getLocalAddress() throws IOException {
+        return (InetSocketAddress) serverChannel.getLocalAddress();
+    }
+
+    public int getConnectionCount() {
+        return connectionCount.get();
+    }
+
+    public long getFramesReceived() {
+        return framesReceived.sum();
+    }
+
+    public long getRecordsReceived() {
+        return recordsReceived.sum();
+    }
+
+    /**
+     * @return Number of records that changed a sensor's state
+     */
+    public long getSensorsChanged() {
+        return sensorsChanged.sum();
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        serverChannel.close();
+        for (Reader reader : readers) {
+            reader.selector.wakeup();
+        }
+        try {
+            acceptor.join(TimeUnit.SECONDS.toMillis(5));
+            for (Reader reader : readers) {
+                reader.thread.join(TimeUnit.SECONDS.toMillis(5));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void accept() {
+        int next = 0;
+        while (running) {
+            try {
+                SocketChannel channel = serverChannel.accept();
+                channel.configureBlocking(false);
+                readers.get(next).add(channel);
+                next = (next + 1) % readers.size();
+            } catch (ClosedChannelException e) {
+                return;
+            } catch (IOException e) {
+                log.error("Unable to accept gateway", e);
+            }
+        }
+    }
+
+    /**
+     * A reader thread and the connections it serves.
+     */
+    private final class Reader implements Runnable {
+        private final Selector selector;
+        private final Thread thread;
+        private final Queue<SocketChannel> newChannels = new ConcurrentLinkedQueue<>();
+        private final SensorStateBatch batch = new SensorStateBatch(BATCH_RECORDS);
+
+        Reader(int number) throws IOException {
+            this.selector = Selector.open();
+            this.thread = new Thread(this, "ingest-reader-" + number);
+        }
+
+        void add(SocketChannel channel) {
+            newChannels.add(channel);
+            selector.wakeup();
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (running) {
+                    selector.select();
+                    SocketChannel channel;
+                    while ((channel = newChannels.poll()) != null) {
+                        channel.register(selector, SelectionKey.OP_READ, new Connection(channel));
+                        connectionCount.incrementAndGet();
+                    }
+                    Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                    while (keys.hasNext()) {
+                        SelectionKey key = keys.next();
+                        keys.remove();
+                        Connection connection = (Connection) key.attachment();
+                        try {
+                            if (key.isValid() && key.isReadable() && !read(connection)) {
+                                close(connection);
+                            }
+                        } catch (IOException e) {
+                            close(connection);
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                log.error("Ingest reader stopped", e);
+            } finally {
+                for (SelectionKey key : selector.keys()) {
+                    close((Connection) key.attachment());
+                }
+                try {
+                    selector.close();
+                } catch (IOException ignored) {
+                    //shutting down anyway
+                }
+            }
+        }
+
+        /**
+         * Reads what has arrived and applies every complete frame.
+         * @return False if the connection should be closed
+         */
+        private boolean read(Connection connection) throws IOException {
+            if (connection.buffer == null) {
+                connection.buffer = bufferPool.acquire();
+            }
+            ByteBuffer buffer = connection.buffer;
+            if (connection.channel.read(buffer) < 0) {
+                return false;
+            }
+            buffer.flip();
+            boolean valid = true;
+            while (valid) {
+                batch.clear();
+                int frames = 0;
+                int count;
+                //decode as many complete frames as fit in the batch
+                while (buffer.remaining() >= IngestProtocol.HEADER_BYTES) {
+                    count = buffer.getInt(buffer.position());
+                    if (count < 1 || count > IngestProtocol.MAX_RECORDS_PER_FRAME) {
+                        valid = false;
+                        break;
+                    }
+                    if (buffer.remaining() < IngestProtocol.HEADER_BYTES + count * IngestProtocol.RECORD_BYTES
+                            || count > batch.remaining()) {
+                        break;
+                    }
+                    buffer.position(buffer.position() + IngestProtocol.HEADER_BYTES);
+                    for (int i = 0; i < count; i++) {
+                        long mostSigBits = buffer.getLong();
+                        long leastSigBits = buffer.getLong();
+                        long stateAndTimestamp = buffer.getLong();
+                        batch.add(mostSigBits, leastSigBits, IngestProtocol.isActive(stateAndTimestamp),
+                                IngestProtocol.timestamp(stateAndTimestamp));
+                    }
+                    frames++;
+                }
+                if (frames == 0) {
+                    break;
+                }
+                //counted once applied, so the counters never run ahead of the service
+                sensorsChanged.add(securityService.applySensorStates(batch));
+                recordsReceived.add(batch.size());
+                framesReceived.add(frames);
+            }
+            buffer.compact();
+            if (buffer.position() == 0) {
+                bufferPool.release(buffer);
+                connection.buffer = null;
+            }
+            return valid;
+        }
+
+        private void close(Connection connection) {
+            try {
+                connection.channel.close();
+            } catch (IOException ignored) {
+                //the connection is gone either way
+            }
+            if (connection.buffer != null) {
+                bufferPool.release(connection.buffer);
+                connection.buffer = null;
+            }
+            connectionCount.decrementAndGet();
+        }
+    }
+
+    private static final class Connection {
+        private final SocketChannel channel;
+        private ByteBuffer buffer;
+
+        Connection(SocketChannel channel) {
+            this.channel = channel;
+        }
+    }
+}
@@ -0,0 +1,316 @@
+package org.example.catpoint.engine;
+
+import org.example.catpoint.image.service.DetectionResult;
+import org.example.catpoint.image.service.ImageService;
+import org.example.catpoint.security.application.StatusListener;
+import org.example.catpoint.security.data.AlarmStatus;
+import org.example.catpoint.security.data.ArmingStatus;
+import org.example.catpoint.security.data.InMemorySecurityRepositoryImpl;
+import org.example.catpoint.security.data.Sensor;
+import org.example.catpoint.security.data.SensorType;
+import org.example.catpoint.security.service.SecurityService;
+import org.example.catpoint.security.service.SensorStateBatch;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * SecurityService that is a client of an engine running elsewhere, so the Swing app can act as
+ * a console for a headless engine.
+ *
+ * Changes such as arming or activating a sensor are sent to the engine rather than applied here,
+ * and status listeners are told about them once the engine reports them back. Reads are answered
+ * from a local copy of the engine's state that the engine keeps up to date. Images are still
+ * scanned locally; only the detection results are sent.
+ *
+ * Commands are queued and written by a thread of their own, so callers such as Swing event
+ * handlers never block on the network. If the connection to the engine is lost, that is logged
+ * once, {@link #isConnected()} turns false and later commands are dropped rather than thrown
+ * back at the caller.
+ */
+public class RemoteSecurityService extends SecurityService implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(RemoteSecurityService.class);
+
+    private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(10);
+    private static final Duration SYNC_TIMEOUT = Duration.ofSeconds(30);
+
+    private final InMemorySecurityRepositoryImpl state;
+    private final Socket socket;
+    private final Writer writer;
+    private final Thread reader;
+    private final Thread sender;
+    private final BlockingQueue<String> commands = new LinkedBlockingQueue<>();
+    private final Set<StatusListener> statusListeners = new CopyOnWriteArraySet<>();
+    private final CountDownLatch synced = new CountDownLatch(1);
+    private final AtomicBoolean connected = new AtomicBoolean(true);
+    private volatile boolean closed;
+
+    private RemoteSecurityService(InMemorySecurityRepositoryImpl state, ImageService imageService,
+                                  InetSocketAddress engine) throws IOException {
+        super(state, imageService);
+        this.state = state;
+        this.socket = new Socket();
+        socket.connect(engine, (int) CONNECT_TIMEOUT.toMillis());
+        socket.setTcpNoDelay(true);
+        this.writer = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+        this.reader = new Thread(this::readEvents, "engine-client");
+        reader.setDaemon(true);
+        this.sender = new Thread(this::writeCommands, "engine-client-sender");
+        sender.setDaemon(true);
+    }
+
+    /**
+     * Connects to an engine and waits until its current state has been received.
+     * @param engine Address the engine listens on
+     * @param imageService Service that scans camera images locally
+     */
+    public static RemoteSecurityService connect(InetSocketAddress engine, ImageService imageService)
+            throws IOException {
+        RemoteSecurityService service = new RemoteSecurityService(new InMemorySecurityRepositoryImpl(),
+                imageService, engine);
+        service.reader.start();
+        service.sender.start();
+        service.send(EngineProtocol.SUBSCRIBE);
+        try {
+            if (!service.synced.await(SYNC_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS)) {
+                service.close();
+                throw new IOException("Engine at " + engine + " did not send its state in time");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            service.close();
+            throw new IOException("Interrupted while connecting to engine at " + engine, e);
+        }
+        return service;
+    }
+
+    @Override
+    public void setArmingStatus(ArmingStatus armingStatus) {
+        send(EngineProtocol.ARM + " " + armingStatus);
+    }
+
+    @Override
+    public void addStatusListener(StatusListener statusListener) {
+        statusListeners.add(statusListener);
+    }
+
+    @Override
+    public void removeStatusListener(StatusListener statusListener) {
+        statusListeners.remove(statusListener);
+    }
+
+    /**
+     * Passes the request on to the engine, which decides whether to honour it.
+     */
+    @Override
+    public void setAlarmStatus(AlarmStatus status) {
+        send(EngineProtocol.SET_ALARM + " " + status);
+    }
+
+    @Override
+    public void changeSensorActivationStatus(Sensor sensor, Boolean active) {
+        send((active ? EngineProtocol.ACTIVATE : EngineProtocol.DEACTIVATE) + " " + sensor.getSensorId());
+    }
+
+    @Override
+    public void addSensor(Sensor sensor) {
+        send(EngineProtocol.addLine(sensor));
+    }
+
+    @Override
+    public void removeSensor(Sensor sensor) {
+        send(EngineProtocol.REMOVE + " " + sensor.getSensorId());
+    }
+
+    /**
+     * Sends the result to the engine, which tracks each camera's state.
+     * @return Whether this result found a cat; the engine may still be waiting for more certainty
+     */
+    @Override
+    public boolean processDetection(String cameraId, DetectionResult result) {
+        send(EngineProtocol.DETECTION + " " + result.containsCat() + " " + result.getConfidence() + " "
+                + EngineProtocol.text(cameraId));
+        return result.containsCat();
+    }
+
+    @Override
+    public void removeCamera(String cameraId) {
+        super.removeCamera(cameraId);
+        send(EngineProtocol.FORGET + " " + EngineProtocol.text(cameraId));
+    }
+
+    /**
+     * Sends every record that differs from the engine's last reported state as a command, since
+     * only the engine may change sensors.
+     * @return The number of commands sent
+     */
+    @Override
+    public int applySensorStates(SensorStateBatch batch) {
+        int sent = 0;
+        for (int i = 0; i < batch.size(); i++) {
+            Sensor sensor = state.getSensor(batch.getMostSigBits(i), batch.getLeastSigBits(i));
+            if (sensor != null && sensor.getActive() != batch.isActive(i)) {
+                changeSensorActivationStatus(sensor, batch.isActive(i));
+                sent++;
+            }
+        }
+        return sent;
+    }
+
+    /**
+     * @return False once the connection to the engine has been lost or closed
+     */
+    public boolean isConnected() {
+        return connected.get();
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        connected.set(false);
+        sender.interrupt();
+        socket.close();
+    }
+
+    /**
+     * Queues a command for the engine. Never blocks.
+     */
+    private void send(String line) {
+        if (!connected.get()) {
+            log.warn("Not connected to the engine, dropped command: {}", line);
+            return;
+        }
+        commands.add(line);
+    }
+
+    /**
+     * Writes queued commands, all that are waiting at once, until the connection closes.
+     */
+    private void writeCommands() {
+        List<String> lines = new ArrayList<>();
+        try {
+            while (true) {
+                lines.add(commands.take());
+                commands.drainTo(lines);
+                for (String line : lines) {
+                    writer.write(line);
+                    writer.write('\n');
+                }
+                writer.flush();
+                lines.clear();
+            }
+        } catch (InterruptedException e) {
+            //closed
+        } catch (IOException e) {
+            connectionLost(e);
+        }
+    }
+
+    private void readEvents() {
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(),
+                StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                try {
+                    apply(line);
+                } catch (RuntimeException e) {
+                    //one malformed event or failing listener must not stop the updates that follow
+                    log.warn("Unable to apply event from engine: {}", line, e);
+                }
+            }
+            connectionLost(new EOFException("The engine closed the connection"));
+        } catch (IOException e) {
+            connectionLost(e);
+        }
+    }
+
+    /**
+     * Called by the reader or sender when the engine can no longer be reached.
+     */
+    private void connectionLost(IOException e) {
+        if (closed || !connected.compareAndSet(true, false)) {
+            return;
+        }
+        log.error("Lost connection to the engine", e);
+        commands.clear();
+        sender.interrupt();
+        try {
+            socket.close();
+        } catch (IOException ignored) {
+            //the connection is gone either way
+        }
+    }
+
+    /**
+     * Applies an event from the engine to the local state and tells the listeners.
+     */
+    private void apply(String line) {
+        String event = line.split(" ", 2)[0];
+        switch (event) {
+            case EngineProtocol.SENSOR -> {
+                String[] fields = EngineProtocol.fields(line, 4);
+                //a new object each time, so listeners never see a sensor change under them
+                Sensor sensor = new Sensor(UUID.fromString(fields[1]), fields[4], SensorType.valueOf(fields[2]),
+                        Boolean.parseBoolean(fields[3]));
+                Sensor previous = state.getSensor(sensor.getSensorId());
+                state.updateSensor(sensor);
+                if (previous == null) {
+                    statusListeners.forEach(sl -> sl.sensorAdded(sensor));
+                } else if (sensor.getActive() && !previous.getActive()) {
+                    statusListeners.forEach(sl -> sl.sensorActivated(sensor));
+                } else if (!sensor.getActive() && previous.getActive()) {
+                    statusListeners.forEach(sl -> sl.sensorDeactivated(sensor));
+                }
+            }
+            case EngineProtocol.REMOVED -> {
+                Sensor sensor = state.getSensor(UUID.fromString(EngineProtocol.fields(line, 1)[1]));
+                if (sensor != null) {
+                    state.removeSensor(sensor);
+                    statusListeners.forEach(sl -> sl.sensorRemoved(sensor));
+                }
+            }
+            case EngineProtocol.ALARM -> {
+                String[] fields = EngineProtocol.fields(line, 2);
+                AlarmStatus current = AlarmStatus.valueOf(fields[2]);
+                state.setAlarmStatus(current);
+                statusListeners.forEach(sl -> sl.alarmStatusChanged(AlarmStatus.valueOf(fields[1]), current));
+            }
+            case EngineProtocol.ARMING -> {
+                String[] fields = EngineProtocol.fields(line, 2);
+                ArmingStatus current = ArmingStatus.valueOf(fields[2]);
+                state.setArmingStatus(current);
+                statusListeners.forEach(sl -> sl.armingStatusChanged(ArmingStatus.valueOf(fields[1]), current));
+            }
+            case EngineProtocol.CAT -> {
+                boolean cat = Boolean.parseBoolean(EngineProtocol.fields(line, 1)[1]);
+                statusListeners.forEach(sl -> sl.catDetected(cat));
+            }
+            case EngineProtocol.SYNCED -> synced.countDown();
+            case EngineProtocol.ERROR -> log.warn("Engine refused a command: {}", line);
+            default -> log.warn("Unknown event from engine: {}", line);
+        }
+    }
+}
@@ -0,0 +1,296 @@
+package org.example.catpoint.engine;
+
+import org.example.catpoint.image.service.ImageService;
+import org.example.catpoint.security.application.StatusListener;
+import org.example.catpoint.security.data.*;
+import org.example.catpoint.security.service.SecurityService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+public class EngineServerTest {
+
+    private static final int GATEWAYS = 2000;
+    private static final int RACING_SENSORS = 1000;
+
+    @TempDir
+    Path directory;
+
+    private EventLogSecurityRepositoryImpl repository;
+    private SecurityService securityService;
+    private EngineServer server;
+    private final List<AutoCloseable> clients = new ArrayList<>();
+
+    @BeforeEach
+    private void setUp() throws IOException {
+        repository = new EventLogSecurityRepositoryImpl(directory);
+        securityService = new SecurityService(repository, mock(ImageService.class));
+        server = new EngineServer(securityService, new InetSocketAddress("127.0.0.1", 0));
+        server.start();
+    }
+
+    @AfterEach
+    private void tearDown() throws Exception {
+        for (AutoCloseable client : clients) {
+            client.close();
+        }
+        server.close();
+        repository.close();
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "Timed out waiting");
+            Thread.sleep(5);
+        }
+    }
+
+    private SocketChannel gateway() throws IOException {
+        SocketChannel channel = SocketChannel.open(server.getLocalAddress());
+        clients.add(channel);
+        return channel;
+    }
+
+    private static void write(SocketChannel channel, String line) throws IOException {
+        ByteBuffer bytes = StandardCharsets.UTF_8.encode(line + "\n");
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+    }
+
+    /**
+     * Reads one line a byte at a time, which is slow but never reads past the line.
+     */
+    private static String readLine(SocketChannel channel) throws IOException {
+        StringBuilder line = new StringBuilder();
+        ByteBuffer b = ByteBuffer.allocate(1);
+        while (true) {
+            b.clear();
+            if (channel.read(b) < 0) {
+                throw new IOException("Connection closed after: " + line);
+            }
+            char c = (char) b.get(0);
+            if (c == '\n') {
+                return line.toString();
+            }
+            line.append(c);
+        }
+    }
+
+    private static void skipUntil(SocketChannel channel, String line) throws IOException {
+        while (!readLine(channel).equals(line)) {
+            //state sent before the line
+        }
+    }
+
+    @Test
+    public void remoteClientChangesAppliedByEngineAndReportedBack() throws Exception {
+        Sensor existing = new Sensor("Front Door", SensorType.DOOR);
+        securityService.addSensor(existing);
+        RemoteSecurityService client = RemoteSecurityService.connect(server.getLocalAddress(), mock(ImageService.class));
+        clients.add(client);
+        BlockingQueue<AlarmStatus> alarms = new LinkedBlockingQueue<>();
+        client.addStatusListener(new StatusListener() {
+            @Override
+            public void notify(AlarmStatus status) {
+                alarms.add(status);
+            }
+
+            @Override
+            public void catDetected(boolean catDetected) {
+            }
+
+            @Override
+            public void sensorStatusChanged() {
+            }
+        });
+        assertEquals(1, client.getSensorCount());
+        assertEquals("Front Door", client.getSensor(existing.getSensorId()).getName());
+
+        Sensor window = new Sensor("Back Window", SensorType.WINDOW);
+        client.addSensor(window);
+        client.setArmingStatus(ArmingStatus.ARMED_HOME);
+        await(() -> client.getSensorCount() == 2 && client.getArmingStatus() == ArmingStatus.ARMED_HOME);
+        client.changeSensorActivationStatus(client.getSensor(window.getSensorId()), true);
+
+        assertEquals(AlarmStatus.PENDING_ALARM, alarms.poll(10, TimeUnit.SECONDS));
+        assertEquals(AlarmStatus.PENDING_ALARM, securityService.getAlarmStatus());
+        assertEquals(AlarmStatus.PENDING_ALARM, client.getAlarmStatus());
+        assertTrue(securityService.getSensor(window.getSensorId()).getActive());
+        await(() -> client.getSensor(window.getSensorId()).getActive());
+    }
+
+    @Test
+    public void unknownSensorRefusedAndConnectionKept() throws Exception {
+        SocketChannel gateway = gateway();
+        write(gateway, "ACTIVATE " + new Sensor("Missing", SensorType.MOTION).getSensorId());
+        assertTrue(readLine(gateway).startsWith("ERROR No sensor"));
+        write(gateway, "ARM ARMED_AWAY");
+        write(gateway, "SUBSCRIBE");
+        assertEquals("ARMING ARMED_AWAY ARMED_AWAY", readLine(gateway));
+    }
+
+    @Test
+    public void commandFailingInEngineErrorSentAndConnectionKept() throws Exception {
+        StatusListener failing = new StatusListener() {
+            @Override
+            public void notify(AlarmStatus status) {
+            }
+
+            @Override
+            public void catDetected(boolean catDetected) {
+            }
+
+            @Override
+            public void sensorStatusChanged() {
+            }
+
+            @Override
+            public void armingStatusChanged(ArmingStatus previous, ArmingStatus current) {
+                throw new IllegalStateException("listener failed");
+            }
+        };
+        securityService.addStatusListener(failing);
+        SocketChannel gateway = gateway();
+        write(gateway, "ARM ARMED_AWAY");
+        assertEquals("ERROR ARM failed", readLine(gateway));
+
+        securityService.removeStatusListener(failing);
+        write(gateway, "ARM DISARMED");
+        write(gateway, "SUBSCRIBE");
+        assertEquals("ARMING DISARMED DISARMED", readLine(gateway));
+    }
+
+    @Test
+    public void thousandsOfSubscribedGatewaysAllReceiveChanges() throws Exception {
+        List<SocketChannel> gateways = new ArrayList<>();
+        for (int i = 0; i < GATEWAYS; i++) {
+            SocketChannel gateway = gateway();
+            write(gateway, "SUBSCRIBE");
+            gateways.add(gateway);
+        }
+        for (SocketChannel gateway : gateways) {
+            skipUntil(gateway, "SYNCED");
+        }
+        assertEquals(GATEWAYS, server.getConnectionCount());
+
+        Sensor sensor = new Sensor("Hall", SensorType.MOTION);
+        write(gateways.get(0), EngineProtocol.addLine(sensor));
+
+        String expected = "SENSOR " + sensor.getSensorId() + " MOTION false Hall";
+        for (SocketChannel gateway : gateways) {
+            assertEquals(expected, readLine(gateway));
+        }
+    }
+
+    @Test
+    public void alarmStatusSetByClientRefusedByEngine() throws Exception {
+        RemoteSecurityService client = RemoteSecurityService.connect(server.getLocalAddress(), mock(ImageService.class));
+        clients.add(client);
+
+        client.setAlarmStatus(AlarmStatus.ALARM);
+        client.setArmingStatus(ArmingStatus.ARMED_AWAY);
+
+        //commands are handled in order, so the refusal is done once the arming comes back
+        await(() -> client.getArmingStatus() == ArmingStatus.ARMED_AWAY);
+        assertEquals(AlarmStatus.NO_ALARM, securityService.getAlarmStatus());
+        assertEquals(AlarmStatus.NO_ALARM, client.getAlarmStatus());
+        assertTrue(client.isConnected());
+    }
+
+    @Test
+    public void engineGoneCommandsDroppedWithoutThrowing() throws Exception {
+        RemoteSecurityService client = RemoteSecurityService.connect(server.getLocalAddress(), mock(ImageService.class));
+        clients.add(client);
+        assertTrue(client.isConnected());
+
+        server.close();
+
+        await(() -> !client.isConnected());
+        assertDoesNotThrow(() -> client.setArmingStatus(ArmingStatus.ARMED_HOME));
+        assertDoesNotThrow(() -> client.addSensor(new Sensor("Hall", SensorType.MOTION)));
+        assertEquals(ArmingStatus.DISARMED, client.getArmingStatus());
+    }
+
+    @Test
+    public void malformedEventFromEngineSkippedAndLaterEventsApplied() throws Exception {
+        try (ServerSocketChannel engine = ServerSocketChannel.open()) {
+            engine.bind(new InetSocketAddress("127.0.0.1", 0));
+            Thread fakeEngine = new Thread(() -> {
+                try {
+                    SocketChannel channel = engine.accept();
+                    clients.add(channel);
+                    assertEquals("SUBSCRIBE", readLine(channel));
+                    write(channel, "SENSOR not-a-uuid DOOR true Hall");
+                    write(channel, "SYNCED");
+                    write(channel, "ARMING DISARMED ARMED_AWAY");
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            fakeEngine.start();
+
+            RemoteSecurityService client = RemoteSecurityService.connect(
+                    (InetSocketAddress) engine.getLocalAddress(), mock(ImageService.class));
+            clients.add(client);
+            fakeEngine.join();
+
+            await(() -> client.getArmingStatus() == ArmingStatus.ARMED_AWAY);
+            assertTrue(client.isConnected());
+            assertTrue(client.getSensors().isEmpty());
+        }
+    }
+
+    @Test
+    public void sensorsRemovedWhileSubscribingNotLeftInClientState() throws Exception {
+        List<Sensor> sensors = new ArrayList<>();
+        for (int i = 0; i < RACING_SENSORS; i++) {
+            Sensor sensor = new Sensor("Sensor " + i, SensorType.DOOR);
+            securityService.addSensor(sensor);
+            sensors.add(sensor);
+        }
+        SocketChannel gateway = gateway();
+        Thread remover = new Thread(() -> sensors.forEach(securityService::removeSensor));
+
+        write(gateway, "SUBSCRIBE");
+        remover.start();
+        remover.join();
+        Sensor marker = new Sensor("Marker", SensorType.MOTION);
+        securityService.addSensor(marker);
+
+        //apply what the client receives, up to the change made after all the removals
+        Set<String> clientSensors = new HashSet<>();
+        String markerLine = EngineProtocol.sensorLine(marker);
+        String line;
+        while (!(line = readLine(gateway)).equals(markerLine)) {
+            if (line.startsWith(EngineProtocol.SENSOR + " ")) {
+                clientSensors.add(line.split(" ")[1]);
+            } else if (line.startsWith(EngineProtocol.REMOVED + " ")) {
+                clientSensors.remove(line.split(" ")[1]);
+            }
+        }
+        assertEquals(Set.of(), clientSensors);
+    }
+}
@@ -0,0 +1,170 @@
+package org.example.catpoint.engine;
+
+import org.example.catpoint.image.service.ImageService;
+import org.example.catpoint.security.data.*;
+import org.example.catpoint.security.service.SecurityService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+public class IngestServerTest {
+
+    private SecurityService securityService;
+    private IngestServer server;
+    private final List<SocketChannel> gateways = new ArrayList<>();
+
+    @BeforeEach
+    private void setUp() throws IOException {
+        securityService = new SecurityService(new InMemorySecurityRepositoryImpl(), mock(ImageService.class));
+        server = new IngestServer(securityService, new InetSocketAddress("127.0.0.1", 0), 2);
+        server.start();
+    }
+
+    @AfterEach
+    private void tearDown() throws IOException {
+        for (SocketChannel gateway : gateways) {
+            gateway.close();
+        }
+        server.close();
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "Timed out waiting");
+            Thread.sleep(5);
+        }
+    }
+
+    private SocketChannel gateway() throws IOException {
+        SocketChannel channel = SocketChannel.open(server.getLocalAddress());
+        gateways.add(channel);
+        return channel;
+    }
+
+    private static void write(SocketChannel channel, ByteBuffer bytes) throws IOException {
+        bytes.flip();
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+    }
+
+    private static ByteBuffer frame(List<UUID> sensorIds, boolean active) {
+        ByteBuffer frame = ByteBuffer.allocate(IngestProtocol.HEADER_BYTES + sensorIds.size() * IngestProtocol.RECORD_BYTES);
+        frame.putInt(sensorIds.size());
+        for (UUID sensorId : sensorIds) {
+            IngestProtocol.putRecord(frame, sensorId.getMostSignificantBits(), sensorId.getLeastSignificantBits(),
+                    active, System.currentTimeMillis());
+        }
+        return frame;
+    }
+
+    private Sensor addSensor(String name) {
+        Sensor sensor = new Sensor(name, SensorType.DOOR);
+        securityService.addSensor(sensor);
+        return sensor;
+    }
+
+    @Test
+    public void framesActivateSensorsAndRaiseAlarm() throws Exception {
+        Sensor door = addSensor("Door");
+        Sensor window = addSensor("Window");
+        securityService.setArmingStatus(ArmingStatus.ARMED_HOME);
+
+        SocketChannel gateway = gateway();
+        write(gateway, frame(List.of(door.getSensorId(), UUID.randomUUID(), window.getSensorId()), true));
+
+        await(() -> server.getRecordsReceived() == 3);
+        assertTrue(securityService.getSensor(door.getSensorId()).getActive());
+        assertTrue(securityService.getSensor(window.getSensorId()).getActive());
+        assertEquals(2, server.getSensorsChanged());
+        assertEquals(AlarmStatus.ALARM, securityService.getAlarmStatus());
+    }
+
+    @Test
+    public void frameSplitAcrossWritesAppliedWhenComplete() throws Exception {
+        Sensor door = addSensor("Door");
+        ByteBuffer frame = frame(List.of(door.getSensorId()), true);
+        frame.flip();
+        ByteBuffer start = frame.duplicate().limit(10);
+        ByteBuffer rest = frame.duplicate().position(10);
+
+        SocketChannel gateway = gateway();
+        gateway.write(start);
+        await(() -> server.getConnectionCount() == 1);
+        Thread.sleep(50);
+        assertEquals(0, server.getFramesReceived());
+        assertFalse(securityService.getSensor(door.getSensorId()).getActive());
+
+        gateway.write(rest);
+        await(() -> server.getFramesReceived() == 1);
+        assertTrue(securityService.getSensor(door.getSensorId()).getActive());
+    }
+
+    @Test
+    public void manyFramesInOneWriteAllApplied() throws Exception {
+        List<UUID> sensorIds = new ArrayList<>();
+        for (int i = 0; i < 3 * IngestProtocol.MAX_RECORDS_PER_FRAME; i++) {
+            sensorIds.add(addSensor("Sensor " + i).getSensorId());
+        }
+        ByteBuffer frames = ByteBuffer.allocate(6 * IngestProtocol.MAX_FRAME_BYTES);
+        for (boolean active : new boolean[]{true, false}) {
+            for (int from = 0; from < sensorIds.size(); from += IngestProtocol.MAX_RECORDS_PER_FRAME) {
+                frames.put(frame(sensorIds.subList(from, from + IngestProtocol.MAX_RECORDS_PER_FRAME), active).flip());
+            }
+        }
+
+        write(gateway(), frames);
+
+        await(() -> server.getFramesReceived() == 6);
+        assertEquals(2L * sensorIds.size(), server.getSensorsChanged());
+        assertTrue(sensorIds.stream().noneMatch(id -> securityService.getSensor(id).getActive()));
+    }
+
+    @Test
+    public void resentFrameAppliedOnlyWithNewerTimestamp() throws Exception {
+        Sensor door = addSensor("Door");
+        ByteBuffer on = frame(List.of(door.getSensorId()), true);
+        ByteBuffer off = frame(List.of(door.getSensorId()), false);
+        IngestProtocol.setTimestamps(on, 1000);
+        IngestProtocol.setTimestamps(off, 1001);
+        SocketChannel gateway = gateway();
+
+        write(gateway, on);
+        write(gateway, off);
+        write(gateway, on.position(on.limit()));
+        await(() -> server.getFramesReceived() == 3);
+        assertFalse(securityService.getSensor(door.getSensorId()).getActive());
+        assertEquals(2, server.getSensorsChanged());
+
+        IngestProtocol.setTimestamps(on, 1002);
+        write(gateway, on.position(on.limit()));
+        await(() -> server.getFramesReceived() == 4);
+        assertTrue(securityService.getSensor(door.getSensorId()).getActive());
+        assertEquals(3, server.getSensorsChanged());
+    }
+
+    @Test
+    public void invalidRecordCountClosesConnection() throws Exception {
+        SocketChannel gateway = gateway();
+        await(() -> server.getConnectionCount() == 1);
+
+        write(gateway, ByteBuffer.allocate(IngestProtocol.HEADER_BYTES).putInt(IngestProtocol.MAX_RECORDS_PER_FRAME + 1));
+
+        await(() -> server.getConnectionCount() == 0);
+        assertEquals(-1, gateway.read(ByteBuffer.allocate(1)));
+    }
+}
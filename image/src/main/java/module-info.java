@@ -1,5 +1,5 @@
 module image {
-    exports org.example.catpoint.image.service to security, app;
+    exports org.example.catpoint.image.service to security, app, engine;
     requires software.amazon.awssdk.auth;
     requires software.amazon.awssdk.core;
     requires software.amazon.awssdk.regions;
@@ -10,14 +10,25 @@ import software.amazon.awssdk.regions.Region;
 import software.amazon.awssdk.services.rekognition.RekognitionClient;
 import software.amazon.awssdk.services.rekognition.model.DetectLabelsRequest;
 import software.amazon.awssdk.services.rekognition.model.DetectLabelsResponse;
+import software.amazon.awssdk.services.rekognition.model.BoundingBox;
 import software.amazon.awssdk.services.rekognition.model.Image;
+import software.amazon.awssdk.services.rekognition.model.Instance;
+import software.amazon.awssdk.services.rekognition.model.Label;
 
-import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
 import java.util.stream.Collectors;
 
 /**
@@ -40,6 +51,16 @@ public class AwsImageService implements ImageService {
     //aws recommendation is to maintain only a single instance of client objects
     private static RekognitionClient rekognitionClient;
 
+    private static final int MAX_CONCURRENT_REQUESTS = 4;
+    //largest image Rekognition accepts as raw bytes
+    private static final int MAX_IMAGE_BYTES = 5 * 1024 * 1024;
+
+    private final JpegEncoder jpegEncoder = new JpegEncoder();
+    //requests block on the network, so each gets a virtual thread and only requestPermits limits them
+    private final ExecutorService requestExecutor = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("rekognition-request-", 1).factory());
+    private final Semaphore requestPermits = new Semaphore(MAX_CONCURRENT_REQUESTS);
+
     public AwsImageService() {
         Properties props = new Properties();
         try (InputStream is = getClass().getClassLoader().getResourceAsStream("config.properties")) {
@@ -67,18 +88,104 @@ public class AwsImageService implements ImageService {
      * @return
      */
     public boolean imageContainsCat(BufferedImage image, float confidenceThreshhold) {
+        return containsCat(ImageInput.of(image), confidenceThreshhold);
+    }
+
+    /**
+     * Returns true if the provided image contains a cat. Encoded images are sent as they are
+     * unless they exceed Rekognition's size limit; decoded and oversized images are scaled down
+     * and encoded with a pooled JPEG encoder.
+     */
+    @Override
+    public boolean containsCat(ImageInput image, float confidenceThreshhold) {
+        return detect(image, confidenceThreshhold).containsCat();
+    }
+
+    @Override
+    public DetectionResult classifyInput(ImageInput image, float confidenceThreshhold) {
+        return detect(image, confidenceThreshhold);
+    }
+
+    @Override
+    public DetectionResult classify(BufferedImage image, float confidenceThreshhold) {
+        return detect(ImageInput.of(image), confidenceThreshhold);
+    }
+
+    /**
+     * Sends the images to Rekognition in parallel, each from its own virtual thread.
+     */
+    @Override
+    public List<DetectionResult> classifyBatch(List<BufferedImage> images, float confidenceThreshhold) {
+        List<Future<DetectionResult>> pending = new ArrayList<>(images.size());
+        for (BufferedImage image : images) {
+            pending.add(requestExecutor.submit(() -> classify(image, confidenceThreshhold)));
+        }
+        List<DetectionResult> results = new ArrayList<>(images.size());
+        try {
+            for (Future<DetectionResult> result : pending) {
+                results.add(result.get());
+            }
+        } catch (InterruptedException e) {
+            pending.forEach(result -> result.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Interrupted while waiting for Rekognition");
+        } catch (ExecutionException e) {
+            pending.forEach(result -> result.cancel(true));
+            Throwable cause = e.getCause();
+            throw cause instanceof RuntimeException ? (RuntimeException) cause : new CompletionException(cause);
+        }
+        return results;
+    }
+
+    private DetectionResult detect(ImageInput image, float confidenceThreshhold) {
+        long start = System.nanoTime();
         Image awsImage = null;
-        try (ByteArrayOutputStream os = new ByteArrayOutputStream()) {
-            ImageIO.write(image, "jpg", os);
-            awsImage = Image.builder().bytes(SdkBytes.fromByteArray(os.toByteArray())).build();
+        try {
+            byte[] bytes = image.isEncoded() ? image.encodedBytes() : null;
+            if (bytes == null || bytes.length > MAX_IMAGE_BYTES) {
+                bytes = jpegEncoder.encode(image.toImage());
+            }
+            //neither array is modified after this point, so the SDK may use it without copying
+            awsImage = Image.builder().bytes(SdkBytes.fromByteArrayUnsafe(bytes)).build();
         } catch (IOException ioe) {
             log.error("Error building image byte array", ioe);
-            return false;
+            return new DetectionResult(false, 0.0f, List.of(), Duration.ofNanos(System.nanoTime() - start));
         }
         DetectLabelsRequest detectLabelsRequest = DetectLabelsRequest.builder().image(awsImage).minConfidence(confidenceThreshhold).build();
-        DetectLabelsResponse response = rekognitionClient.detectLabels(detectLabelsRequest);
+        DetectLabelsResponse response;
+        //at most MAX_CONCURRENT_REQUESTS requests in flight, so that many cameras scanning at once
+        //cannot exhaust the account's rate limit
+        try {
+            requestPermits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Interrupted while waiting to call Rekognition");
+        }
+        try {
+            response = rekognitionClient.detectLabels(detectLabelsRequest);
+        } finally {
+            requestPermits.release();
+        }
+        Duration latency = Duration.ofNanos(System.nanoTime() - start);
         logLabelsForFun(response);
-        return response.labels().stream().filter(l -> l.name().toLowerCase().contains("cat")).findFirst().isPresent();
+
+        List<DetectionResult.Label> labels = new ArrayList<>(response.labels().size());
+        float catConfidence = 0.0f;
+        for (Label label : response.labels()) {
+            List<DetectionResult.BoundingBox> boxes = new ArrayList<>();
+            for (Instance instance : label.instances()) {
+                BoundingBox box = instance.boundingBox();
+                if (box != null) {
+                    boxes.add(new DetectionResult.BoundingBox(box.left(), box.top(), box.width(), box.height()));
+                }
+            }
+            labels.add(new DetectionResult.Label(label.name(), label.confidence(), boxes));
+            if (label.name().toLowerCase().contains("cat")) {
+                catConfidence = Math.max(catConfidence, label.confidence());
+            }
+        }
+        //labels below the threshold are not returned, so any cat label means the threshold was met
+        return new DetectionResult(catConfidence > 0, catConfidence, labels, latency);
     }
 
     private void logLabelsForFun(DetectLabelsResponse response) {
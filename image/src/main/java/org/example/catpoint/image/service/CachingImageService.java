@@ -0,0 +1,299 @@
+package org.example.catpoint.image.service;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Image service decorator that remembers recent results so that frames a camera sends again
+ * are not re-encoded and sent to the wrapped service.
+ *
+ * Results are keyed by a hash of the image and the confidence threshold. In EXACT mode the
+ * hash covers every pixel, so only identical frames share a result. In PERCEPTUAL mode a
+ * 64-bit difference hash of a tiny grayscale copy is used, and frames whose hashes differ in
+ * at most maxHammingDistance bits are treated as the same frame. Entries expire after the
+ * time to live and the least recently used entry is evicted once the cache is full.
+ */
+public class CachingImageService implements ImageService {
+
+    /**
+     * How images are reduced to a cache key.
+     */
+    public enum HashMode {
+        /** Hash of every pixel; only identical frames hit. */
+        EXACT,
+        /** Difference hash of a 9x8 grayscale thumbnail; near-identical frames hit. */
+        PERCEPTUAL
+    }
+
+    private static final int DEFAULT_MAX_ENTRIES = 256;
+    private static final Duration DEFAULT_TTL = Duration.ofSeconds(30);
+
+    private final ImageService delegate;
+    private final HashMode hashMode;
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final int maxHammingDistance;
+    private final Map<Key, CachedResult> cache;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public CachingImageService(ImageService delegate) {
+        this(delegate, HashMode.EXACT, DEFAULT_MAX_ENTRIES, DEFAULT_TTL, 0);
+    }
+
+    /**
+     * @param delegate The service that scans images missing from the cache
+     * @param hashMode How images are reduced to a cache key
+     * @param maxEntries Maximum number of cached results
+     * @param ttl How long a cached result stays valid
+     * @param maxHammingDistance In PERCEPTUAL mode, the number of hash bits two frames may differ
+     *                           in and still share a result. Ignored in EXACT mode.
+     */
+    public CachingImageService(ImageService delegate, HashMode hashMode, int maxEntries, Duration ttl,
+                               int maxHammingDistance) {
+        if (maxEntries < 1 || ttl.isNegative() || ttl.isZero() || maxHammingDistance < 0) {
+            throw new IllegalArgumentException("maxEntries and ttl must be positive");
+        }
+        this.delegate = delegate;
+        this.hashMode = hashMode;
+        this.maxEntries = maxEntries;
+        this.ttlNanos = ttl.toNanos();
+        this.maxHammingDistance = hashMode == HashMode.PERCEPTUAL ? maxHammingDistance : 0;
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, CachedResult> eldest) {
+                if (size() > CachingImageService.this.maxEntries) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    @Override
+    public boolean imageContainsCat(BufferedImage image, float confidenceThreshhold) {
+        if (image == null) {
+            return delegate.imageContainsCat(null, confidenceThreshhold);
+        }
+        return classify(image, confidenceThreshhold).containsCat();
+    }
+
+    /**
+     * Cached results keep the confidence, labels and latency of the scan that produced them.
+     */
+    @Override
+    public DetectionResult classify(BufferedImage image, float confidenceThreshhold) {
+        if (image == null) {
+            return delegate.classify(null, confidenceThreshhold);
+        }
+        long hash = hashMode == HashMode.EXACT ? exactHash(image) : differenceHash(image);
+        return lookupOrScan(new Key(hash, confidenceThreshhold),
+                () -> delegate.classify(image, confidenceThreshhold));
+    }
+
+    /**
+     * In EXACT mode encoded images are keyed by their bytes, so they are neither decoded nor
+     * re-encoded on the way to the wrapped service. PERCEPTUAL mode has to decode them to hash
+     * the pixels, but still passes the original input on.
+     */
+    @Override
+    public boolean containsCat(ImageInput image, float confidenceThreshhold) {
+        return classifyInput(image, confidenceThreshhold).containsCat();
+    }
+
+    @Override
+    public DetectionResult classifyInput(ImageInput image, float confidenceThreshhold) {
+        long hash;
+        try {
+            if (!image.isEncoded()) {
+                return classify(image.toImage(), confidenceThreshhold);
+            }
+            hash = hashMode == HashMode.EXACT ? bytesHash(image.encodedBytes()) : differenceHash(image.toImage());
+        } catch (IOException ioe) {
+            throw new UncheckedIOException(ioe);
+        }
+        return lookupOrScan(new Key(hash, confidenceThreshhold),
+                () -> delegate.classifyInput(image, confidenceThreshhold));
+    }
+
+    private DetectionResult lookupOrScan(Key key, Supplier<DetectionResult> scan) {
+        long now = System.nanoTime();
+        DetectionResult cached = lookup(key, now);
+        if (cached != null) {
+            hits.increment();
+            return cached;
+        }
+        misses.increment();
+
+        //the delegate may be slow, so it is called without holding the cache lock
+        DetectionResult result = scan.get();
+        synchronized (cache) {
+            cache.put(key, new CachedResult(result, now + ttlNanos));
+        }
+        return result;
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * @return The number of entries dropped because the cache was full or they expired
+     */
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    public double getHitRatio() {
+        long hitCount = hits.sum();
+        long total = hitCount + misses.sum();
+        return total == 0 ? 0.0 : (double) hitCount / total;
+    }
+
+    private DetectionResult lookup(Key key, long now) {
+        synchronized (cache) {
+            CachedResult entry = cache.get(key);
+            if (entry == null && maxHammingDistance > 0) {
+                entry = nearestMatch(key);
+            }
+            if (entry == null) {
+                return null;
+            }
+            if (entry.expiresAt - now < 0) {
+                removeExpired(now);
+                return null;
+            }
+            return entry.result;
+        }
+    }
+
+    private CachedResult nearestMatch(Key key) {
+        for (Map.Entry<Key, CachedResult> candidate : cache.entrySet()) {
+            Key other = candidate.getKey();
+            if (other.threshold == key.threshold
+                    && Long.bitCount(other.hash ^ key.hash) <= maxHammingDistance) {
+                return candidate.getValue();
+            }
+        }
+        return null;
+    }
+
+    private void removeExpired(long now) {
+        Iterator<CachedResult> entries = cache.values().iterator();
+        while (entries.hasNext()) {
+            if (entries.next().expiresAt - now < 0) {
+                entries.remove();
+                evictions.increment();
+            }
+        }
+    }
+
+    /**
+     * 64-bit multiply-xorshift hash over every pixel, reading one row at a time.
+     */
+    static long exactHash(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        long hash = 0x9E3779B97F4A7C15L ^ ((long) width << 32 | height);
+        int[] row = new int[width];
+        for (int y = 0; y < height; y++) {
+            image.getRGB(0, y, width, 1, row, 0, width);
+            for (int pixel : row) {
+                hash = (hash ^ pixel) * 0x100000001B3L;
+                hash ^= hash >>> 29;
+            }
+        }
+        return hash;
+    }
+
+    static long bytesHash(byte[] bytes) {
+        long hash = 0x9E3779B97F4A7C15L ^ bytes.length;
+        for (byte b : bytes) {
+            hash = (hash ^ b) * 0x100000001B3L;
+            hash ^= hash >>> 29;
+        }
+        return hash;
+    }
+
+    /**
+     * Difference hash: shrink the image to 9x8 grayscale cells and set one bit per cell
+     * depending on whether it is brighter than its right-hand neighbour.
+     */
+    static long differenceHash(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        long hash = 0;
+        for (int y = 0; y < 8; y++) {
+            int previous = cellLuminance(image, 0, y, width, height);
+            for (int x = 1; x < 9; x++) {
+                int current = cellLuminance(image, x, y, width, height);
+                hash = hash << 1 | (previous > current ? 1 : 0);
+                previous = current;
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * Average luminance of a 4x4 grid of samples inside one cell of a 9x8 grid laid over the image.
+     */
+    private static int cellLuminance(BufferedImage image, int cellX, int cellY, int width, int height) {
+        int sum = 0;
+        for (int sy = 0; sy < 4; sy++) {
+            int y = (int) ((cellY * 4L + sy) * height / 32);
+            for (int sx = 0; sx < 4; sx++) {
+                int x = (int) ((cellX * 4L + sx) * width / 36);
+                int rgb = image.getRGB(x, y);
+                sum += (((rgb >> 16) & 0xFF) * 77 + ((rgb >> 8) & 0xFF) * 150 + (rgb & 0xFF) * 29) >> 8;
+            }
+        }
+        return sum >> 4;
+    }
+
+    private static final class Key {
+        private final long hash;
+        private final int threshold;
+
+        Key(long hash, float confidenceThreshhold) {
+            this.hash = hash;
+            this.threshold = Float.floatToIntBits(confidenceThreshhold);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Key key = (Key) o;
+            return hash == key.hash && threshold == key.threshold;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(hash) * 31 + threshold;
+        }
+    }
+
+    private static final class CachedResult {
+        private final DetectionResult result;
+        private final long expiresAt;
+
+        CachedResult(DetectionResult result, long expiresAt) {
+            this.result = result;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
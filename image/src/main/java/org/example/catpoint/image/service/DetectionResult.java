@@ -0,0 +1,137 @@
+package org.example.catpoint.image.service;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Outcome of scanning one image for a cat: the decision, the cat confidence, every label the
+ * service recognised with where it was found, and how long the scan took.
+ */
+public class DetectionResult {
+
+    private final boolean containsCat;
+    private final float confidence;
+    private final List<Label> labels;
+    private final Duration latency;
+
+    /**
+     * @param containsCat Whether a cat was found at or above the requested confidence
+     * @param confidence Confidence from 0 to 100 that the image shows a cat, or NaN if the
+     *                   service does not report one
+     */
+    public DetectionResult(boolean containsCat, float confidence) {
+        this(containsCat, confidence, List.of(), Duration.ZERO);
+    }
+
+    /**
+     * @param containsCat Whether a cat was found at or above the requested confidence
+     * @param confidence Confidence from 0 to 100 that the image shows a cat, or NaN if the
+     *                   service does not report one
+     * @param labels Everything the service recognised at or above the requested confidence
+     * @param latency Time taken to scan the image
+     */
+    public DetectionResult(boolean containsCat, float confidence, List<Label> labels, Duration latency) {
+        this.containsCat = containsCat;
+        this.confidence = confidence;
+        this.labels = List.copyOf(labels);
+        this.latency = latency;
+    }
+
+    public boolean containsCat() {
+        return containsCat;
+    }
+
+    public float getConfidence() {
+        return confidence;
+    }
+
+    /**
+     * @return True if the service reported a confidence rather than only a decision
+     */
+    public boolean hasConfidence() {
+        return !Float.isNaN(confidence);
+    }
+
+    public List<Label> getLabels() {
+        return labels;
+    }
+
+    public Duration getLatency() {
+        return latency;
+    }
+
+    @Override
+    public String toString() {
+        return "DetectionResult{containsCat=" + containsCat + ", confidence=" + confidence
+                + ", labels=" + labels + ", latency=" + latency + "}";
+    }
+
+    /**
+     * Something recognised in the image, such as "Cat" or "Furniture".
+     */
+    public static class Label {
+        private final String name;
+        private final float confidence;
+        private final List<BoundingBox> boundingBoxes;
+
+        /**
+         * @param boundingBoxes Where each instance of the label was found; empty for labels that
+         *                      describe the whole scene
+         */
+        public Label(String name, float confidence, List<BoundingBox> boundingBoxes) {
+            this.name = name;
+            this.confidence = confidence;
+            this.boundingBoxes = List.copyOf(boundingBoxes);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public float getConfidence() {
+            return confidence;
+        }
+
+        public List<BoundingBox> getBoundingBoxes() {
+            return boundingBoxes;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s(%.1f%%)", name, confidence);
+        }
+    }
+
+    /**
+     * Position of a recognised object, as fractions of the image width and height.
+     */
+    public static class BoundingBox {
+        private final float left;
+        private final float top;
+        private final float width;
+        private final float height;
+
+        public BoundingBox(float left, float top, float width, float height) {
+            this.left = left;
+            this.top = top;
+            this.width = width;
+            this.height = height;
+        }
+
+        public float getLeft() {
+            return left;
+        }
+
+        public float getTop() {
+            return top;
+        }
+
+        public float getWidth() {
+            return width;
+        }
+
+        public float getHeight() {
+            return height;
+        }
+    }
+}
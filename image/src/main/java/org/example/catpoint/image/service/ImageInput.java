@@ -0,0 +1,143 @@
+package org.example.catpoint.image.service;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Objects;
+
+/**
+ * An image handed to an {@link ImageService}, either as decoded pixels or in the encoded form a
+ * camera or file already provides.
+ *
+ * Encoded inputs are never copied or re-encoded by this class, so services that accept encoded
+ * images, such as {@link AwsImageService}, can pass camera JPEGs straight through. Services that
+ * need pixels call {@link #toImage()}, which decodes on demand.
+ */
+public final class ImageInput {
+
+    private final BufferedImage image;
+    private final byte[] bytes;
+    private final ByteBuffer buffer;
+    private final Path file;
+
+    private ImageInput(BufferedImage image, byte[] bytes, ByteBuffer buffer, Path file) {
+        this.image = image;
+        this.bytes = bytes;
+        this.buffer = buffer;
+        this.file = file;
+    }
+
+    public static ImageInput of(BufferedImage image) {
+        return new ImageInput(Objects.requireNonNull(image), null, null, null);
+    }
+
+    /**
+     * @param bytes A complete JPEG or PNG file. The array is used directly and must not be modified afterwards.
+     */
+    public static ImageInput ofEncoded(byte[] bytes) {
+        return new ImageInput(null, Objects.requireNonNull(bytes), null, null);
+    }
+
+    /**
+     * @param buffer A complete JPEG or PNG file between the buffer's position and limit. The
+     *               content is used directly and must not be modified afterwards.
+     */
+    public static ImageInput ofEncoded(ByteBuffer buffer) {
+        return new ImageInput(null, null, Objects.requireNonNull(buffer).slice(), null);
+    }
+
+    /**
+     * @param file A JPEG or PNG file, read when the image is scanned
+     */
+    public static ImageInput of(Path file) {
+        return new ImageInput(null, null, null, Objects.requireNonNull(file));
+    }
+
+    /**
+     * @return True if the image is held in encoded form rather than as pixels
+     */
+    public boolean isEncoded() {
+        return image == null;
+    }
+
+    /**
+     * Returns the pixels, decoding the image if it is held in encoded form.
+     * @throws IOException if the file cannot be read or the bytes are not a supported image format
+     */
+    public BufferedImage toImage() throws IOException {
+        if (image != null) {
+            return image;
+        }
+        BufferedImage decoded;
+        if (file != null) {
+            decoded = ImageIO.read(file.toFile());
+        } else if (bytes != null) {
+            decoded = ImageIO.read(new ByteArrayInputStream(bytes));
+        } else {
+            decoded = ImageIO.read(new ByteBufferInputStream(buffer.duplicate()));
+        }
+        if (decoded == null) {
+            throw new IOException("Unsupported image format");
+        }
+        return decoded;
+    }
+
+    /**
+     * Returns the encoded image as an array of exactly its length. The caller's own array is
+     * returned without copying where possible, so the result must be treated as read-only.
+     * @throws IllegalStateException if the input holds pixels rather than an encoded image
+     */
+    byte[] encodedBytes() throws IOException {
+        if (bytes != null) {
+            return bytes;
+        }
+        if (file != null) {
+            return Files.readAllBytes(file);
+        }
+        if (buffer != null) {
+            if (buffer.hasArray() && buffer.arrayOffset() == 0 && buffer.remaining() == buffer.array().length) {
+                return buffer.array();
+            }
+            byte[] copy = new byte[buffer.remaining()];
+            buffer.duplicate().get(copy);
+            return copy;
+        }
+        throw new IllegalStateException("Image is not encoded");
+    }
+
+    private static final class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(len, buffer.remaining());
+            buffer.get(b, off, count);
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
@@ -1,7 +1,65 @@
 package org.example.catpoint.image.service;
 
 import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 
 public interface ImageService {
     boolean imageContainsCat(BufferedImage image, float confidenceThreshhold);
+
+    /**
+     * Returns true if the provided image contains a cat. Services that can use the encoded form
+     * directly override this to avoid decoding; by default the image is decoded and passed to
+     * {@link #imageContainsCat(BufferedImage, float)}.
+     * @throws UncheckedIOException if an encoded image cannot be read or decoded
+     */
+    default boolean containsCat(ImageInput image, float confidenceThreshhold) {
+        try {
+            return imageContainsCat(image.toImage(), confidenceThreshhold);
+        } catch (IOException ioe) {
+            throw new UncheckedIOException(ioe);
+        }
+    }
+
+    /**
+     * Scans the image and reports the confidence, labels and latency along with the decision.
+     * By default only the decision and latency are reported, for services that answer yes or no;
+     * the confidence is then NaN.
+     */
+    default DetectionResult classify(BufferedImage image, float confidenceThreshhold) {
+        long start = System.nanoTime();
+        boolean cat = imageContainsCat(image, confidenceThreshhold);
+        return new DetectionResult(cat, Float.NaN, List.of(), Duration.ofNanos(System.nanoTime() - start));
+    }
+
+    /**
+     * Like {@link #classify(BufferedImage, float)}, for an image that may still be encoded.
+     * Services that can use the encoded form directly override this to avoid decoding; by
+     * default the image is decoded and passed to {@link #classify(BufferedImage, float)}.
+     * @throws UncheckedIOException if an encoded image cannot be read or decoded
+     */
+    default DetectionResult classifyInput(ImageInput image, float confidenceThreshhold) {
+        try {
+            return classify(image.toImage(), confidenceThreshhold);
+        } catch (IOException ioe) {
+            throw new UncheckedIOException(ioe);
+        }
+    }
+
+    /**
+     * Scans several images, for example the latest frame of every camera. Services that can
+     * scan images together, or in parallel, override this; by default images are scanned one
+     * after another.
+     * @return One result per image, in the same order as the images
+     */
+    default List<DetectionResult> classifyBatch(List<BufferedImage> images, float confidenceThreshhold) {
+        List<DetectionResult> results = new ArrayList<>(images.size());
+        for (BufferedImage image : images) {
+            results.add(classify(image, confidenceThreshhold));
+        }
+        return results;
+    }
 }
@@ -0,0 +1,139 @@
+package org.example.catpoint.image.service;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Thread-safe JPEG encoder that reuses its writers and buffers between calls.
+ *
+ * Compared with ImageIO.write, each encode skips the lookup of a writer, never spills to a
+ * temporary cache file, writes into an output buffer that is kept at the size of the largest
+ * frame seen so far, and copies the result only once. Images larger than the maximum dimension
+ * are scaled down first, since a recognizer gains nothing from pixels beyond its own input
+ * resolution. Images with an alpha channel, which the JPEG writer cannot encode, are converted
+ * to RGB.
+ *
+ * Up to poolSize encoders are kept for reuse; extra concurrent callers get a fresh one that is
+ * discarded afterwards.
+ */
+public class JpegEncoder {
+
+    /** Longest side sent to Rekognition; larger frames add upload time without improving labels. */
+    public static final int DEFAULT_MAX_DIMENSION = 1280;
+    public static final float DEFAULT_QUALITY = 0.85f;
+
+    private final int maxDimension;
+    private final float quality;
+    private final BlockingQueue<Worker> idleWorkers;
+
+    public JpegEncoder() {
+        this(DEFAULT_MAX_DIMENSION, DEFAULT_QUALITY, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param maxDimension Longest side of the encoded image, larger images are scaled down to fit
+     * @param quality JPEG quality between 0 and 1
+     * @param poolSize Number of idle encoders kept for reuse
+     */
+    public JpegEncoder(int maxDimension, float quality, int poolSize) {
+        if (maxDimension < 1 || quality < 0 || quality > 1 || poolSize < 1) {
+            throw new IllegalArgumentException("maxDimension and poolSize must be positive and quality between 0 and 1");
+        }
+        this.maxDimension = maxDimension;
+        this.quality = quality;
+        this.idleWorkers = new ArrayBlockingQueue<>(poolSize);
+    }
+
+    /**
+     * @return The JPEG file, in an array of exactly its length that the caller owns
+     */
+    public byte[] encode(BufferedImage image) throws IOException {
+        Worker worker = idleWorkers.poll();
+        if (worker == null) {
+            worker = new Worker();
+        }
+        try {
+            return worker.encode(image);
+        } finally {
+            idleWorkers.offer(worker);
+        }
+    }
+
+    private final class Worker {
+        private final ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        private final ImageWriteParam param = writer.getDefaultWriteParam();
+        private final OutputBuffer output = new OutputBuffer();
+        private BufferedImage scratch;
+
+        Worker() {
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(quality);
+        }
+
+        byte[] encode(BufferedImage image) throws IOException {
+            BufferedImage source = prepare(image);
+            output.reset();
+            try (MemoryCacheImageOutputStream stream = new MemoryCacheImageOutputStream(output)) {
+                writer.setOutput(stream);
+                writer.write(null, new IIOImage(source, null, null), param);
+            } finally {
+                writer.reset();
+            }
+            return output.copy();
+        }
+
+        /**
+         * Scales the image to fit maxDimension and converts it to RGB when needed, drawing into a
+         * scratch image that is reused while frames keep the same size.
+         */
+        private BufferedImage prepare(BufferedImage image) {
+            int width = image.getWidth();
+            int height = image.getHeight();
+            int longest = Math.max(width, height);
+            boolean scale = longest > maxDimension;
+            if (!scale && !image.getColorModel().hasAlpha()) {
+                return image;
+            }
+            int targetWidth = scale ? Math.max(1, (int) ((long) width * maxDimension / longest)) : width;
+            int targetHeight = scale ? Math.max(1, (int) ((long) height * maxDimension / longest)) : height;
+            if (scratch == null || scratch.getWidth() != targetWidth || scratch.getHeight() != targetHeight) {
+                scratch = new BufferedImage(targetWidth, targetHeight, BufferedImage.TYPE_INT_RGB);
+            }
+            Graphics2D g = scratch.createGraphics();
+            try {
+                g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                //replace every pixel, so the previous frame cannot show through transparent areas
+                g.setComposite(AlphaComposite.Src);
+                g.drawImage(image, 0, 0, targetWidth, targetHeight, null);
+            } finally {
+                g.dispose();
+            }
+            return scratch;
+        }
+    }
+
+    /**
+     * Output stream whose buffer keeps its capacity across resets.
+     */
+    private static final class OutputBuffer extends ByteArrayOutputStream {
+        OutputBuffer() {
+            super(64 * 1024);
+        }
+
+        byte[] copy() {
+            return Arrays.copyOf(buf, count);
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package org.example.catpoint.image.service;
+
+import java.awt.image.BufferedImage;
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects frames submitted by many cameras for a few milliseconds and classifies them together
+ * with {@link ImageService#classifyBatch(List, float)}, so that services able to scan images in
+ * parallel or in one pass see whole batches instead of single frames.
+ *
+ * A batch is dispatched when the oldest frame in it has waited for the batch window or when it
+ * reaches the maximum batch size, whichever comes first. The dispatcher's own thread only times
+ * the windows. Each batch is classified on a virtual thread of its own, so a slow batch never
+ * holds back the deadline of the batches after it, and batches may be classified concurrently.
+ */
+public class MicroBatchDispatcher implements Closeable {
+
+    private final ImageService imageService;
+    private final float confidenceThreshhold;
+    private final long batchWindowNanos;
+    private final int maxBatchSize;
+    private final ScheduledExecutorService dispatcher;
+    private final ExecutorService batches = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("image-batch-", 1).factory());
+
+    private List<PendingImage> pending = new ArrayList<>();
+    private boolean closed;
+
+    /**
+     * @param imageService The service that classifies each batch
+     * @param confidenceThreshhold Minimum confidence to consider for cat, passed to every batch
+     * @param batchWindow Longest time a frame waits for other frames to join its batch
+     * @param maxBatchSize Number of frames that triggers an immediate dispatch
+     */
+    public MicroBatchDispatcher(ImageService imageService, float confidenceThreshhold,
+                                Duration batchWindow, int maxBatchSize) {
+        if (batchWindow.isNegative() || batchWindow.isZero() || maxBatchSize < 1) {
+            throw new IllegalArgumentException("batchWindow and maxBatchSize must be positive");
+        }
+        this.imageService = imageService;
+        this.confidenceThreshhold = confidenceThreshhold;
+        this.batchWindowNanos = batchWindow.toNanos();
+        this.maxBatchSize = maxBatchSize;
+        this.dispatcher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "image-batch-dispatcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Queues the image for the next batch.
+     * @return A future completed with the image's result once its batch has been classified, or
+     * exceptionally if the batch failed or the dispatcher was closed
+     */
+    public CompletableFuture<DetectionResult> submit(BufferedImage image) {
+        PendingImage entry = new PendingImage(image);
+        synchronized (this) {
+            if (closed) {
+                entry.result.completeExceptionally(new RejectedExecutionException("Dispatcher is closed"));
+                return entry.result;
+            }
+            pending.add(entry);
+            if (pending.size() >= maxBatchSize) {
+                dispatch(takePending());
+            } else if (pending.size() == 1) {
+                //the first frame of a batch starts the window
+                List<PendingImage> window = pending;
+                dispatcher.schedule(() -> dispatchWindow(window), batchWindowNanos, TimeUnit.NANOSECONDS);
+            }
+        }
+        return entry.result;
+    }
+
+    /**
+     * Classifies any queued frames, then stops the dispatcher's threads once every batch is done.
+     */
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        dispatch(takePending());
+        dispatcher.shutdownNow();
+        batches.shutdown();
+    }
+
+    /**
+     * Dispatches the batch the window was started for, unless it already left because it filled up.
+     */
+    private synchronized void dispatchWindow(List<PendingImage> window) {
+        if (pending == window) {
+            dispatch(takePending());
+        }
+    }
+
+    /**
+     * Starts classifying the batch. Called with the lock held, so it cannot race close.
+     */
+    private void dispatch(List<PendingImage> batch) {
+        if (!batch.isEmpty()) {
+            batches.execute(() -> classify(batch));
+        }
+    }
+
+    private List<PendingImage> takePending() {
+        List<PendingImage> batch = pending;
+        pending = new ArrayList<>();
+        return batch;
+    }
+
+    private void classify(List<PendingImage> batch) {
+        List<BufferedImage> images = new ArrayList<>(batch.size());
+        batch.forEach(entry -> images.add(entry.image));
+        try {
+            List<DetectionResult> results = imageService.classifyBatch(images, confidenceThreshhold);
+            if (results.size() != batch.size()) {
+                throw new IllegalStateException("Expected " + batch.size() + " results but got " + results.size());
+            }
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).result.complete(results.get(i));
+            }
+        } catch (RuntimeException e) {
+            batch.forEach(entry -> entry.result.completeExceptionally(e));
+        }
+    }
+
+    private static final class PendingImage {
+        private final BufferedImage image;
+        private final CompletableFuture<DetectionResult> result = new CompletableFuture<>();
+
+        PendingImage(BufferedImage image) {
+            this.image = image;
+        }
+    }
+}
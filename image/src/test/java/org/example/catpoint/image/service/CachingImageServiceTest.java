@@ -0,0 +1,178 @@
+package org.example.catpoint.image.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.awt.image.BufferedImage;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyFloat;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class CachingImageServiceTest {
+
+    @Mock
+    private ImageService delegate;
+
+    private CachingImageService cachingImageService;
+
+    @BeforeEach
+    private void setUp() {
+        cachingImageService = new CachingImageService(delegate);
+    }
+
+    private static BufferedImage gradient(int width, int height, int offset) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int value = Math.min(255, Math.max(0, x * 255 / width + offset));
+                image.setRGB(x, y, value << 16 | value << 8 | value);
+            }
+        }
+        return image;
+    }
+
+    private static DetectionResult result(boolean cat) {
+        return new DetectionResult(cat, cat ? 90.0f : 10.0f);
+    }
+
+    @Test
+    public void identicalFramesDelegateCalledOnce() {
+        when(delegate.classify(any(), anyFloat())).thenReturn(result(true));
+
+        assertTrue(cachingImageService.imageContainsCat(gradient(64, 48, 0), 50.0f));
+        assertTrue(cachingImageService.imageContainsCat(gradient(64, 48, 0), 50.0f));
+
+        verify(delegate, times(1)).classify(any(), anyFloat());
+        assertEquals(1, cachingImageService.getHitCount());
+        assertEquals(1, cachingImageService.getMissCount());
+        assertEquals(0.5, cachingImageService.getHitRatio());
+    }
+
+    @Test
+    public void differentThresholdsCachedSeparately() {
+        when(delegate.classify(any(), eq(50.0f))).thenReturn(result(true));
+        when(delegate.classify(any(), eq(90.0f))).thenReturn(result(false));
+        BufferedImage image = gradient(64, 48, 0);
+
+        assertTrue(cachingImageService.imageContainsCat(image, 50.0f));
+        assertFalse(cachingImageService.imageContainsCat(image, 90.0f));
+        assertEquals(0, cachingImageService.getHitCount());
+    }
+
+    @Test
+    public void exactModeSlightlyChangedFrameMisses() {
+        when(delegate.classify(any(), anyFloat())).thenReturn(result(false));
+        BufferedImage changed = gradient(64, 48, 0);
+        changed.setRGB(10, 10, 0xFFFFFF);
+
+        cachingImageService.imageContainsCat(gradient(64, 48, 0), 50.0f);
+        cachingImageService.imageContainsCat(changed, 50.0f);
+
+        verify(delegate, times(2)).classify(any(), anyFloat());
+    }
+
+    @Test
+    public void perceptualModeNearDuplicateFrameHits() {
+        cachingImageService = new CachingImageService(delegate, CachingImageService.HashMode.PERCEPTUAL,
+                16, Duration.ofMinutes(1), 4);
+        when(delegate.classify(any(), anyFloat())).thenReturn(result(true));
+        BufferedImage noisy = gradient(320, 240, 0);
+        noisy.setRGB(100, 100, 0xFFFFFF);
+        noisy.setRGB(200, 50, 0x000000);
+
+        cachingImageService.imageContainsCat(gradient(320, 240, 0), 50.0f);
+        assertTrue(cachingImageService.imageContainsCat(noisy, 50.0f));
+
+        verify(delegate, times(1)).classify(any(), anyFloat());
+        assertEquals(1, cachingImageService.getHitCount());
+    }
+
+    @Test
+    public void differenceHashOfSameImageAtTwoSizesIsClose() {
+        long small = CachingImageService.differenceHash(gradient(90, 80, 0));
+        long large = CachingImageService.differenceHash(gradient(900, 800, 0));
+
+        assertTrue(Long.bitCount(small ^ large) <= 4);
+    }
+
+    @Test
+    public void cacheFullLeastRecentlyUsedEvicted() {
+        cachingImageService = new CachingImageService(delegate, CachingImageService.HashMode.EXACT,
+                2, Duration.ofMinutes(1), 0);
+        when(delegate.classify(any(), anyFloat())).thenReturn(result(false));
+        BufferedImage first = gradient(32, 32, 0);
+        BufferedImage second = gradient(32, 32, 10);
+        BufferedImage third = gradient(32, 32, 20);
+
+        cachingImageService.imageContainsCat(first, 50.0f);
+        cachingImageService.imageContainsCat(second, 50.0f);
+        cachingImageService.imageContainsCat(first, 50.0f);
+        cachingImageService.imageContainsCat(third, 50.0f);
+        cachingImageService.imageContainsCat(first, 50.0f);
+        cachingImageService.imageContainsCat(second, 50.0f);
+
+        assertEquals(2, cachingImageService.getHitCount());
+        assertEquals(4, cachingImageService.getMissCount());
+        assertEquals(2, cachingImageService.getEvictionCount());
+    }
+
+    @Test
+    public void entryOlderThanTtlRescanned() throws InterruptedException {
+        cachingImageService = new CachingImageService(delegate, CachingImageService.HashMode.EXACT,
+                16, Duration.ofMillis(20), 0);
+        when(delegate.classify(any(), anyFloat())).thenReturn(result(true), result(false));
+        BufferedImage image = gradient(32, 32, 0);
+
+        assertTrue(cachingImageService.imageContainsCat(image, 50.0f));
+        Thread.sleep(50);
+        assertFalse(cachingImageService.imageContainsCat(image, 50.0f));
+        assertEquals(1, cachingImageService.getEvictionCount());
+    }
+
+    @Test
+    public void cachedResultKeepsConfidenceAndLabels() {
+        DetectionResult scanned = new DetectionResult(true, 87.5f,
+                List.of(new DetectionResult.Label("Cat", 87.5f, List.of())), Duration.ofMillis(300));
+        when(delegate.classify(any(), anyFloat())).thenReturn(scanned);
+
+        cachingImageService.classify(gradient(16, 16, 0), 50.0f);
+        DetectionResult cached = cachingImageService.classify(gradient(16, 16, 0), 50.0f);
+
+        assertSame(scanned, cached);
+        assertEquals(1, cachingImageService.getHitCount());
+    }
+
+    @Test
+    public void encodedFramesKeyedByBytesAndPassedThrough() {
+        byte[] frame = {(byte) 0xFF, (byte) 0xD8, 1, 2, 3};
+        ImageInput first = ImageInput.ofEncoded(frame);
+        ImageInput resent = ImageInput.ofEncoded(frame.clone());
+        when(delegate.classifyInput(same(first), anyFloat())).thenReturn(new DetectionResult(true, 80.0f));
+
+        assertTrue(cachingImageService.containsCat(first, 50.0f));
+        assertTrue(cachingImageService.containsCat(resent, 50.0f));
+
+        verify(delegate, times(1)).classifyInput(any(), anyFloat());
+        verify(delegate, never()).imageContainsCat(any(), anyFloat());
+        assertEquals(1, cachingImageService.getHitCount());
+    }
+
+    @Test
+    public void nullImageNotCached() {
+        when(delegate.imageContainsCat(null, 50.0f)).thenReturn(false);
+
+        cachingImageService.imageContainsCat(null, 50.0f);
+        cachingImageService.imageContainsCat(null, 50.0f);
+
+        verify(delegate, times(2)).imageContainsCat(null, 50.0f);
+        assertEquals(0, cachingImageService.getMissCount());
+    }
+}
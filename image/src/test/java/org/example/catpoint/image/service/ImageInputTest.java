@@ -0,0 +1,89 @@
+package org.example.catpoint.image.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ImageInputTest {
+
+    @TempDir
+    Path directory;
+
+    private static byte[] png(int width, int height) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        image.setRGB(1, 1, 0xFF0000);
+        try (ByteArrayOutputStream os = new ByteArrayOutputStream()) {
+            ImageIO.write(image, "png", os);
+            return os.toByteArray();
+        }
+    }
+
+    @Test
+    public void decodedImageReturnedAsIs() throws IOException {
+        BufferedImage image = new BufferedImage(4, 4, BufferedImage.TYPE_INT_RGB);
+        ImageInput input = ImageInput.of(image);
+
+        assertFalse(input.isEncoded());
+        assertSame(image, input.toImage());
+        assertThrows(IllegalStateException.class, input::encodedBytes);
+    }
+
+    @Test
+    public void encodedArrayPassedThroughWithoutCopy() throws IOException {
+        byte[] bytes = png(8, 6);
+        ImageInput input = ImageInput.ofEncoded(bytes);
+
+        assertTrue(input.isEncoded());
+        assertSame(bytes, input.encodedBytes());
+        assertEquals(8, input.toImage().getWidth());
+        assertEquals(0xFF0000, input.toImage().getRGB(1, 1) & 0xFFFFFF);
+    }
+
+    @Test
+    public void wholeHeapBufferPassedThroughWithoutCopy() throws IOException {
+        byte[] bytes = png(8, 6);
+
+        assertSame(bytes, ImageInput.ofEncoded(ByteBuffer.wrap(bytes)).encodedBytes());
+    }
+
+    @Test
+    public void directBufferSliceDecodedFromPositionToLimit() throws IOException {
+        byte[] bytes = png(5, 7);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length + 20);
+        buffer.position(10);
+        buffer.put(bytes);
+        buffer.flip().position(10);
+        ImageInput input = ImageInput.ofEncoded(buffer);
+
+        assertArrayEquals(bytes, input.encodedBytes());
+        assertEquals(7, input.toImage().getHeight());
+        //reading the input must not disturb the caller's buffer
+        assertEquals(10, buffer.position());
+    }
+
+    @Test
+    public void fileReadWhenUsed() throws IOException {
+        byte[] bytes = png(3, 3);
+        Path file = directory.resolve("frame.png");
+        Files.write(file, bytes);
+        ImageInput input = ImageInput.of(file);
+
+        assertTrue(input.isEncoded());
+        assertArrayEquals(bytes, input.encodedBytes());
+        assertEquals(3, input.toImage().getWidth());
+    }
+
+    @Test
+    public void unsupportedBytesFailToDecode() {
+        assertThrows(IOException.class, () -> ImageInput.ofEncoded(new byte[]{1, 2, 3}).toImage());
+    }
+}
@@ -0,0 +1,101 @@
+package org.example.catpoint.image.service;
+
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JpegEncoderTest {
+
+    private static BufferedImage image(int width, int height, int type) {
+        BufferedImage image = new BufferedImage(width, height, type);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, 0xFF000000 | (x * 255 / width) << 16 | (y * 255 / height) << 8);
+            }
+        }
+        return image;
+    }
+
+    private static BufferedImage decode(byte[] jpeg) throws IOException {
+        return ImageIO.read(new ByteArrayInputStream(jpeg));
+    }
+
+    @Test
+    public void smallImageEncodedAtOriginalSize() throws IOException {
+        byte[] jpeg = new JpegEncoder().encode(image(320, 240, BufferedImage.TYPE_INT_RGB));
+
+        BufferedImage decoded = decode(jpeg);
+        assertEquals(320, decoded.getWidth());
+        assertEquals(240, decoded.getHeight());
+    }
+
+    @Test
+    public void largeImageScaledToMaxDimensionKeepingAspectRatio() throws IOException {
+        JpegEncoder encoder = new JpegEncoder(400, JpegEncoder.DEFAULT_QUALITY, 1);
+
+        BufferedImage decoded = decode(encoder.encode(image(1000, 500, BufferedImage.TYPE_INT_RGB)));
+
+        assertEquals(400, decoded.getWidth());
+        assertEquals(200, decoded.getHeight());
+    }
+
+    @Test
+    public void imageWithAlphaEncoded() throws IOException {
+        byte[] jpeg = new JpegEncoder().encode(image(64, 64, BufferedImage.TYPE_INT_ARGB));
+
+        assertEquals(64, decode(jpeg).getWidth());
+    }
+
+    @Test
+    public void transparentImageAfterOpaqueOneEncodedWithoutEarlierFrame() throws IOException {
+        BufferedImage transparent = new BufferedImage(64, 64, BufferedImage.TYPE_INT_ARGB);
+        byte[] expected = new JpegEncoder().encode(transparent);
+
+        JpegEncoder encoder = new JpegEncoder(JpegEncoder.DEFAULT_MAX_DIMENSION, JpegEncoder.DEFAULT_QUALITY, 1);
+        encoder.encode(image(64, 64, BufferedImage.TYPE_INT_ARGB));
+
+        assertArrayEquals(expected, encoder.encode(transparent));
+    }
+
+    @Test
+    public void reusedEncoderProducesSameBytesForSameImage() throws IOException {
+        JpegEncoder encoder = new JpegEncoder(256, JpegEncoder.DEFAULT_QUALITY, 1);
+        BufferedImage first = image(640, 480, BufferedImage.TYPE_INT_RGB);
+
+        byte[] expected = encoder.encode(first);
+        encoder.encode(image(100, 50, BufferedImage.TYPE_INT_RGB));
+        byte[] again = encoder.encode(first);
+
+        assertArrayEquals(expected, again);
+        assertNotSame(expected, again);
+    }
+
+    @Test
+    public void concurrentCallersGetIndependentResults() throws Exception {
+        JpegEncoder encoder = new JpegEncoder(JpegEncoder.DEFAULT_MAX_DIMENSION, JpegEncoder.DEFAULT_QUALITY, 2);
+        BufferedImage image = image(200, 100, BufferedImage.TYPE_INT_RGB);
+        byte[] expected = encoder.encode(image);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<byte[]>> results = new ArrayList<>();
+            for (int i = 0; i < 32; i++) {
+                results.add(executor.submit(() -> encoder.encode(image)));
+            }
+            for (Future<byte[]> result : results) {
+                assertArrayEquals(expected, result.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
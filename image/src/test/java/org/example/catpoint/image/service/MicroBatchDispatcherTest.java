@@ -0,0 +1,148 @@
+package org.example.catpoint.image.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MicroBatchDispatcherTest {
+
+    private final List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<>());
+    private MicroBatchDispatcher dispatcher;
+
+    /**
+     * Reports a cat for images wider than they are tall, with the width as confidence.
+     */
+    private final ImageService recordingService = new ImageService() {
+        @Override
+        public boolean imageContainsCat(BufferedImage image, float confidenceThreshhold) {
+            throw new AssertionError("Images must be classified in batches");
+        }
+
+        @Override
+        public List<DetectionResult> classifyBatch(List<BufferedImage> images, float confidenceThreshhold) {
+            batchSizes.add(images.size());
+            List<DetectionResult> results = new ArrayList<>();
+            for (BufferedImage image : images) {
+                results.add(new DetectionResult(image.getWidth() > image.getHeight(), image.getWidth()));
+            }
+            return results;
+        }
+    };
+
+    @AfterEach
+    private void tearDown() {
+        if (dispatcher != null) {
+            dispatcher.close();
+        }
+    }
+
+    private static BufferedImage image(int width, int height) {
+        return new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+    }
+
+    @Test
+    public void framesWithinWindowClassifiedAsOneBatch() throws Exception {
+        dispatcher = new MicroBatchDispatcher(recordingService, 50.0f, Duration.ofMillis(200), 100);
+
+        CompletableFuture<DetectionResult> wide = dispatcher.submit(image(20, 10));
+        CompletableFuture<DetectionResult> tall = dispatcher.submit(image(10, 20));
+        CompletableFuture<DetectionResult> square = dispatcher.submit(image(30, 30));
+
+        assertTrue(wide.get(2, TimeUnit.SECONDS).containsCat());
+        assertFalse(tall.get(2, TimeUnit.SECONDS).containsCat());
+        assertEquals(30.0f, square.get(2, TimeUnit.SECONDS).getConfidence());
+        assertEquals(List.of(3), batchSizes);
+    }
+
+    @Test
+    public void fullBatchDispatchedWithoutWaitingForWindow() throws Exception {
+        dispatcher = new MicroBatchDispatcher(recordingService, 50.0f, Duration.ofMinutes(1), 2);
+
+        CompletableFuture<DetectionResult> first = dispatcher.submit(image(2, 1));
+        CompletableFuture<DetectionResult> second = dispatcher.submit(image(1, 2));
+
+        assertTrue(first.get(2, TimeUnit.SECONDS).containsCat());
+        assertFalse(second.get(2, TimeUnit.SECONDS).containsCat());
+        assertEquals(List.of(2), batchSizes);
+    }
+
+    @Test
+    public void framesAfterFullBatchStartNewWindow() throws Exception {
+        dispatcher = new MicroBatchDispatcher(recordingService, 50.0f, Duration.ofMillis(50), 2);
+
+        dispatcher.submit(image(1, 1));
+        dispatcher.submit(image(1, 1));
+        CompletableFuture<DetectionResult> third = dispatcher.submit(image(3, 1));
+
+        assertEquals(3.0f, third.get(2, TimeUnit.SECONDS).getConfidence());
+        assertEquals(List.of(2, 1), batchSizes);
+    }
+
+    @Test
+    public void failedBatchFailsEveryFrame() {
+        RuntimeException failure = new IllegalStateException("service down");
+        dispatcher = new MicroBatchDispatcher((image, threshold) -> {
+            throw failure;
+        }, 50.0f, Duration.ofMillis(10), 10);
+
+        CompletableFuture<DetectionResult> first = dispatcher.submit(image(1, 1));
+        CompletableFuture<DetectionResult> second = dispatcher.submit(image(1, 1));
+
+        ExecutionException e = assertThrows(ExecutionException.class, () -> first.get(2, TimeUnit.SECONDS));
+        assertSame(failure, e.getCause());
+        assertThrows(ExecutionException.class, () -> second.get(2, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void closeClassifiesQueuedFramesAndRejectsNewOnes() throws Exception {
+        dispatcher = new MicroBatchDispatcher(recordingService, 50.0f, Duration.ofMinutes(1), 100);
+        CompletableFuture<DetectionResult> queued = dispatcher.submit(image(4, 2));
+
+        dispatcher.close();
+
+        assertTrue(queued.get(2, TimeUnit.SECONDS).containsCat());
+        assertThrows(ExecutionException.class, () -> dispatcher.submit(image(1, 1)).get(2, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void slowBatchDoesNotHoldBackLaterBatches() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        dispatcher = new MicroBatchDispatcher(new ImageService() {
+            @Override
+            public boolean imageContainsCat(BufferedImage image, float confidenceThreshhold) {
+                return false;
+            }
+
+            @Override
+            public List<DetectionResult> classifyBatch(List<BufferedImage> images, float confidenceThreshhold) {
+                if (images.get(0).getWidth() == 1) {
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                return recordingService.classifyBatch(images, confidenceThreshhold);
+            }
+        }, 50.0f, Duration.ofMillis(10), 1);
+
+        CompletableFuture<DetectionResult> slow = dispatcher.submit(image(1, 1));
+        CompletableFuture<DetectionResult> fast = dispatcher.submit(image(2, 1));
+
+        assertTrue(fast.get(2, TimeUnit.SECONDS).containsCat());
+        assertFalse(slow.isDone());
+        release.countDown();
+        assertEquals(1.0f, slow.get(2, TimeUnit.SECONDS).getConfidence());
+    }
+}
@@ -2,11 +2,15 @@ module security {
     requires java.desktop;
     requires com.google.gson;
     requires java.prefs;
+    requires java.management;
     requires com.google.common;
     requires image;
-    exports org.example.catpoint.security.data to app;
-    exports org.example.catpoint.security.service to app;
-    exports org.example.catpoint.security.application to app;
+    requires slf4j.api;
+    exports org.example.catpoint.security.data to app, engine;
+    exports org.example.catpoint.security.service to app, engine;
+    exports org.example.catpoint.security.application to app, engine;
+    exports org.example.catpoint.security.camera to app;
+    exports org.example.catpoint.security.metrics to app, engine;
 
     opens org.example.catpoint.security.data to com.google.gson;
 
@@ -0,0 +1,214 @@
+package org.example.catpoint.security.application;
+
+import org.example.catpoint.security.data.AlarmStatus;
+import org.example.catpoint.security.data.ArmingStatus;
+import org.example.catpoint.security.data.Sensor;
+import org.example.catpoint.security.metrics.LatencyHistogram;
+import org.example.catpoint.security.metrics.MetricsRegistry;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.Executor;
+
+/**
+ * StatusListener that passes status changes on to other listeners in batches, on an executor
+ * such as the Swing event dispatch thread.
+ *
+ * The calling thread only records the change. The first change after a batch was delivered
+ * schedules the next delivery, and everything that happens until it runs is folded into it:
+ * <ul>
+ *     <li>alarm and arming changes become one change from the first previous status to the
+ *     latest status</li>
+ *     <li>only the latest cat detection result is delivered</li>
+ *     <li>each sensor gets at most one event, the latest, except that removal always wins and an
+ *     addition is not replaced by a later activation change; listeners read the sensor's
+ *     current state when they handle it</li>
+ *     <li>when more sensors change than the sensor event limit, their events are replaced by a
+ *     single sensorStatusChanged, which is itself delivered at most once per batch</li>
+ * </ul>
+ * How long batches wait for the executor is recorded as listeners.dispatcher.delay, and how long
+ * delivering them takes as listeners.dispatcher.delivery.
+ */
+public class CoalescingStatusDispatcher implements StatusListener {
+
+    public static final int DEFAULT_SENSOR_EVENT_LIMIT = 64;
+
+    private final Executor executor;
+    private final int sensorEventLimit;
+    private final Set<StatusListener> statusListeners = new CopyOnWriteArraySet<>();
+
+    private Batch pending = new Batch();
+    private boolean scheduled;
+    private long scheduledAt;
+    private final LatencyHistogram delay = MetricsRegistry.getDefault().histogram("listeners.dispatcher.delay");
+    private final LatencyHistogram delivery = MetricsRegistry.getDefault().histogram("listeners.dispatcher.delivery");
+
+    public CoalescingStatusDispatcher(Executor executor) {
+        this(executor, DEFAULT_SENSOR_EVENT_LIMIT);
+    }
+
+    /**
+     * @param executor Runs the delivery of each batch, one at a time
+     * @param sensorEventLimit Number of changed sensors above which listeners get a single refresh instead
+     */
+    public CoalescingStatusDispatcher(Executor executor, int sensorEventLimit) {
+        this.executor = executor;
+        this.sensorEventLimit = sensorEventLimit;
+    }
+
+    public void addStatusListener(StatusListener statusListener) {
+        statusListeners.add(statusListener);
+    }
+
+    public void removeStatusListener(StatusListener statusListener) {
+        statusListeners.remove(statusListener);
+    }
+
+    @Override
+    public void notify(AlarmStatus status) {
+        alarmStatusChanged(status, status);
+    }
+
+    @Override
+    public synchronized void alarmStatusChanged(AlarmStatus previous, AlarmStatus current) {
+        if (pending.alarmStatus == null) {
+            pending.previousAlarmStatus = previous;
+        }
+        pending.alarmStatus = current;
+        schedule();
+    }
+
+    @Override
+    public synchronized void armingStatusChanged(ArmingStatus previous, ArmingStatus current) {
+        if (pending.armingStatus == null) {
+            pending.previousArmingStatus = previous;
+        }
+        pending.armingStatus = current;
+        schedule();
+    }
+
+    @Override
+    public synchronized void catDetected(boolean catDetected) {
+        pending.catDetected = catDetected;
+        schedule();
+    }
+
+    @Override
+    public synchronized void sensorStatusChanged() {
+        pending.refreshSensors = true;
+        schedule();
+    }
+
+    @Override
+    public void sensorAdded(Sensor sensor) {
+        sensorEvent(sensor, SensorEvent.ADDED);
+    }
+
+    @Override
+    public void sensorRemoved(Sensor sensor) {
+        sensorEvent(sensor, SensorEvent.REMOVED);
+    }
+
+    @Override
+    public void sensorActivated(Sensor sensor) {
+        sensorEvent(sensor, SensorEvent.ACTIVATED);
+    }
+
+    @Override
+    public void sensorDeactivated(Sensor sensor) {
+        sensorEvent(sensor, SensorEvent.DEACTIVATED);
+    }
+
+    private synchronized void sensorEvent(Sensor sensor, SensorEvent event) {
+        if (!pending.refreshSensors) {
+            PendingSensorEvent previous = pending.sensorEvents.get(sensor.getSensorId());
+            if (previous == null) {
+                pending.sensorEvents.put(sensor.getSensorId(), new PendingSensorEvent(sensor, event));
+            } else if (previous.event != SensorEvent.ADDED || event == SensorEvent.REMOVED) {
+                previous.sensor = sensor;
+                previous.event = event;
+            }
+            if (pending.sensorEvents.size() > sensorEventLimit) {
+                pending.sensorEvents.clear();
+                pending.refreshSensors = true;
+            }
+        }
+        schedule();
+    }
+
+    private void schedule() {
+        if (!scheduled) {
+            scheduled = true;
+            scheduledAt = System.nanoTime();
+            executor.execute(this::deliver);
+        }
+    }
+
+    private void deliver() {
+        long start = System.nanoTime();
+        Batch batch;
+        synchronized (this) {
+            batch = pending;
+            pending = new Batch();
+            scheduled = false;
+            delay.record(start - scheduledAt);
+        }
+        for (StatusListener listener : statusListeners) {
+            batch.deliverTo(listener);
+        }
+        delivery.recordSince(start);
+    }
+
+    private enum SensorEvent {
+        ADDED, REMOVED, ACTIVATED, DEACTIVATED
+    }
+
+    private static final class PendingSensorEvent {
+        private Sensor sensor;
+        private SensorEvent event;
+
+        PendingSensorEvent(Sensor sensor, SensorEvent event) {
+            this.sensor = sensor;
+            this.event = event;
+        }
+    }
+
+    /**
+     * Everything that changed since the previous delivery.
+     */
+    private static final class Batch {
+        private final Map<UUID, PendingSensorEvent> sensorEvents = new LinkedHashMap<>();
+        private boolean refreshSensors;
+        private AlarmStatus previousAlarmStatus;
+        private AlarmStatus alarmStatus;
+        private ArmingStatus previousArmingStatus;
+        private ArmingStatus armingStatus;
+        private Boolean catDetected;
+
+        void deliverTo(StatusListener listener) {
+            for (PendingSensorEvent pending : sensorEvents.values()) {
+                switch (pending.event) {
+                    case ADDED -> listener.sensorAdded(pending.sensor);
+                    case REMOVED -> listener.sensorRemoved(pending.sensor);
+                    case ACTIVATED -> listener.sensorActivated(pending.sensor);
+                    case DEACTIVATED -> listener.sensorDeactivated(pending.sensor);
+                }
+            }
+            if (refreshSensors) {
+                listener.sensorStatusChanged();
+            }
+            if (alarmStatus != null) {
+                listener.alarmStatusChanged(previousAlarmStatus, alarmStatus);
+            }
+            if (armingStatus != null) {
+                listener.armingStatusChanged(previousArmingStatus, armingStatus);
+            }
+            if (catDetected != null) {
+                listener.catDetected(catDetected);
+            }
+        }
+    }
+}
@@ -1,12 +1,45 @@
 package org.example.catpoint.security.application;
 
 import org.example.catpoint.security.data.AlarmStatus;
+import org.example.catpoint.security.data.ArmingStatus;
+import org.example.catpoint.security.data.Sensor;
 
 /**
- * Identifies a component that should be notified whenever the system status changes
+ * Identifies a component that should be notified whenever the system status changes.
+ *
+ * The typed callbacks say exactly what changed, so listeners can update just the affected part
+ * of their state. Their defaults keep listeners that only implement the original three methods
+ * working as before: alarm changes arrive through notify, arming changes through
+ * sensorStatusChanged, and the individual sensor events are ignored.
  */
 public interface StatusListener {
     void notify(AlarmStatus status);
     void catDetected(boolean catDetected);
     void sensorStatusChanged();
+
+    /**
+     * The alarm status was set. The previous status may equal the new one when it is set again.
+     */
+    default void alarmStatusChanged(AlarmStatus previous, AlarmStatus current) {
+        notify(current);
+    }
+
+    /**
+     * The arming status was set, after any sensors it reset were deactivated.
+     */
+    default void armingStatusChanged(ArmingStatus previous, ArmingStatus current) {
+        sensorStatusChanged();
+    }
+
+    default void sensorAdded(Sensor sensor) {
+    }
+
+    default void sensorRemoved(Sensor sensor) {
+    }
+
+    default void sensorActivated(Sensor sensor) {
+    }
+
+    default void sensorDeactivated(Sensor sensor) {
+    }
 }
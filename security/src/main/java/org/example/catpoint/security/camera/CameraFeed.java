@@ -0,0 +1,234 @@
+package org.example.catpoint.security.camera;
+
+import org.example.catpoint.image.service.ImageInput;
+import org.example.catpoint.security.service.SecurityService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.awt.image.BufferedImage;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Feeds a continuous stream of camera frames to the SecurityService.
+ *
+ * A reader thread pulls encoded frames from the source and hands them to a small decoding pool.
+ * When the pool falls behind, the oldest waiting frames are dropped rather than queued, so the
+ * feed always works on recent frames. Only the newest decoded frame is kept; frame listeners are
+ * told about it and it is passed to {@link SecurityService#processFrameAsync(String, BufferedImage)}
+ * at most once per scan interval, however fast frames arrive. The scan itself runs on the
+ * SecurityService's scanning pool, which all feeds share.
+ */
+public class CameraFeed implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(CameraFeed.class);
+
+    private final String cameraId;
+    private final FrameSource source;
+    private final SecurityService securityService;
+    private final Function<byte[], BufferedImage> decoder;
+    private final Duration scanInterval;
+    private final ThreadPoolExecutor decoders;
+    private final ScheduledExecutorService scanner;
+    private final Thread reader;
+    private final Set<Consumer<BufferedImage>> frameListeners = new CopyOnWriteArraySet<>();
+
+    private final AtomicLong nextSequence = new AtomicLong();
+    private final AtomicReference<Frame> latestFrame = new AtomicReference<>();
+    private long lastScannedSequence = -1;
+
+    private final LongAdder framesReceived = new LongAdder();
+    private final LongAdder framesDropped = new LongAdder();
+    private final LongAdder framesFailed = new LongAdder();
+    private final LongAdder framesScanned = new LongAdder();
+
+    /**
+     * @param cameraId Identifies the camera to the SecurityService
+     * @param source Where the frames come from; closed along with the feed
+     * @param securityService Service receiving the frames
+     * @param decodeThreads Number of frames decoded at once
+     * @param decodeQueueCapacity Number of frames waiting to be decoded before the oldest is dropped
+     * @param scanInterval Shortest time between frames passed to the SecurityService
+     */
+    public CameraFeed(String cameraId, FrameSource source, SecurityService securityService, int decodeThreads,
+                      int decodeQueueCapacity, Duration scanInterval) {
+        this(cameraId, source, securityService, decodeThreads, decodeQueueCapacity, scanInterval, CameraFeed::decode);
+    }
+
+    CameraFeed(String cameraId, FrameSource source, SecurityService securityService, int decodeThreads,
+               int decodeQueueCapacity, Duration scanInterval, Function<byte[], BufferedImage> decoder) {
+        if (decodeThreads < 1 || decodeQueueCapacity < 1 || scanInterval.isNegative() || scanInterval.isZero()) {
+            throw new IllegalArgumentException("decodeThreads, decodeQueueCapacity and scanInterval must be positive");
+        }
+        this.cameraId = cameraId;
+        this.source = source;
+        this.securityService = securityService;
+        this.decoder = decoder;
+        this.scanInterval = scanInterval;
+        this.decoders = new ThreadPoolExecutor(decodeThreads, decodeThreads, 30, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(decodeQueueCapacity), daemonThreads("camera-decoder"), (r, executor) -> {
+                    if (!executor.isShutdown()) {
+                        executor.getQueue().poll();
+                        framesDropped.increment();
+                        executor.execute(r);
+                    }
+                });
+        this.decoders.allowCoreThreadTimeOut(true);
+        this.scanner = Executors.newSingleThreadScheduledExecutor(daemonThreads("camera-scanner"));
+        this.reader = daemonThreads("camera-reader").newThread(this::readFrames);
+    }
+
+    /**
+     * Starts reading frames and passing them on for scanning.
+     */
+    public void start() {
+        reader.start();
+        scanner.scheduleWithFixedDelay(this::scanLatestFrame, 0, scanInterval.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Registers a listener told about every frame that becomes the newest decoded frame. It is
+     * called on a decoding thread and must hand any slow work elsewhere.
+     */
+    public void addFrameListener(Consumer<BufferedImage> listener) {
+        frameListeners.add(listener);
+    }
+
+    public void removeFrameListener(Consumer<BufferedImage> listener) {
+        frameListeners.remove(listener);
+    }
+
+    public String getCameraId() {
+        return cameraId;
+    }
+
+    /**
+     * @return The newest decoded frame, or null if none has been decoded yet
+     */
+    public BufferedImage getLatestFrame() {
+        Frame frame = latestFrame.get();
+        return frame == null ? null : frame.image;
+    }
+
+    public long getFramesReceived() {
+        return framesReceived.sum();
+    }
+
+    /**
+     * @return Number of frames dropped because the decoders fell behind
+     */
+    public long getFramesDropped() {
+        return framesDropped.sum();
+    }
+
+    /**
+     * @return Number of frames that could not be decoded or scanned
+     */
+    public long getFramesFailed() {
+        return framesFailed.sum();
+    }
+
+    public long getFramesScanned() {
+        return framesScanned.sum();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            source.close();
+        } finally {
+            reader.interrupt();
+            decoders.shutdownNow();
+            scanner.shutdownNow();
+        }
+    }
+
+    private void readFrames() {
+        try {
+            source.read(bytes -> {
+                framesReceived.increment();
+                long sequence = nextSequence.getAndIncrement();
+                decoders.execute(() -> decodeFrame(sequence, bytes));
+            });
+        } catch (IOException e) {
+            log.error("Camera feed stopped", e);
+        }
+    }
+
+    private void decodeFrame(long sequence, byte[] bytes) {
+        BufferedImage image;
+        try {
+            image = decoder.apply(bytes);
+        } catch (RuntimeException e) {
+            framesFailed.increment();
+            return;
+        }
+        //decoders finish out of order, so an older frame must not replace a newer one
+        Frame frame = new Frame(sequence, image);
+        Frame previous = latestFrame.getAndAccumulate(frame, (current, next) ->
+                current == null || next.sequence > current.sequence ? next : current);
+        if (previous == null || sequence > previous.sequence) {
+            frameListeners.forEach(listener -> listener.accept(image));
+        }
+    }
+
+    private void scanLatestFrame() {
+        Frame frame = latestFrame.get();
+        if (frame == null || frame.sequence == lastScannedSequence) {
+            return;
+        }
+        lastScannedSequence = frame.sequence;
+        try {
+            //waiting keeps this camera to one scan at a time
+            if (securityService.processFrameAsync(cameraId, frame.image).join()) {
+                framesScanned.increment();
+            }
+        } catch (RuntimeException e) {
+            //a failed scan must not stop the scans of later frames
+            framesFailed.increment();
+        }
+    }
+
+    private static BufferedImage decode(byte[] bytes) {
+        try {
+            return ImageInput.ofEncoded(bytes).toImage();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static ThreadFactory daemonThreads(String name) {
+        AtomicInteger threadCount = new AtomicInteger();
+        return r -> {
+            Thread thread = new Thread(r, name + "-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private static final class Frame {
+        private final long sequence;
+        private final BufferedImage image;
+
+        Frame(long sequence, BufferedImage image) {
+            this.sequence = sequence;
+            this.image = image;
+        }
+    }
+}
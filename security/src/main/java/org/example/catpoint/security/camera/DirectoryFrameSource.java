@@ -0,0 +1,87 @@
+package org.example.catpoint.security.camera;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Locale;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Treats images written into a directory as camera frames, for cameras that upload snapshots to
+ * a shared folder.
+ *
+ * Only images created or modified after the source starts are read. A file that is still being
+ * written may be read incomplete; it then fails to decode and is skipped, and the event for the
+ * finished write delivers the whole image.
+ */
+public class DirectoryFrameSource implements FrameSource {
+
+    private static final Set<String> IMAGE_EXTENSIONS = Set.of("jpg", "jpeg", "png", "bmp", "gif");
+
+    private final Path directory;
+    private final WatchService watchService;
+
+    public DirectoryFrameSource(Path directory) throws IOException {
+        this.directory = directory;
+        this.watchService = FileSystems.getDefault().newWatchService();
+        directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+    }
+
+    @Override
+    public void read(Consumer<byte[]> frames) throws IOException {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    //on overflow some events were lost; the next write is picked up as usual
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        continue;
+                    }
+                    Path file = directory.resolve((Path) event.context());
+                    if (isImage(file)) {
+                        readFrame(file, frames);
+                    }
+                }
+                if (!key.reset()) {
+                    return;
+                }
+            }
+        } catch (ClosedWatchServiceException e) {
+            //closed from another thread
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static boolean isImage(Path file) {
+        String name = file.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return dot >= 0 && IMAGE_EXTENSIONS.contains(name.substring(dot + 1).toLowerCase(Locale.ROOT));
+    }
+
+    private static void readFrame(Path file, Consumer<byte[]> frames) throws IOException {
+        byte[] frame;
+        try {
+            frame = Files.readAllBytes(file);
+        } catch (NoSuchFileException e) {
+            //removed again before it could be read
+            return;
+        }
+        if (frame.length > 0) {
+            frames.accept(frame);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        watchService.close();
+    }
+}
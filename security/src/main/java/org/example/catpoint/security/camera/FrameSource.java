@@ -0,0 +1,23 @@
+package org.example.catpoint.security.camera;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.function.Consumer;
+
+/**
+ * Produces encoded camera frames, such as JPEG or PNG images, as they become available.
+ */
+public interface FrameSource extends Closeable {
+
+    /**
+     * Blocks, handing each encoded frame to the consumer, until the source runs out of frames or
+     * is closed from another thread.
+     */
+    void read(Consumer<byte[]> frames) throws IOException;
+
+    /**
+     * Stops the source. A read in progress returns soon after.
+     */
+    @Override
+    void close() throws IOException;
+}
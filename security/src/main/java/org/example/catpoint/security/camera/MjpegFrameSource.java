@@ -0,0 +1,127 @@
+package org.example.catpoint.security.camera;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * Reads a motion JPEG stream, which is simply JPEG images one after another, possibly with
+ * multipart headers or other bytes in between.
+ *
+ * Frames are cut at the JPEG start and end of image markers. Markers of images embedded in a
+ * frame, such as EXIF thumbnails, are nested and stay part of the enclosing frame. A frame that
+ * grows beyond the size limit without ending is dropped and the reader waits for the next one.
+ */
+public class MjpegFrameSource implements FrameSource {
+
+    public static final int DEFAULT_MAX_FRAME_BYTES = 16 * 1024 * 1024;
+
+    private static final int MARKER = 0xFF;
+    private static final int START_OF_IMAGE = 0xD8;
+    private static final int END_OF_IMAGE = 0xD9;
+    private static final int READ_BUFFER_BYTES = 64 * 1024;
+
+    private final InputStream input;
+    private final long frameIntervalNanos;
+    private final int maxFrameBytes;
+    private volatile boolean closed;
+
+    private byte[] frame = new byte[READ_BUFFER_BYTES];
+    private int frameLength;
+
+    /**
+     * @param input Stream to read, closed along with the source
+     * @param frameInterval Time to wait between frames when playing back a recording, or zero
+     *                      for a live stream that is already paced by its producer
+     * @param maxFrameBytes Largest frame accepted
+     */
+    public MjpegFrameSource(InputStream input, Duration frameInterval, int maxFrameBytes) {
+        if (frameInterval.isNegative() || maxFrameBytes < 4) {
+            throw new IllegalArgumentException("frameInterval must not be negative and maxFrameBytes must hold a frame");
+        }
+        this.input = input;
+        this.frameIntervalNanos = frameInterval.toNanos();
+        this.maxFrameBytes = maxFrameBytes;
+    }
+
+    /**
+     * Plays back a recorded MJPEG file at the given frame interval.
+     */
+    public static MjpegFrameSource ofFile(Path file, Duration frameInterval) throws IOException {
+        return new MjpegFrameSource(Files.newInputStream(file), frameInterval, DEFAULT_MAX_FRAME_BYTES);
+    }
+
+    @Override
+    public void read(Consumer<byte[]> frames) throws IOException {
+        byte[] buffer = new byte[READ_BUFFER_BYTES];
+        int depth = 0;
+        int previous = -1;
+        int n;
+        try {
+            while (!closed && (n = input.read(buffer)) != -1) {
+                for (int i = 0; i < n; i++) {
+                    int b = buffer[i] & 0xFF;
+                    if (depth > 0) {
+                        append(b);
+                    }
+                    if (previous == MARKER && b == START_OF_IMAGE) {
+                        if (depth == 0) {
+                            frameLength = 0;
+                            append(MARKER);
+                            append(START_OF_IMAGE);
+                        }
+                        depth++;
+                    } else if (previous == MARKER && b == END_OF_IMAGE && depth > 0) {
+                        depth--;
+                        if (depth == 0) {
+                            frames.accept(Arrays.copyOf(frame, frameLength));
+                            if (!pace()) {
+                                return;
+                            }
+                        }
+                    }
+                    if (depth > 0 && frameLength > maxFrameBytes) {
+                        depth = 0;
+                    }
+                    //a marker byte pair is never reused as the first byte of the next pair
+                    previous = previous == MARKER && b != MARKER ? -1 : b;
+                }
+            }
+        } catch (IOException e) {
+            //closing the stream from another thread makes the blocked read fail
+            if (!closed) {
+                throw e;
+            }
+        }
+    }
+
+    private void append(int b) {
+        if (frameLength == frame.length) {
+            frame = Arrays.copyOf(frame, Math.min(frame.length * 2, maxFrameBytes + 1));
+        }
+        frame[frameLength++] = (byte) b;
+    }
+
+    private boolean pace() {
+        if (frameIntervalNanos == 0) {
+            return true;
+        }
+        try {
+            Thread.sleep(frameIntervalNanos / 1_000_000, (int) (frameIntervalNanos % 1_000_000));
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        input.close();
+    }
+}
@@ -0,0 +1,347 @@
+package org.example.catpoint.security.data;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Repository decorator that buffers mutations and writes them to the wrapped repository in
+ * batches. Reads take pending changes into account, so callers see their changes immediately
+ * even though they have not been persisted yet.
+ *
+ * Pending changes are flushed when the flush window elapses, when the number of pending
+ * sensor changes reaches the batch size, or when {@link #flush()} is called. Repeated updates
+ * of the same sensor within a batch collapse into a single write, so arming the system with
+ * many active sensors results in one physical write instead of one per sensor.
+ *
+ * Sensors are not copied from the wrapped repository up front. Each one is cached the first
+ * time it is read or written through this decorator, so opening a repository that creates its
+ * sensors lazily stays cheap. Counts are answered from the wrapped repository's counts,
+ * corrected by the difference between the cached sensors and what the wrapped repository last
+ * stored for them. This relies on all writes to the wrapped repository going through this
+ * decorator, and on callers not changing a sensor they read from the wrapped repository
+ * directly.
+ */
+public class CoalescingSecurityRepository implements SecurityRepository, Closeable {
+
+    /**
+     * Controls when alarm and arming status changes reach the wrapped repository.
+     */
+    public enum Durability {
+        /** Status changes are buffered like sensor changes. */
+        BUFFERED,
+        /**
+         * Status changes flush all pending changes and are written immediately. This only means the
+         * wrapped repository has been handed the changes when the call returns; whether they survive
+         * a crash depends on that repository, such as an {@link EventLogSecurityRepositoryImpl}
+         * opened with syncOnWrite.
+         */
+        SYNC_ALARM_STATE
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(CoalescingSecurityRepository.class);
+
+    private static final byte INACTIVE = -1;
+    private static final byte ABSENT = -2;
+
+    private static final Duration DEFAULT_FLUSH_WINDOW = Duration.ofMillis(100);
+    private static final int DEFAULT_MAX_BATCH_SIZE = 1_000;
+
+    private final SecurityRepository delegate;
+    private final int maxBatchSize;
+    private final Durability durability;
+    private final ScheduledExecutorService flusher;
+
+    //sensors read or written through this decorator, minus those removed since
+    private final SensorIndex sensors = new SensorIndex();
+    //for every sensor ever cached, how the wrapped repository last stored it: ABSENT, INACTIVE or the type ordinal
+    private final Map<UUID, Byte> storedStates = new HashMap<>();
+    //totals of storedStates, to be replaced by the cache's own totals in the counts
+    private int storedCount;
+    private int storedActiveCount;
+    private final int[] storedActiveCountByType = new int[SensorType.values().length];
+    //true once every sensor of the wrapped repository has been cached
+    private boolean allCached;
+    private AlarmStatus alarmStatus;
+    private ArmingStatus armingStatus;
+
+    private final Map<UUID, Sensor> pendingUpdates = new LinkedHashMap<>();
+    private final Map<UUID, Sensor> pendingRemovals = new LinkedHashMap<>();
+    private AlarmStatus pendingAlarmStatus;
+    private ArmingStatus pendingArmingStatus;
+
+    public CoalescingSecurityRepository(SecurityRepository delegate) {
+        this(delegate, DEFAULT_FLUSH_WINDOW, DEFAULT_MAX_BATCH_SIZE, Durability.SYNC_ALARM_STATE);
+    }
+
+    /**
+     * @param delegate The repository that changes are eventually written to
+     * @param flushWindow Longest time a change stays buffered before being written
+     * @param maxBatchSize Number of pending sensor changes that triggers an immediate flush
+     * @param durability Whether alarm and arming status changes bypass the buffer
+     */
+    public CoalescingSecurityRepository(SecurityRepository delegate, Duration flushWindow,
+                                        int maxBatchSize, Durability durability) {
+        if (flushWindow.isNegative() || flushWindow.isZero() || maxBatchSize < 1) {
+            throw new IllegalArgumentException("flushWindow and maxBatchSize must be positive");
+        }
+        this.delegate = delegate;
+        this.maxBatchSize = maxBatchSize;
+        this.durability = durability;
+        this.alarmStatus = delegate.getAlarmStatus();
+        this.armingStatus = delegate.getArmingStatus();
+
+        flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "repository-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long windowNanos = flushWindow.toNanos();
+        flusher.scheduleWithFixedDelay(this::flushQuietly, windowNanos, windowNanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public synchronized void addSensor(Sensor sensor) {
+        cacheStored(sensor.getSensorId());
+        sensors.put(sensor);
+        pendingRemovals.remove(sensor.getSensorId());
+        pendingUpdates.put(sensor.getSensorId(), sensor);
+        flushIfFull();
+    }
+
+    @Override
+    public synchronized void removeSensor(Sensor sensor) {
+        cacheStored(sensor.getSensorId());
+        sensors.remove(sensor.getSensorId());
+        pendingUpdates.remove(sensor.getSensorId());
+        pendingRemovals.put(sensor.getSensorId(), sensor);
+        flushIfFull();
+    }
+
+    @Override
+    public synchronized void updateSensor(Sensor sensor) {
+        cacheStored(sensor.getSensorId());
+        sensors.put(sensor);
+        pendingRemovals.remove(sensor.getSensorId());
+        pendingUpdates.put(sensor.getSensorId(), sensor);
+        flushIfFull();
+    }
+
+    @Override
+    public synchronized void updateSensors(Collection<Sensor> updatedSensors) {
+        for (Sensor sensor : updatedSensors) {
+            cacheStored(sensor.getSensorId());
+            sensors.put(sensor);
+            pendingRemovals.remove(sensor.getSensorId());
+            pendingUpdates.put(sensor.getSensorId(), sensor);
+        }
+        flushIfFull();
+    }
+
+    @Override
+    public synchronized void setAlarmStatus(AlarmStatus alarmStatus) {
+        this.alarmStatus = alarmStatus;
+        pendingAlarmStatus = alarmStatus;
+        if (durability == Durability.SYNC_ALARM_STATE) {
+            flush();
+        }
+    }
+
+    @Override
+    public synchronized void setArmingStatus(ArmingStatus armingStatus) {
+        this.armingStatus = armingStatus;
+        pendingArmingStatus = armingStatus;
+        if (durability == Durability.SYNC_ALARM_STATE) {
+            flush();
+        }
+    }
+
+    @Override
+    public synchronized Set<Sensor> getSensors() {
+        if (!allCached) {
+            delegate.getSensors().forEach(this::cache);
+            allCached = true;
+        }
+        return sensors.snapshot();
+    }
+
+    @Override
+    public synchronized int getSensorCount() {
+        return delegate.getSensorCount() - storedCount + sensors.size();
+    }
+
+    @Override
+    public synchronized Sensor getSensor(UUID sensorId) {
+        Sensor sensor = sensors.get(sensorId);
+        if (sensor == null && !allCached && !storedStates.containsKey(sensorId)) {
+            sensor = delegate.getSensor(sensorId);
+            if (sensor != null) {
+                cache(sensor);
+            }
+        }
+        return sensor;
+    }
+
+    @Override
+    public synchronized Sensor getSensor(long mostSigBits, long leastSigBits) {
+        Sensor sensor = sensors.get(mostSigBits, leastSigBits);
+        if (sensor == null && !allCached) {
+            //only ids the wrapped repository knows are worth a UUID
+            Sensor stored = delegate.getSensor(mostSigBits, leastSigBits);
+            if (stored != null && !storedStates.containsKey(stored.getSensorId())) {
+                cache(stored);
+                sensor = stored;
+            }
+        }
+        return sensor;
+    }
+
+    @Override
+    public synchronized Collection<Sensor> getActiveSensors() {
+        if (!allCached) {
+            delegate.getActiveSensors().forEach(this::cache);
+        }
+        return sensors.activeSensors();
+    }
+
+    @Override
+    public synchronized int getActiveSensorCount() {
+        return delegate.getActiveSensorCount() - storedActiveCount + sensors.activeCount();
+    }
+
+    @Override
+    public synchronized int getActiveSensorCount(SensorType sensorType) {
+        return delegate.getActiveSensorCount(sensorType) - storedActiveCountByType[sensorType.ordinal()]
+                + sensors.activeCount(sensorType);
+    }
+
+    @Override
+    public synchronized AlarmStatus getAlarmStatus() {
+        return alarmStatus;
+    }
+
+    @Override
+    public synchronized ArmingStatus getArmingStatus() {
+        return armingStatus;
+    }
+
+    /**
+     * Writes all pending changes to the wrapped repository. Changes stay pending if the
+     * wrapped repository fails, so they are retried by the next flush.
+     */
+    public synchronized void flush() {
+        if (!pendingRemovals.isEmpty()) {
+            for (Sensor removed : pendingRemovals.values()) {
+                delegate.removeSensor(removed);
+                setStoredState(removed.getSensorId(), ABSENT);
+            }
+            pendingRemovals.clear();
+        }
+        if (!pendingUpdates.isEmpty()) {
+            delegate.updateSensors(List.copyOf(pendingUpdates.values()));
+            pendingUpdates.values().forEach(sensor -> setStoredState(sensor.getSensorId(), stateOf(sensor)));
+            pendingUpdates.clear();
+        }
+        if (pendingArmingStatus != null) {
+            delegate.setArmingStatus(pendingArmingStatus);
+            pendingArmingStatus = null;
+        }
+        if (pendingAlarmStatus != null) {
+            delegate.setAlarmStatus(pendingAlarmStatus);
+            pendingAlarmStatus = null;
+        }
+    }
+
+    /**
+     * Stops the background flush, writes any pending changes and closes the wrapped
+     * repository if it holds resources.
+     */
+    @Override
+    public void close() throws IOException {
+        flusher.shutdown();
+        flush();
+        if (delegate instanceof Closeable) {
+            ((Closeable) delegate).close();
+        }
+    }
+
+    /**
+     * Caches the wrapped repository's sensor with this id before it is changed, unless the id has
+     * been seen before.
+     */
+    private void cacheStored(UUID sensorId) {
+        if (!allCached && !storedStates.containsKey(sensorId)) {
+            Sensor stored = delegate.getSensor(sensorId);
+            if (stored == null) {
+                storedStates.put(sensorId, ABSENT);
+            } else {
+                cache(stored);
+            }
+        }
+    }
+
+    /**
+     * Caches a sensor read from the wrapped repository, unless its id has been seen before.
+     */
+    private void cache(Sensor stored) {
+        if (storedStates.containsKey(stored.getSensorId())) {
+            return;
+        }
+        storedStates.put(stored.getSensorId(), ABSENT);
+        setStoredState(stored.getSensorId(), stateOf(stored));
+        sensors.put(stored);
+    }
+
+    /**
+     * Records how the wrapped repository now stores a cached sensor.
+     */
+    private void setStoredState(UUID sensorId, byte state) {
+        byte previous = storedStates.put(sensorId, state);
+        if (previous != ABSENT) {
+            storedCount--;
+            if (previous != INACTIVE) {
+                storedActiveCount--;
+                storedActiveCountByType[previous]--;
+            }
+        }
+        if (state != ABSENT) {
+            storedCount++;
+            if (state != INACTIVE) {
+                storedActiveCount++;
+                storedActiveCountByType[state]++;
+            }
+        }
+    }
+
+    private static byte stateOf(Sensor sensor) {
+        return Boolean.TRUE.equals(sensor.getActive()) ? (byte) sensor.getSensorType().ordinal() : INACTIVE;
+    }
+
+    private void flushIfFull() {
+        if (pendingUpdates.size() + pendingRemovals.size() >= maxBatchSize) {
+            flush();
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            //changes remain pending; the next window or an explicit flush() retries them
+            log.error("Unable to write buffered changes to the wrapped repository", e);
+        }
+    }
+}
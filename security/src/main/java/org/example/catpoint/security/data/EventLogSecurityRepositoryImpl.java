@@ -0,0 +1,385 @@
+package org.example.catpoint.security.data;
+
+import org.example.catpoint.security.metrics.LatencyHistogram;
+import org.example.catpoint.security.metrics.MetricsRegistry;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+
+/**
+ * Repository implementation that stores every change as a record appended to an event log,
+ * so a single sensor update costs one small write instead of re-serializing every sensor.
+ *
+ * Each record is framed as [payload length][CRC32 of payload][payload]. Once enough records
+ * have accumulated the current state is compacted into a {@link SensorSnapshot} and the log
+ * is cleared.
+ * On startup the snapshot is loaded and the log is replayed on top of it; replay stops at the
+ * first truncated or corrupt record, and the log is cut back to the last good record.
+ *
+ * Records the time of every append, forcing to storage included, as repository.eventLog.write,
+ * and the bytes appended as repository.eventLog.bytesWritten. A batch counts as one append.
+ */
+public class EventLogSecurityRepositoryImpl implements SecurityRepository, Closeable {
+
+    static final String LOG_FILE = "events.log";
+    static final String SNAPSHOT_FILE = "snapshot.bin";
+
+    private static final int DEFAULT_COMPACTION_THRESHOLD = 10_000;
+    private static final int HEADER_SIZE = 8;
+    private static final int MAX_RECORD_SIZE = 64 * 1024;
+
+    //record types
+    private static final byte SENSOR_ADDED = 1;
+    private static final byte SENSOR_REMOVED = 2;
+    private static final byte SENSOR_UPDATED = 3;
+    private static final byte ALARM_STATUS_CHANGED = 4;
+    private static final byte ARMING_STATUS_CHANGED = 5;
+
+    private final Path directory;
+    private final int compactionThreshold;
+    private final boolean syncOnWrite;
+
+    private final SensorIndex sensors = new SensorIndex();
+    private AlarmStatus alarmStatus = AlarmStatus.NO_ALARM;
+    private ArmingStatus armingStatus = ArmingStatus.DISARMED;
+
+    private final ByteArrayOutputStream payloadBytes = new ByteArrayOutputStream(256);
+    private final DataOutputStream payload = new DataOutputStream(payloadBytes);
+    private final CRC32 crc = new CRC32();
+    private FileChannel log;
+    private int recordsSinceCompaction;
+    private final LatencyHistogram writeLatency = MetricsRegistry.getDefault().histogram("repository.eventLog.write");
+    private final LongAdder bytesWritten = MetricsRegistry.getDefault().counter("repository.eventLog.bytesWritten");
+
+    public EventLogSecurityRepositoryImpl(Path directory) {
+        this(directory, DEFAULT_COMPACTION_THRESHOLD, false);
+    }
+
+    /**
+     * @param directory Directory holding the event log and snapshot files
+     * @param compactionThreshold Number of appended records after which the log is compacted
+     * @param syncOnWrite If true, every record is forced to the storage device before returning
+     */
+    public EventLogSecurityRepositoryImpl(Path directory, int compactionThreshold, boolean syncOnWrite) {
+        if (compactionThreshold < 1) {
+            throw new IllegalArgumentException("compactionThreshold must be positive");
+        }
+        this.directory = directory;
+        this.compactionThreshold = compactionThreshold;
+        this.syncOnWrite = syncOnWrite;
+        try {
+            Files.createDirectories(directory);
+            Path snapshotFile = directory.resolve(SNAPSHOT_FILE);
+            if (Files.exists(snapshotFile)) {
+                SensorSnapshot snapshot = SensorSnapshot.open(snapshotFile);
+                //sensors are created from the mapped records when first looked up
+                sensors.load(snapshot);
+                alarmStatus = snapshot.getAlarmStatus();
+                armingStatus = snapshot.getArmingStatus();
+            }
+            log = FileChannel.open(directory.resolve(LOG_FILE),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            long validLength = replay(log);
+            recordsSinceCompaction = 0;
+            if (validLength < log.size()) {
+                //a crash left a partial record behind, drop it so new records follow valid data
+                log.truncate(validLength);
+                log.force(true);
+            }
+            log.position(validLength);
+        } catch (IOException ioe) {
+            throw new UncheckedIOException("Unable to open event log in " + directory, ioe);
+        }
+    }
+
+    /**
+     * Opens an event log repository in the given directory. If the directory holds no state yet,
+     * it is first seeded with the state of the source repository, which allows migrating the
+     * preferences-backed {@link PretendDatabaseSecurityRepositoryImpl} without losing sensors.
+     * The source repository is only created when a migration actually runs, so later starts do
+     * not pay for loading it.
+     */
+    public static EventLogSecurityRepositoryImpl migrateFrom(Supplier<? extends SecurityRepository> source,
+                                                             Path directory) {
+        Path snapshotFile = directory.resolve(SNAPSHOT_FILE);
+        Path logFile = directory.resolve(LOG_FILE);
+        try {
+            if (Files.notExists(snapshotFile) && (Files.notExists(logFile) || Files.size(logFile) == 0)) {
+                Files.createDirectories(directory);
+                SensorSnapshot.migrate(source.get(), snapshotFile);
+            }
+        } catch (IOException ioe) {
+            throw new UncheckedIOException("Unable to migrate state into " + directory, ioe);
+        }
+        return new EventLogSecurityRepositoryImpl(directory);
+    }
+
+    @Override
+    public synchronized void addSensor(Sensor sensor) {
+        sensors.put(sensor);
+        appendSensorRecord(SENSOR_ADDED, sensor);
+    }
+
+    @Override
+    public synchronized void removeSensor(Sensor sensor) {
+        sensors.remove(sensor.getSensorId());
+        appendSensorRecord(SENSOR_REMOVED, sensor);
+    }
+
+    @Override
+    public synchronized void updateSensor(Sensor sensor) {
+        sensors.put(sensor);
+        appendSensorRecord(SENSOR_UPDATED, sensor);
+    }
+
+    /**
+     * Appends one record per sensor but forces the log to storage only once for the batch.
+     */
+    @Override
+    public synchronized void updateSensors(Collection<Sensor> updatedSensors) {
+        long start = System.nanoTime();
+        try {
+            for (Sensor sensor : updatedSensors) {
+                sensors.put(sensor);
+                writeRecord(encodeSensor(SENSOR_UPDATED, sensor));
+            }
+            if (syncOnWrite) {
+                log.force(false);
+            }
+        } catch (IOException ioe) {
+            throw new UncheckedIOException("Unable to append to event log", ioe);
+        }
+        writeLatency.recordSince(start);
+        recordsSinceCompaction += updatedSensors.size();
+        if (recordsSinceCompaction >= compactionThreshold) {
+            compact();
+        }
+    }
+
+    @Override
+    public synchronized void setAlarmStatus(AlarmStatus alarmStatus) {
+        this.alarmStatus = alarmStatus;
+        appendStatusRecord(ALARM_STATUS_CHANGED, alarmStatus.ordinal());
+    }
+
+    @Override
+    public synchronized void setArmingStatus(ArmingStatus armingStatus) {
+        this.armingStatus = armingStatus;
+        appendStatusRecord(ARMING_STATUS_CHANGED, armingStatus.ordinal());
+    }
+
+    @Override
+    public synchronized Set<Sensor> getSensors() {
+        return sensors.snapshot();
+    }
+
+    @Override
+    public synchronized int getSensorCount() {
+        return sensors.size();
+    }
+
+    @Override
+    public synchronized Sensor getSensor(UUID sensorId) {
+        return sensors.get(sensorId);
+    }
+
+    @Override
+    public synchronized Sensor getSensor(long mostSigBits, long leastSigBits) {
+        return sensors.get(mostSigBits, leastSigBits);
+    }
+
+    @Override
+    public synchronized Collection<Sensor> getActiveSensors() {
+        return sensors.activeSensors();
+    }
+
+    @Override
+    public synchronized int getActiveSensorCount() {
+        return sensors.activeCount();
+    }
+
+    @Override
+    public synchronized int getActiveSensorCount(SensorType sensorType) {
+        return sensors.activeCount(sensorType);
+    }
+
+    @Override
+    public synchronized AlarmStatus getAlarmStatus() {
+        return alarmStatus;
+    }
+
+    @Override
+    public synchronized ArmingStatus getArmingStatus() {
+        return armingStatus;
+    }
+
+    /**
+     * Writes the current state to a new {@link SensorSnapshot} and clears the event log. The
+     * snapshot is moved into place atomically and every record type is idempotent, so a crash
+     * between the two steps only means some records are replayed twice.
+     */
+    public synchronized void compact() {
+        try {
+            SensorSnapshot.write(directory.resolve(SNAPSHOT_FILE), sensors.sortedView(), alarmStatus, armingStatus);
+            log.truncate(0);
+            log.force(true);
+            recordsSinceCompaction = 0;
+        } catch (IOException ioe) {
+            throw new UncheckedIOException("Unable to compact event log", ioe);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        log.close();
+    }
+
+    private void appendSensorRecord(byte type, Sensor sensor) {
+        append(encodeSensor(type, sensor));
+    }
+
+    private void appendStatusRecord(byte type, int ordinal) {
+        append(encodeStatus(type, ordinal));
+    }
+
+    private void append(ByteBuffer record) {
+        long start = System.nanoTime();
+        try {
+            writeRecord(record);
+            if (syncOnWrite) {
+                log.force(false);
+            }
+        } catch (IOException ioe) {
+            throw new UncheckedIOException("Unable to append to event log", ioe);
+        }
+        writeLatency.recordSince(start);
+        if (++recordsSinceCompaction >= compactionThreshold) {
+            compact();
+        }
+    }
+
+    private ByteBuffer encodeSensor(byte type, Sensor sensor) {
+        payloadBytes.reset();
+        try {
+            payload.writeByte(type);
+            payload.writeLong(sensor.getSensorId().getMostSignificantBits());
+            payload.writeLong(sensor.getSensorId().getLeastSignificantBits());
+            payload.writeByte(sensor.getSensorType().ordinal());
+            payload.writeBoolean(sensor.getActive());
+            byte[] name = sensor.getName().getBytes(StandardCharsets.UTF_8);
+            payload.writeInt(name.length);
+            payload.write(name);
+        } catch (IOException ioe) {
+            //writing to a byte array cannot fail
+            throw new UncheckedIOException(ioe);
+        }
+        return frame();
+    }
+
+    private ByteBuffer encodeStatus(byte type, int ordinal) {
+        payloadBytes.reset();
+        try {
+            payload.writeByte(type);
+            payload.writeByte(ordinal);
+        } catch (IOException ioe) {
+            throw new UncheckedIOException(ioe);
+        }
+        return frame();
+    }
+
+    private ByteBuffer frame() {
+        byte[] bytes = payloadBytes.toByteArray();
+        if (bytes.length > MAX_RECORD_SIZE) {
+            throw new IllegalArgumentException("Record exceeds " + MAX_RECORD_SIZE + " bytes");
+        }
+        crc.reset();
+        crc.update(bytes);
+        ByteBuffer record = ByteBuffer.allocate(HEADER_SIZE + bytes.length);
+        record.putInt(bytes.length).putInt((int) crc.getValue()).put(bytes).flip();
+        return record;
+    }
+
+    private void writeRecord(ByteBuffer record) throws IOException {
+        bytesWritten.add(record.remaining());
+        while (record.hasRemaining()) {
+            log.write(record);
+        }
+    }
+
+    /**
+     * Applies every valid record in the channel to the in-memory state.
+     * @return The offset just past the last valid record
+     */
+    private long replay(FileChannel channel) throws IOException {
+        long size = channel.size();
+        long position = 0;
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        while (size - position >= HEADER_SIZE) {
+            header.clear();
+            channel.read(header, position);
+            header.flip();
+            int length = header.getInt();
+            int checksum = header.getInt();
+            if (length < 1 || length > MAX_RECORD_SIZE || size - position - HEADER_SIZE < length) {
+                break;
+            }
+            ByteBuffer body = ByteBuffer.allocate(length);
+            while (body.hasRemaining()) {
+                if (channel.read(body, position + HEADER_SIZE + body.position()) < 0) {
+                    break;
+                }
+            }
+            crc.reset();
+            crc.update(body.array(), 0, length);
+            if ((int) crc.getValue() != checksum || !apply(body.flip())) {
+                break;
+            }
+            position += HEADER_SIZE + length;
+        }
+        return position;
+    }
+
+    private boolean apply(ByteBuffer record) {
+        try {
+            byte type = record.get();
+            switch (type) {
+                case SENSOR_ADDED, SENSOR_UPDATED -> sensors.put(decodeSensor(record));
+                case SENSOR_REMOVED -> sensors.remove(decodeSensor(record).getSensorId());
+                case ALARM_STATUS_CHANGED -> alarmStatus = AlarmStatus.values()[record.get()];
+                case ARMING_STATUS_CHANGED -> armingStatus = ArmingStatus.values()[record.get()];
+                default -> {
+                    return false;
+                }
+            }
+            return true;
+        } catch (RuntimeException e) {
+            //a record that passed its checksum but cannot be decoded is treated like corruption
+            return false;
+        }
+    }
+
+    private static Sensor decodeSensor(ByteBuffer record) {
+        UUID sensorId = new UUID(record.getLong(), record.getLong());
+        SensorType sensorType = SensorType.values()[record.get()];
+        boolean active = record.get() != 0;
+        byte[] name = new byte[record.getInt()];
+        record.get(name);
+
+        return new Sensor(sensorId, new String(name, StandardCharsets.UTF_8), sensorType, active);
+    }
+}
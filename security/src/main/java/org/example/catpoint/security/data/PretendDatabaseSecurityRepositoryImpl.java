@@ -2,20 +2,33 @@ package org.example.catpoint.security.data;
 
 import com.google.common.reflect.TypeToken;
 import com.google.gson.Gson;
+import org.example.catpoint.security.metrics.LatencyHistogram;
+import org.example.catpoint.security.metrics.MetricsRegistry;
 
 import java.lang.reflect.Type;
+import java.util.Collection;
 import java.util.Set;
-import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.prefs.Preferences;
 
 /**
  * Fake repository implementation for demo purposes. Stores state information in local
  * memory and writes it to user preferences between app loads. This implementation is
  * intentionally a little hard to use in unit tests, so watch out!
+ *
+ * All methods are synchronized, and getSensors() returns a copy, so the repository can be
+ * shared between threads.
+ *
+ * Preferences limits a single value to 8 KB, so once the sensor JSON outgrows that it is split
+ * across numbered keys.
+ *
+ * Records the time of every write, serialization included, as repository.preferences.write, and
+ * the characters written as repository.preferences.bytesWritten.
  */
 public class PretendDatabaseSecurityRepositoryImpl implements SecurityRepository {
 
-    private Set<Sensor> sensors;
+    private final SensorIndex sensors = new SensorIndex();
     private AlarmStatus alarmStatus;
     private ArmingStatus armingStatus;
 
@@ -23,70 +36,170 @@ public class PretendDatabaseSecurityRepositoryImpl implements SecurityRepository
     private static final String SENSORS = "SENSORS";
     private static final String ALARM_STATUS = "ALARM_STATUS";
     private static final String ARMING_STATUS = "ARMING_STATUS";
+    private static final String SENSOR_CHUNKS = "SENSOR_CHUNKS";
 
-    private static final Preferences prefs = Preferences.userNodeForPackage(PretendDatabaseSecurityRepositoryImpl.class);
     private static final Gson gson = new Gson(); //used to serialize objects into JSON
 
+    private final Preferences prefs;
+    private final LatencyHistogram writeLatency = MetricsRegistry.getDefault().histogram("repository.preferences.write");
+    private final LongAdder bytesWritten = MetricsRegistry.getDefault().counter("repository.preferences.bytesWritten");
+
     public PretendDatabaseSecurityRepositoryImpl() {
+        this(Preferences.userNodeForPackage(PretendDatabaseSecurityRepositoryImpl.class));
+    }
+
+    /**
+     * @param prefs The preferences node that state is stored in, such as a throwaway node for
+     *              tests and benchmarks
+     */
+    public PretendDatabaseSecurityRepositoryImpl(Preferences prefs) {
+        this.prefs = prefs;
         //load system state from prefs, or else default
         alarmStatus = AlarmStatus.valueOf(prefs.get(ALARM_STATUS, AlarmStatus.NO_ALARM.toString()));
         armingStatus = ArmingStatus.valueOf(prefs.get(ARMING_STATUS, ArmingStatus.DISARMED.toString()));
 
         //we've serialized our sensor objects for storage, which should be a good warning sign that
         // this is likely an impractical solution for a real system
-        String sensorString = prefs.get(SENSORS, null);
-        if(sensorString == null) {
-            sensors = new TreeSet<>();
-        } else {
+        String sensorString = loadSensorJson();
+        if(sensorString != null) {
             Type type = new TypeToken<Set<Sensor>>() {
             }.getType();
-            sensors = gson.fromJson(sensorString, type);
+            Set<Sensor> storedSensors = gson.fromJson(sensorString, type);
+            storedSensors.forEach(sensors::put);
         }
     }
 
     @Override
-    public void addSensor(Sensor sensor) {
-        sensors.add(sensor);
-        prefs.put(SENSORS, gson.toJson(sensors));
+    public synchronized void addSensor(Sensor sensor) {
+        sensors.put(sensor);
+        storeSensors();
+    }
+
+    @Override
+    public synchronized void removeSensor(Sensor sensor) {
+        sensors.remove(sensor.getSensorId());
+        storeSensors();
     }
 
     @Override
-    public void removeSensor(Sensor sensor) {
-        sensors.remove(sensor);
-        prefs.put(SENSORS, gson.toJson(sensors));
+    public synchronized void updateSensor(Sensor sensor) {
+        sensors.put(sensor);
+        storeSensors();
     }
 
     @Override
-    public void updateSensor(Sensor sensor) {
-        sensors.remove(sensor);
-        sensors.add(sensor);
-        prefs.put(SENSORS, gson.toJson(sensors));
+    public synchronized void updateSensors(Collection<Sensor> updatedSensors) {
+        updatedSensors.forEach(sensors::put);
+        storeSensors();
     }
 
     @Override
-    public void setAlarmStatus(AlarmStatus alarmStatus) {
+    public synchronized void setAlarmStatus(AlarmStatus alarmStatus) {
         this.alarmStatus = alarmStatus;
-        prefs.put(ALARM_STATUS, this.alarmStatus.toString());
+        putStatus(ALARM_STATUS, this.alarmStatus.toString());
     }
 
     @Override
-    public void setArmingStatus(ArmingStatus armingStatus) {
+    public synchronized void setArmingStatus(ArmingStatus armingStatus) {
         this.armingStatus = armingStatus;
-        prefs.put(ARMING_STATUS, this.armingStatus.toString());
+        putStatus(ARMING_STATUS, this.armingStatus.toString());
+    }
+
+    @Override
+    public synchronized Set<Sensor> getSensors() {
+        return sensors.snapshot();
+    }
+
+    @Override
+    public synchronized int getSensorCount() {
+        return sensors.size();
+    }
+
+    @Override
+    public synchronized Sensor getSensor(UUID sensorId) {
+        return sensors.get(sensorId);
+    }
+
+    @Override
+    public synchronized Sensor getSensor(long mostSigBits, long leastSigBits) {
+        return sensors.get(mostSigBits, leastSigBits);
     }
 
     @Override
-    public Set<Sensor> getSensors() {
-        return sensors;
+    public synchronized Collection<Sensor> getActiveSensors() {
+        return sensors.activeSensors();
     }
 
     @Override
-    public AlarmStatus getAlarmStatus() {
+    public synchronized int getActiveSensorCount() {
+        return sensors.activeCount();
+    }
+
+    @Override
+    public synchronized int getActiveSensorCount(SensorType sensorType) {
+        return sensors.activeCount(sensorType);
+    }
+
+    @Override
+    public synchronized AlarmStatus getAlarmStatus() {
         return alarmStatus;
     }
 
     @Override
-    public ArmingStatus getArmingStatus() {
+    public synchronized ArmingStatus getArmingStatus() {
         return armingStatus;
     }
+
+    private String loadSensorJson() {
+        int chunks = prefs.getInt(SENSOR_CHUNKS, 0);
+        if (chunks == 0) {
+            return prefs.get(SENSORS, null);
+        }
+        StringBuilder json = new StringBuilder(chunks * Preferences.MAX_VALUE_LENGTH);
+        for (int i = 0; i < chunks; i++) {
+            json.append(prefs.get(SENSORS + i, ""));
+        }
+        return json.toString();
+    }
+
+    private void putStatus(String key, String status) {
+        long start = System.nanoTime();
+        prefs.put(key, status);
+        bytesWritten.add(status.length());
+        writeLatency.recordSince(start);
+    }
+
+    private void storeSensors() {
+        long start = System.nanoTime();
+        String json = gson.toJson(sensors.sortedView());
+        storeSensorJson(json);
+        //the JSON is ASCII apart from sensor names, so characters are close enough to bytes
+        bytesWritten.add(json.length());
+        writeLatency.recordSince(start);
+    }
+
+    private void storeSensorJson(String json) {
+        int previousChunks = prefs.getInt(SENSOR_CHUNKS, 0);
+        int chunks = 0;
+        if (json.length() <= Preferences.MAX_VALUE_LENGTH) {
+            prefs.put(SENSORS, json);
+            prefs.remove(SENSOR_CHUNKS);
+        } else {
+            int start = 0;
+            while (start < json.length()) {
+                int end = Math.min(json.length(), start + Preferences.MAX_VALUE_LENGTH);
+                //never split a surrogate pair between two chunks
+                if (end < json.length() && Character.isHighSurrogate(json.charAt(end - 1))) {
+                    end--;
+                }
+                prefs.put(SENSORS + chunks++, json.substring(start, end));
+                start = end;
+            }
+            prefs.putInt(SENSOR_CHUNKS, chunks);
+            prefs.remove(SENSORS);
+        }
+        for (int i = chunks; i < previousChunks; i++) {
+            prefs.remove(SENSORS + i);
+        }
+    }
 }
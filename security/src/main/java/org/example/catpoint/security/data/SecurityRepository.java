@@ -1,19 +1,78 @@
 package org.example.catpoint.security.data;
 
+import java.util.Collection;
 import java.util.Set;
+import java.util.UUID;
 
 /**
- * Interface showing the methods our security repository will need to support
+ * Interface showing the methods our security repository will need to support. Implementations
+ * must be safe to call from multiple threads.
  */
 public interface SecurityRepository {
     void addSensor(Sensor sensor);
     void removeSensor(Sensor sensor);
     void updateSensor(Sensor sensor);
+
+    /**
+     * Persists the current state of several sensors, adding any that are not stored yet.
+     * Implementations should override this to write the whole batch at once.
+     * @param sensors The sensors to store
+     */
+    default void updateSensors(Collection<Sensor> sensors) {
+        sensors.forEach(this::updateSensor);
+    }
+
     void setAlarmStatus(AlarmStatus alarmStatus);
     void setArmingStatus(ArmingStatus armingStatus);
+    /**
+     * @return The stored sensors in display order. The returned set is read-only and is not
+     * affected by later changes, so it can be iterated while other threads update sensors.
+     */
     Set<Sensor> getSensors();
-    AlarmStatus getAlarmStatus();
-    ArmingStatus getArmingStatus();
 
+    /**
+     * @return The number of stored sensors. Implementations should override this to answer
+     * without copying the sensors.
+     */
+    default int getSensorCount() {
+        return getSensors().size();
+    }
+
+    /**
+     * Looks up a single sensor by its id.
+     * @param sensorId The id of the sensor
+     * @return The stored sensor, or null if there is none with this id
+     */
+    Sensor getSensor(UUID sensorId);
+
+    /**
+     * Looks up a single sensor by the two halves of its id, for callers that decode ids without
+     * creating UUID objects. Implementations should override this to avoid creating one themselves.
+     * @return The stored sensor, or null if there is none with this id
+     */
+    default Sensor getSensor(long mostSigBits, long leastSigBits) {
+        return getSensor(new UUID(mostSigBits, leastSigBits));
+    }
 
+    /**
+     * @return The stored sensors that are currently active, in no particular order. The returned
+     * collection is a copy. Implementations should override this to avoid copying every sensor.
+     */
+    default Collection<Sensor> getActiveSensors() {
+        return getSensors().stream().filter(Sensor::getActive).toList();
+    }
+
+    /**
+     * @return The number of stored sensors that are currently active
+     */
+    int getActiveSensorCount();
+
+    /**
+     * @param sensorType The type of sensor to count
+     * @return The number of stored sensors of the given type that are currently active
+     */
+    int getActiveSensorCount(SensorType sensorType);
+
+    AlarmStatus getAlarmStatus();
+    ArmingStatus getArmingStatus();
 }
@@ -24,6 +24,17 @@ public class Sensor implements Comparable<Sensor> {
         this.active = Boolean.FALSE;
     }
 
+    /**
+     * Creates a sensor that already has an id, such as one read back from storage, without
+     * generating a random id first.
+     */
+    public Sensor(UUID sensorId, String name, SensorType sensorType, boolean active) {
+        this.sensorId = sensorId;
+        this.name = name;
+        this.sensorType = sensorType;
+        this.active = active;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -0,0 +1,415 @@
+package org.example.catpoint.security.data;
+
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+
+/**
+ * Primary-key index of sensors used by the repository implementations. Sensors are stored in
+ * an open-addressing hash table keyed by the two longs of their UUID, which is the source of
+ * truth for lookups, inserts and removals. A display-ordered view is maintained separately
+ * from a copy of each sensor's sort key, so renaming a stored sensor cannot corrupt it.
+ *
+ * The index also remembers which sensors it last saw as active and keeps a running count of
+ * them per sensor type, so asking whether any sensor is active never scans the sensors.
+ *
+ * Snapshots are built on the first request after the stored sensors or their order change, and
+ * shared until the next change, so repeated reads of an unchanged index copy nothing.
+ *
+ * Sensors loaded from a {@link SensorSnapshot} are indexed by the ids read from its records, and
+ * each Sensor is only created when it is first looked up. The display order is built the first
+ * time it is needed, which creates the remaining sensors.
+ *
+ * Not thread-safe; callers synchronize access.
+ */
+final class SensorIndex {
+
+    private static final int INITIAL_CAPACITY = 16;
+    private static final byte INACTIVE = -1;
+    //stands in for a sensor that is still only in the snapshot it was loaded from
+    private static final Sensor UNLOADED = new Sensor();
+
+    private long[] mostSigBits;
+    private long[] leastSigBits;
+    private Sensor[] sensors;
+    private SortKey[] sortKeys;
+    private byte[] activeTypes; //ordinal of the type the sensor is counted as active under, or INACTIVE
+    private int size;
+
+    //where each unloaded sensor is in the source snapshot; both null once every sensor is loaded
+    private SensorSnapshot source;
+    private int[] sourcePositions;
+    //false while sortKeys and sorted have not been built for loaded sensors
+    private boolean ordered = true;
+
+    private final int[] activeCountByType = new int[SensorType.values().length];
+    private int activeCount;
+
+    private final TreeMap<SortKey, Sensor> sorted = new TreeMap<>();
+    private final SortedView sortedView = new SortedView();
+    private Set<Sensor> snapshot; //null once the sensors or their order change
+
+    SensorIndex() {
+        allocate(INITIAL_CAPACITY);
+    }
+
+    int size() {
+        return size;
+    }
+
+    int activeCount() {
+        return activeCount;
+    }
+
+    int activeCount(SensorType sensorType) {
+        return activeCountByType[sensorType.ordinal()];
+    }
+
+    Sensor get(UUID sensorId) {
+        return get(sensorId.getMostSignificantBits(), sensorId.getLeastSignificantBits());
+    }
+
+    Sensor get(long msb, long lsb) {
+        int slot = find(msb, lsb);
+        return slot < 0 ? null : sensorAt(slot);
+    }
+
+    /**
+     * Adds the sensors stored in a snapshot without creating them. Only valid while the index
+     * is empty.
+     */
+    void load(SensorSnapshot snapshot) {
+        if (size != 0) {
+            throw new IllegalStateException("Sensors can only be loaded into an empty index");
+        }
+        source = snapshot;
+        int capacity = INITIAL_CAPACITY;
+        while (capacity < snapshot.size() * 2) {
+            capacity *= 2;
+        }
+        allocate(capacity);
+        for (int i = 0; i < snapshot.size(); i++) {
+            long msb = snapshot.getMostSigBits(i);
+            long lsb = snapshot.getLeastSigBits(i);
+            int slot = find(msb, lsb);
+            if (slot >= 0) {
+                continue;
+            }
+            slot = ~slot;
+            mostSigBits[slot] = msb;
+            leastSigBits[slot] = lsb;
+            sensors[slot] = UNLOADED;
+            sourcePositions[slot] = i;
+            activeTypes[slot] = countActive(INACTIVE,
+                    snapshot.isActive(i) ? (byte) snapshot.getSensorType(i).ordinal() : INACTIVE);
+            size++;
+        }
+        if (size == 0) {
+            source = null;
+            sourcePositions = null;
+        } else {
+            ordered = false;
+        }
+        this.snapshot = null;
+    }
+
+    /**
+     * Inserts the sensor, or replaces the stored sensor with the same id. The display order
+     * is only touched if the sensor is new or its name or type changed.
+     */
+    void put(Sensor sensor) {
+        long msb = sensor.getSensorId().getMostSignificantBits();
+        long lsb = sensor.getSensorId().getLeastSignificantBits();
+        int slot = find(msb, lsb);
+        if (slot >= 0 && !ordered) {
+            sensors[slot] = sensor;
+            activeTypes[slot] = countActive(activeTypes[slot], sensor);
+            return;
+        }
+        if (slot >= 0) {
+            SortKey key = sortKeys[slot];
+            if (!key.matches(sensor)) {
+                sorted.remove(key);
+                key = new SortKey(sensor);
+                sortKeys[slot] = key;
+                snapshot = null;
+            } else if (sensors[slot] != sensor) {
+                snapshot = null;
+            }
+            sensors[slot] = sensor;
+            sorted.put(key, sensor);
+            activeTypes[slot] = countActive(activeTypes[slot], sensor);
+            return;
+        }
+        if ((size + 1) * 2 > sensors.length) {
+            resize();
+        }
+        slot = ~find(msb, lsb);
+        mostSigBits[slot] = msb;
+        leastSigBits[slot] = lsb;
+        sensors[slot] = sensor;
+        activeTypes[slot] = countActive(INACTIVE, sensor);
+        if (ordered) {
+            SortKey key = new SortKey(sensor);
+            sortKeys[slot] = key;
+            sorted.put(key, sensor);
+        }
+        size++;
+        snapshot = null;
+    }
+
+    Sensor remove(UUID sensorId) {
+        int slot = find(sensorId.getMostSignificantBits(), sensorId.getLeastSignificantBits());
+        if (slot < 0) {
+            return null;
+        }
+        Sensor removed = sensorAt(slot);
+        if (ordered) {
+            sorted.remove(sortKeys[slot]);
+        }
+        countActive(activeTypes[slot], null);
+        size--;
+        snapshot = null;
+        deleteSlot(slot);
+        return removed;
+    }
+
+    /**
+     * @return A read-only live view of the sensors in display order
+     */
+    Set<Sensor> sortedView() {
+        return sortedView;
+    }
+
+    /**
+     * Moves a sensor's contribution to the active counts from its previously counted type
+     * to its current state.
+     * @param previous The type the sensor was counted under, or INACTIVE
+     * @param sensor The sensor's current state, or null if it is being removed
+     * @return The type the sensor is now counted under, or INACTIVE
+     */
+    private byte countActive(byte previous, Sensor sensor) {
+        return countActive(previous, sensor != null && Boolean.TRUE.equals(sensor.getActive())
+                ? (byte) sensor.getSensorType().ordinal() : INACTIVE);
+    }
+
+    /**
+     * @param previous The type the sensor was counted under, or INACTIVE
+     * @param current The type the sensor is to be counted under, or INACTIVE
+     * @return current
+     */
+    private byte countActive(byte previous, byte current) {
+        if (previous != current) {
+            if (previous != INACTIVE) {
+                activeCountByType[previous]--;
+                activeCount--;
+            }
+            if (current != INACTIVE) {
+                activeCountByType[current]++;
+                activeCount++;
+            }
+        }
+        return current;
+    }
+
+    /**
+     * @return A read-only copy of the sensors in display order, safe to iterate while the index changes
+     */
+    Set<Sensor> snapshot() {
+        ensureOrdered();
+        if (snapshot == null) {
+            snapshot = Collections.unmodifiableSet(new LinkedHashSet<>(sorted.values()));
+        }
+        return snapshot;
+    }
+
+    /**
+     * @return A copy of the sensors last stored as active, in no particular order. The table is
+     * walked only until every active sensor has been found, and no inactive sensor is copied.
+     */
+    List<Sensor> activeSensors() {
+        List<Sensor> active = new ArrayList<>(activeCount);
+        for (int slot = 0; slot < sensors.length && active.size() < activeCount; slot++) {
+            if (sensors[slot] != null && activeTypes[slot] != INACTIVE) {
+                active.add(sensorAt(slot));
+            }
+        }
+        return active;
+    }
+
+    /**
+     * @return The sensor in an occupied slot, created from the source snapshot if not yet loaded
+     */
+    private Sensor sensorAt(int slot) {
+        Sensor sensor = sensors[slot];
+        if (sensor == UNLOADED) {
+            sensor = source.get(sourcePositions[slot]);
+            sensors[slot] = sensor;
+        }
+        return sensor;
+    }
+
+    /**
+     * Builds the display order of loaded sensors, creating any that have not been looked up.
+     */
+    private void ensureOrdered() {
+        if (ordered) {
+            return;
+        }
+        for (int slot = 0; slot < sensors.length; slot++) {
+            if (sensors[slot] != null) {
+                Sensor sensor = sensorAt(slot);
+                SortKey key = new SortKey(sensor);
+                sortKeys[slot] = key;
+                sorted.put(key, sensor);
+            }
+        }
+        ordered = true;
+        source = null;
+        sourcePositions = null;
+    }
+
+    /**
+     * @return The slot holding the key, or the bitwise complement of the empty slot where it belongs
+     */
+    private int find(long msb, long lsb) {
+        int mask = sensors.length - 1;
+        int slot = hash(msb, lsb) & mask;
+        while (sensors[slot] != null) {
+            if (mostSigBits[slot] == msb && leastSigBits[slot] == lsb) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return ~slot;
+    }
+
+    /**
+     * Empties a slot and shifts later entries of the same probe run back, so that lookups
+     * never stop early at the hole.
+     */
+    private void deleteSlot(int slot) {
+        int mask = sensors.length - 1;
+        int hole = slot;
+        int next = (hole + 1) & mask;
+        while (sensors[next] != null) {
+            int home = hash(mostSigBits[next], leastSigBits[next]) & mask;
+            //move the entry if its home position is not between the hole and its current slot
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                mostSigBits[hole] = mostSigBits[next];
+                leastSigBits[hole] = leastSigBits[next];
+                sensors[hole] = sensors[next];
+                sortKeys[hole] = sortKeys[next];
+                activeTypes[hole] = activeTypes[next];
+                if (sourcePositions != null) {
+                    sourcePositions[hole] = sourcePositions[next];
+                }
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        sensors[hole] = null;
+        sortKeys[hole] = null;
+    }
+
+    private void resize() {
+        long[] oldMost = mostSigBits;
+        long[] oldLeast = leastSigBits;
+        Sensor[] oldSensors = sensors;
+        SortKey[] oldKeys = sortKeys;
+        byte[] oldActiveTypes = activeTypes;
+        int[] oldPositions = sourcePositions;
+        allocate(oldSensors.length * 2);
+        for (int i = 0; i < oldSensors.length; i++) {
+            if (oldSensors[i] != null) {
+                int slot = ~find(oldMost[i], oldLeast[i]);
+                mostSigBits[slot] = oldMost[i];
+                leastSigBits[slot] = oldLeast[i];
+                sensors[slot] = oldSensors[i];
+                sortKeys[slot] = oldKeys[i];
+                activeTypes[slot] = oldActiveTypes[i];
+                if (oldPositions != null) {
+                    sourcePositions[slot] = oldPositions[i];
+                }
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        mostSigBits = new long[capacity];
+        leastSigBits = new long[capacity];
+        sensors = new Sensor[capacity];
+        sortKeys = new SortKey[capacity];
+        activeTypes = new byte[capacity];
+        sourcePositions = source == null ? null : new int[capacity];
+    }
+
+    private static int hash(long msb, long lsb) {
+        long h = msb * 0x9E3779B97F4A7C15L ^ lsb;
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        return (int) h;
+    }
+
+    /**
+     * Copy of the fields that determine a sensor's display order, in the same order as
+     * {@link Sensor#compareTo(Sensor)}.
+     */
+    private static final class SortKey implements Comparable<SortKey> {
+        private final String name;
+        private final String sensorType;
+        private final UUID sensorId;
+
+        SortKey(Sensor sensor) {
+            this.name = sensor.getName();
+            this.sensorType = sensor.getSensorType().toString();
+            this.sensorId = sensor.getSensorId();
+        }
+
+        boolean matches(Sensor sensor) {
+            return name.equals(sensor.getName()) && sensorType.equals(sensor.getSensorType().toString());
+        }
+
+        @Override
+        public int compareTo(SortKey o) {
+            int result = name.compareTo(o.name);
+            if (result == 0) {
+                result = sensorType.compareTo(o.sensorType);
+            }
+            return result != 0 ? result : sensorId.compareTo(o.sensorId);
+        }
+    }
+
+    /**
+     * Display-ordered view handed out by repositories. Kept as a named class because Gson
+     * refuses to serialize anonymous classes.
+     */
+    private final class SortedView extends AbstractSet<Sensor> {
+        @Override
+        public Iterator<Sensor> iterator() {
+            ensureOrdered();
+            return Collections.unmodifiableCollection(sorted.values()).iterator();
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            if (!(o instanceof Sensor)) {
+                return false;
+            }
+            Sensor sensor = (Sensor) o;
+            return sensor.getSensorId() != null && get(sensor.getSensorId()) != null;
+        }
+    }
+}
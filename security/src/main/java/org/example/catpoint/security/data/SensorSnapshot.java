@@ -0,0 +1,233 @@
+package org.example.catpoint.security.data;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Compact binary snapshot of the system state, read through a memory-mapped buffer so that
+ * opening it costs almost nothing regardless of how many sensors it holds.
+ *
+ * Layout (big-endian):
+ * <pre>
+ *   header   magic, version, alarm status, arming status, sensor count, name count, name table offset
+ *   records  one fixed-width {@value #RECORD_SIZE} byte record per sensor:
+ *            UUID as two longs, name index, packed flags (sensor type ordinal &lt;&lt; 1 | active)
+ *   names    one int offset per distinct name followed by length-prefixed UTF-8 names
+ * </pre>
+ * Names are interned, so sensors sharing a name share a single table entry and a single
+ * String once loaded. Sensor objects are only created when they are first requested.
+ */
+public final class SensorSnapshot {
+
+    private static final int MAGIC = 0x43415453; //"CATS"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 32;
+    static final int RECORD_SIZE = 24;
+
+    private final ByteBuffer buffer;
+    private final AlarmStatus alarmStatus;
+    private final ArmingStatus armingStatus;
+    private final int sensorCount;
+    private final int nameCount;
+    private final int nameTableOffset;
+    private final String[] names;
+    private final Sensor[] sensors;
+
+    private SensorSnapshot(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a sensor snapshot");
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IOException("Unsupported sensor snapshot version " + buffer.getInt(4));
+        }
+        alarmStatus = AlarmStatus.values()[buffer.get(8)];
+        armingStatus = ArmingStatus.values()[buffer.get(9)];
+        sensorCount = buffer.getInt(12);
+        nameCount = buffer.getInt(16);
+        nameTableOffset = buffer.getInt(20);
+        if (sensorCount < 0 || nameCount < 0
+                || nameTableOffset != HEADER_SIZE + (long) sensorCount * RECORD_SIZE
+                || nameTableOffset + (long) nameCount * Integer.BYTES > buffer.limit()) {
+            throw new IOException("Corrupt sensor snapshot header");
+        }
+        names = new String[nameCount];
+        sensors = new Sensor[sensorCount];
+    }
+
+    /**
+     * Maps an existing snapshot file into memory. No sensors are decoded until requested.
+     * @param file The snapshot file to open
+     */
+    public static SensorSnapshot open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new SensorSnapshot(buffer);
+        }
+    }
+
+    /**
+     * Writes a snapshot of the given state. The file is written beside the target and then
+     * atomically moved into place, so readers never observe a partially written snapshot.
+     */
+    public static void write(Path file, Collection<Sensor> sensors, AlarmStatus alarmStatus,
+                             ArmingStatus armingStatus) throws IOException {
+        Map<String, Integer> nameIndexes = new HashMap<>();
+        List<byte[]> names = new ArrayList<>();
+        for (Sensor sensor : sensors) {
+            nameIndexes.computeIfAbsent(sensor.getName(), name -> {
+                names.add(name.getBytes(StandardCharsets.UTF_8));
+                return names.size() - 1;
+            });
+        }
+
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            int nameTableOffset = HEADER_SIZE + sensors.size() * RECORD_SIZE;
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeByte(alarmStatus.ordinal());
+            out.writeByte(armingStatus.ordinal());
+            out.writeShort(0);
+            out.writeInt(sensors.size());
+            out.writeInt(names.size());
+            out.writeInt(nameTableOffset);
+            out.write(new byte[HEADER_SIZE - 24]);
+
+            for (Sensor sensor : sensors) {
+                out.writeLong(sensor.getSensorId().getMostSignificantBits());
+                out.writeLong(sensor.getSensorId().getLeastSignificantBits());
+                out.writeInt(nameIndexes.get(sensor.getName()));
+                out.writeByte(sensor.getSensorType().ordinal() << 1 | (sensor.getActive() ? 1 : 0));
+                out.write(new byte[3]);
+            }
+
+            int offset = nameTableOffset + names.size() * Integer.BYTES;
+            for (byte[] name : names) {
+                out.writeInt(offset);
+                offset += Integer.BYTES + name.length;
+            }
+            for (byte[] name : names) {
+                out.writeInt(name.length);
+                out.write(name);
+            }
+        }
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Migrates the state held by another repository, such as the preferences-backed
+     * {@link PretendDatabaseSecurityRepositoryImpl}, into a snapshot file.
+     */
+    public static void migrate(SecurityRepository source, Path file) throws IOException {
+        write(file, source.getSensors(), source.getAlarmStatus(), source.getArmingStatus());
+    }
+
+    public int size() {
+        return sensorCount;
+    }
+
+    public AlarmStatus getAlarmStatus() {
+        return alarmStatus;
+    }
+
+    public ArmingStatus getArmingStatus() {
+        return armingStatus;
+    }
+
+    /**
+     * Reads the id of a sensor directly from the mapped record, without creating a Sensor.
+     */
+    public UUID getSensorId(int index) {
+        int record = recordOffset(index);
+        return new UUID(buffer.getLong(record), buffer.getLong(record + 8));
+    }
+
+    /**
+     * Reads the two halves of a sensor's id directly from the mapped record, without creating a UUID.
+     */
+    public long getMostSigBits(int index) {
+        return buffer.getLong(recordOffset(index));
+    }
+
+    public long getLeastSigBits(int index) {
+        return buffer.getLong(recordOffset(index) + 8);
+    }
+
+    public SensorType getSensorType(int index) {
+        return SensorType.values()[(buffer.get(recordOffset(index) + 20) & 0xFF) >>> 1];
+    }
+
+    public boolean isActive(int index) {
+        return (buffer.get(recordOffset(index) + 20) & 1) != 0;
+    }
+
+    /**
+     * Returns the sensor stored at the given position, decoding it on first access.
+     */
+    public synchronized Sensor get(int index) {
+        int record = recordOffset(index);
+        Sensor sensor = sensors[index];
+        if (sensor == null) {
+            sensor = new Sensor(getSensorId(index), name(buffer.getInt(record + 16)), getSensorType(index),
+                    isActive(index));
+            sensors[index] = sensor;
+        }
+        return sensor;
+    }
+
+    /**
+     * @return A read-only list view that materializes each sensor as it is accessed
+     */
+    public List<Sensor> sensors() {
+        return new AbstractList<>() {
+            @Override
+            public Sensor get(int index) {
+                return SensorSnapshot.this.get(index);
+            }
+
+            @Override
+            public int size() {
+                return sensorCount;
+            }
+        };
+    }
+
+    private int recordOffset(int index) {
+        if (index < 0 || index >= sensorCount) {
+            throw new IndexOutOfBoundsException("Sensor index " + index + " of " + sensorCount);
+        }
+        return HEADER_SIZE + index * RECORD_SIZE;
+    }
+
+    private String name(int nameIndex) {
+        String name = names[nameIndex];
+        if (name == null) {
+            int offset = buffer.getInt(nameTableOffset + nameIndex * Integer.BYTES);
+            byte[] bytes = new byte[buffer.getInt(offset)];
+            buffer.slice(offset + Integer.BYTES, bytes.length).get(bytes);
+            name = new String(bytes, StandardCharsets.UTF_8);
+            names[nameIndex] = name;
+        }
+        return name;
+    }
+}
@@ -0,0 +1,112 @@
+package org.example.catpoint.security.metrics;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.ReflectionException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Read-only view of a MetricsRegistry for JMX. Every counter is an attribute of its own name.
+ * Every histogram gives the attributes [name].count, [name].meanNanos, [name].p50Nanos,
+ * [name].p90Nanos, [name].p99Nanos, [name].p999Nanos and [name].maxNanos. Attributes are listed
+ * afresh each time, so metrics created after registration appear too.
+ */
+final class MetricsMBean implements DynamicMBean {
+
+    private static final String[] PERCENTILE_SUFFIXES = {".p50Nanos", ".p90Nanos", ".p99Nanos", ".p999Nanos"};
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+
+    private final MetricsRegistry registry;
+
+    MetricsMBean(MetricsRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public Object getAttribute(String attribute) throws AttributeNotFoundException {
+        LongAdder counter = registry.findCounter(attribute);
+        if (counter != null) {
+            return counter.sum();
+        }
+        int dot = attribute.lastIndexOf('.');
+        LatencyHistogram histogram = dot < 0 ? null : registry.findHistogram(attribute.substring(0, dot));
+        if (histogram == null) {
+            throw new AttributeNotFoundException(attribute);
+        }
+        String suffix = attribute.substring(dot);
+        if (suffix.equals(".count")) {
+            return histogram.getCount();
+        }
+        if (suffix.equals(".meanNanos")) {
+            return histogram.getMeanNanos();
+        }
+        if (suffix.equals(".maxNanos")) {
+            return histogram.getMaxNanos();
+        }
+        for (int i = 0; i < PERCENTILE_SUFFIXES.length; i++) {
+            if (PERCENTILE_SUFFIXES[i].equals(suffix)) {
+                return histogram.getValueAtPercentile(PERCENTILES[i]);
+            }
+        }
+        throw new AttributeNotFoundException(attribute);
+    }
+
+    @Override
+    public AttributeList getAttributes(String[] attributes) {
+        AttributeList values = new AttributeList();
+        for (String attribute : attributes) {
+            try {
+                values.add(new Attribute(attribute, getAttribute(attribute)));
+            } catch (AttributeNotFoundException e) {
+                //left out, as the JMX contract asks
+            }
+        }
+        return values;
+    }
+
+    @Override
+    public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+        throw new AttributeNotFoundException("Metrics are read-only: " + attribute.getName());
+    }
+
+    @Override
+    public AttributeList setAttributes(AttributeList attributes) {
+        return new AttributeList();
+    }
+
+    @Override
+    public Object invoke(String actionName, Object[] params, String[] signature) throws ReflectionException {
+        throw new ReflectionException(new NoSuchMethodException(actionName), "Metrics have no operations");
+    }
+
+    @Override
+    public MBeanInfo getMBeanInfo() {
+        List<MBeanAttributeInfo> attributes = new ArrayList<>();
+        for (String counter : registry.getCounterValues().keySet()) {
+            attributes.add(attribute(counter, Long.class, "Count since start"));
+        }
+        for (Map.Entry<String, LatencyHistogram> histogram : registry.getHistograms().entrySet()) {
+            String name = histogram.getKey();
+            attributes.add(attribute(name + ".count", Long.class, "Number of recorded durations"));
+            attributes.add(attribute(name + ".meanNanos", Double.class, "Mean duration in nanoseconds"));
+            for (int i = 0; i < PERCENTILES.length; i++) {
+                attributes.add(attribute(name + PERCENTILE_SUFFIXES[i], Long.class,
+                        PERCENTILES[i] + "th percentile duration in nanoseconds"));
+            }
+            attributes.add(attribute(name + ".maxNanos", Long.class, "Longest duration in nanoseconds"));
+        }
+        return new MBeanInfo(MetricsRegistry.class.getName(), "Catpoint latency histograms and counters",
+                attributes.toArray(new MBeanAttributeInfo[0]), null, null, null);
+    }
+
+    private static MBeanAttributeInfo attribute(String name, Class<?> type, String description) {
+        return new MBeanAttributeInfo(name, type.getName(), description, true, false, false);
+    }
+}
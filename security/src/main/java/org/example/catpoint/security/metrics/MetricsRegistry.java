@@ -0,0 +1,104 @@
+package org.example.catpoint.security.metrics;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Named latency histograms and counters for the hot paths of the security system.
+ *
+ * Instrumented classes look their metrics up once, when they are created, and then only record
+ * into them, so recording costs no lookups. Counters are LongAdders, which stripe their count
+ * over several cells when threads contend. Names are dotted paths such as "processImage.total".
+ * Everything in a registry can be read over JMX once {@link #registerMBean(String)} was called.
+ */
+public class MetricsRegistry {
+
+    public static final String JMX_DOMAIN = "org.example.catpoint";
+
+    private static final MetricsRegistry DEFAULT = new MetricsRegistry();
+
+    private final ConcurrentMap<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, LongAdder> counters = new ConcurrentHashMap<>();
+
+    /**
+     * @return The registry the application's components record into unless given another one
+     */
+    public static MetricsRegistry getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * @return The histogram with the given name, created empty if there was none
+     */
+    public LatencyHistogram histogram(String name) {
+        return histograms.computeIfAbsent(name, n -> new LatencyHistogram());
+    }
+
+    /**
+     * @return The counter with the given name, created at zero if there was none
+     */
+    public LongAdder counter(String name) {
+        return counters.computeIfAbsent(name, n -> new LongAdder());
+    }
+
+    public SortedMap<String, LatencyHistogram> getHistograms() {
+        return new TreeMap<>(histograms);
+    }
+
+    /**
+     * @return The current value of every counter
+     */
+    public SortedMap<String, Long> getCounterValues() {
+        SortedMap<String, Long> values = new TreeMap<>();
+        for (Map.Entry<String, LongAdder> counter : counters.entrySet()) {
+            values.put(counter.getKey(), counter.getValue().sum());
+        }
+        return values;
+    }
+
+    /**
+     * Makes the metrics readable over JMX, as the MBean org.example.catpoint:type=Metrics,name=[name].
+     * Metrics created later show up as well.
+     * @throws IllegalStateException If an MBean of that name is already registered
+     */
+    public void registerMBean(String name) {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new MetricsMBean(this), objectName(name));
+        } catch (JMException e) {
+            throw new IllegalStateException("Unable to register metrics as " + name, e);
+        }
+    }
+
+    /**
+     * Removes the MBean registered under the given name, if there is one.
+     */
+    public void unregisterMBean(String name) {
+        try {
+            ObjectName objectName = objectName(name);
+            if (ManagementFactory.getPlatformMBeanServer().isRegistered(objectName)) {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+            }
+        } catch (JMException e) {
+            throw new IllegalStateException("Unable to unregister metrics " + name, e);
+        }
+    }
+
+    LatencyHistogram findHistogram(String name) {
+        return histograms.get(name);
+    }
+
+    LongAdder findCounter(String name) {
+        return counters.get(name);
+    }
+
+    static ObjectName objectName(String name) throws JMException {
+        return new ObjectName(JMX_DOMAIN + ":type=Metrics,name=" + ObjectName.quote(name));
+    }
+}
@@ -0,0 +1,92 @@
+package org.example.catpoint.security.service;
+
+import org.example.catpoint.image.service.DetectionResult;
+
+/**
+ * Turns the detection results of consecutive camera frames into a stable cat / no cat state.
+ *
+ * A cat is reported once a frame reaches the enter confidence, and only cleared once a frame
+ * drops below the lower exit confidence, so frames hovering around a single threshold cannot
+ * make the alarm flap. Results without a confidence are taken at face value.
+ *
+ * When several consecutive frames agree closely and sit clearly outside the band between the
+ * two thresholds, the state is considered stable and further frames need not be scanned until
+ * the maximum skip interval has passed since the last scan.
+ */
+class CatDetectionTracker {
+
+    private final float enterConfidence;
+    private final float exitConfidence;
+    private final int stableFrames;
+    private final float stableDelta;
+    private final long maxSkipNanos;
+
+    private boolean catDetected;
+    private float lastConfidence = Float.NaN;
+    private int stableCount;
+    private long lastScanNanos;
+
+    /**
+     * @param enterConfidence Confidence at which a cat starts being reported
+     * @param exitConfidence Confidence below which a cat stops being reported
+     * @param stableFrames Number of agreeing frames after which scans may be skipped
+     * @param stableDelta Largest change in confidence between frames that still counts as agreeing
+     * @param maxSkipNanos Longest time between scans while the state is stable
+     */
+    CatDetectionTracker(float enterConfidence, float exitConfidence, int stableFrames, float stableDelta,
+                        long maxSkipNanos) {
+        if (exitConfidence > enterConfidence) {
+            throw new IllegalArgumentException("exitConfidence must not exceed enterConfidence");
+        }
+        this.enterConfidence = enterConfidence;
+        this.exitConfidence = exitConfidence;
+        this.stableFrames = stableFrames;
+        this.stableDelta = stableDelta;
+        this.maxSkipNanos = maxSkipNanos;
+    }
+
+    /**
+     * Confidence to request from the image service, low enough that results inside the
+     * hysteresis band are still reported.
+     */
+    float getRequestConfidence() {
+        return exitConfidence;
+    }
+
+    /**
+     * Records the result of scanning a frame.
+     * @param now Time of the scan, from System.nanoTime()
+     * @return Whether a cat is now considered present
+     */
+    synchronized boolean update(DetectionResult result, long now) {
+        lastScanNanos = now;
+        if (!result.hasConfidence()) {
+            catDetected = result.containsCat();
+            lastConfidence = Float.NaN;
+            stableCount = 0;
+            return catDetected;
+        }
+
+        float confidence = result.getConfidence();
+        if (catDetected ? confidence < exitConfidence : confidence >= enterConfidence) {
+            catDetected = !catDetected;
+        }
+        boolean outsideBand = confidence >= enterConfidence || confidence < exitConfidence;
+        boolean agrees = !Float.isNaN(lastConfidence) && Math.abs(confidence - lastConfidence) <= stableDelta;
+        stableCount = outsideBand && agrees ? stableCount + 1 : 0;
+        lastConfidence = confidence;
+        return catDetected;
+    }
+
+    /**
+     * @param now Current time, from System.nanoTime()
+     * @return False if the state is stable and the last scan was recent enough to skip this frame
+     */
+    synchronized boolean shouldScan(long now) {
+        return stableCount < stableFrames || now - lastScanNanos >= maxSkipNanos;
+    }
+
+    synchronized boolean isCatDetected() {
+        return catDetected;
+    }
+}
@@ -0,0 +1,188 @@
+package org.example.catpoint.security.service;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.IndexColorModel;
+import java.awt.image.Raster;
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cheap pre-filter that tells whether a camera frame differs enough from the last frame that
+ * passed to be worth sending to the cat detector.
+ *
+ * Each frame is reduced to a small grid of average luminance values and compared cell by cell
+ * with the reference grid. The frame counts as changed when enough cells differ by more than
+ * the cell threshold; it then becomes the new reference. Frames that do not change are not
+ * adopted, so a slow drift in the scene still adds up to a change eventually.
+ *
+ * The first frame always counts as changed, as does a frame of a different size than the
+ * reference and an empty frame. Working arrays are kept between calls, so once frames have a
+ * steady size, checking them allocates nothing.
+ */
+public class FrameChangeDetector {
+
+    public static final int DEFAULT_GRID_WIDTH = 32;
+    public static final int DEFAULT_GRID_HEIGHT = 24;
+    public static final int DEFAULT_CELL_THRESHOLD = 12;
+    public static final float DEFAULT_CHANGED_FRACTION = 0.01f;
+
+    //rows averaged per grid cell; the remaining rows are skipped
+    private static final int SAMPLE_ROWS_PER_CELL = 4;
+
+    private final int gridWidth;
+    private final int gridHeight;
+    private final int cellThreshold;
+    private final int changedCellsNeeded;
+
+    private int[] reference;
+    private int[] current;
+    private final int[] sampleCounts;
+    private int[] samples = new int[0];
+    private int[] cellColumn = new int[0];
+    private int mappedWidth = -1;
+    private boolean hasReference;
+    private int referenceWidth;
+    private int referenceHeight;
+
+    private final LongAdder framesChecked = new LongAdder();
+    private final LongAdder framesSkipped = new LongAdder();
+
+    public FrameChangeDetector() {
+        this(DEFAULT_GRID_WIDTH, DEFAULT_GRID_HEIGHT, DEFAULT_CELL_THRESHOLD, DEFAULT_CHANGED_FRACTION);
+    }
+
+    /**
+     * @param gridWidth Number of grid columns frames are reduced to
+     * @param gridHeight Number of grid rows frames are reduced to
+     * @param cellThreshold Difference in average luminance, from 0 to 255, above which a cell has changed
+     * @param changedFraction Fraction of cells that must change for the frame to count as changed
+     */
+    public FrameChangeDetector(int gridWidth, int gridHeight, int cellThreshold, float changedFraction) {
+        if (gridWidth < 1 || gridHeight < 1 || cellThreshold < 0 || changedFraction < 0 || changedFraction > 1) {
+            throw new IllegalArgumentException("Grid must be positive and changedFraction between 0 and 1");
+        }
+        this.gridWidth = gridWidth;
+        this.gridHeight = gridHeight;
+        this.cellThreshold = cellThreshold;
+        this.changedCellsNeeded = Math.max(1, (int) Math.ceil(changedFraction * gridWidth * gridHeight));
+        this.reference = new int[gridWidth * gridHeight];
+        this.current = new int[gridWidth * gridHeight];
+        this.sampleCounts = new int[gridWidth * gridHeight];
+    }
+
+    /**
+     * @return True if the frame should be scanned, in which case it becomes the new reference
+     */
+    public synchronized boolean hasChanged(BufferedImage frame) {
+        framesChecked.increment();
+        int width = frame.getWidth();
+        int height = frame.getHeight();
+        if (width <= 0 || height <= 0) {
+            return true;
+        }
+
+        reduce(frame, width, height);
+        boolean changed = !hasReference || width != referenceWidth || height != referenceHeight
+                || changedCells() >= changedCellsNeeded;
+        if (changed) {
+            int[] previous = reference;
+            reference = current;
+            current = previous;
+            referenceWidth = width;
+            referenceHeight = height;
+            hasReference = true;
+        } else {
+            framesSkipped.increment();
+        }
+        return changed;
+    }
+
+    /**
+     * Forgets the reference frame, so the next frame is always scanned.
+     */
+    public synchronized void reset() {
+        hasReference = false;
+    }
+
+    public long getFramesChecked() {
+        return framesChecked.sum();
+    }
+
+    public long getFramesSkipped() {
+        return framesSkipped.sum();
+    }
+
+    /**
+     * @return Fraction of checked frames that were not worth scanning
+     */
+    public double getSkipRatio() {
+        long checked = framesChecked.sum();
+        return checked == 0 ? 0.0 : (double) framesSkipped.sum() / checked;
+    }
+
+    private int changedCells() {
+        int changed = 0;
+        for (int i = 0; i < current.length; i++) {
+            if (Math.abs(current[i] - reference[i]) > cellThreshold) {
+                changed++;
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Averages the luminance of a few rows per grid cell into {@link #current}.
+     */
+    private void reduce(BufferedImage frame, int width, int height) {
+        if (mappedWidth != width) {
+            if (cellColumn.length < width) {
+                cellColumn = new int[width];
+            }
+            for (int x = 0; x < width; x++) {
+                cellColumn[x] = (int) ((long) x * gridWidth / width);
+            }
+            mappedWidth = width;
+        }
+        Arrays.fill(current, 0);
+        Arrays.fill(sampleCounts, 0);
+
+        Raster raster = frame.getRaster();
+        int bands = raster.getNumBands();
+        //indexed images hold palette indices rather than colours, so they go through getRGB
+        boolean packed = !(frame.getColorModel() instanceof IndexColorModel);
+        int needed = packed ? width * bands : width;
+        if (samples.length < needed) {
+            samples = new int[needed];
+        }
+
+        int rowStep = Math.max(1, height / (gridHeight * SAMPLE_ROWS_PER_CELL));
+        for (int y = 0; y < height; y += rowStep) {
+            int cellRow = (int) ((long) y * gridHeight / height) * gridWidth;
+            if (packed) {
+                raster.getPixels(0, y, width, 1, samples);
+            } else {
+                frame.getRGB(0, y, width, 1, samples, 0, width);
+            }
+            for (int x = 0; x < width; x++) {
+                int luminance;
+                if (!packed) {
+                    int rgb = samples[x];
+                    luminance = (((rgb >> 16) & 0xFF) * 77 + ((rgb >> 8) & 0xFF) * 150 + (rgb & 0xFF) * 29) >> 8;
+                } else if (bands >= 3) {
+                    int offset = x * bands;
+                    luminance = (samples[offset] * 77 + samples[offset + 1] * 150 + samples[offset + 2] * 29) >> 8;
+                } else {
+                    luminance = samples[x * bands];
+                }
+                int cell = cellRow + cellColumn[x];
+                current[cell] += luminance;
+                sampleCounts[cell]++;
+            }
+        }
+        for (int i = 0; i < current.length; i++) {
+            if (sampleCounts[i] > 0) {
+                current[i] /= sampleCounts[i];
+            }
+        }
+    }
+}
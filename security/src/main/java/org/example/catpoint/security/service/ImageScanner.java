@@ -0,0 +1,164 @@
+package org.example.catpoint.security.service;
+
+import org.example.catpoint.image.service.DetectionResult;
+import org.example.catpoint.image.service.ImageService;
+import org.example.catpoint.image.service.MicroBatchDispatcher;
+import org.example.catpoint.security.metrics.LatencyHistogram;
+
+import java.awt.image.BufferedImage;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Runs image scans for the SecurityService on virtual threads so that slow image services never
+ * block the caller. Image services mostly wait on the network, and a blocked virtual thread costs
+ * little, so every scan gets its own thread rather than queueing for a small pool. Each scan runs
+ * in a {@link ScanScope} whose deadline is the timeout.
+ *
+ * Only the newest frame of each camera matters, so submitting a frame cancels the scan of any
+ * older frame from the same camera that is still running. If too many scans are already in flight
+ * the new frame is rejected rather than piling up behind the others, and a scan that exceeds the
+ * timeout completes with the last result that a scan of that camera actually produced.
+ *
+ * Given a {@link MicroBatchDispatcher}, each scan hands its frame to the dispatcher instead of
+ * calling the image service itself, so frames from many cameras are classified together. The
+ * dispatcher then applies its own confidence threshold, and a frame whose scan is superseded or
+ * times out is still classified with its batch.
+ */
+class ImageScanner {
+
+    private static final DetectionResult NO_RESULT = new DetectionResult(false, Float.NaN);
+    private static final ThreadFactory SCAN_THREADS = Thread.ofVirtual().name("image-scanner-", 1).factory();
+
+    private final ImageService imageService;
+    private final MicroBatchDispatcher batcher;
+    private final Duration timeout;
+    private final Semaphore inFlight;
+    private final LatencyHistogram serviceLatency;
+    private final ConcurrentMap<String, Scan> latestScans = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, DetectionResult> lastResults = new ConcurrentHashMap<>();
+
+    /**
+     * @param imageService The service that performs the actual detection
+     * @param maxInFlight Maximum number of scans running at once
+     * @param timeout How long a scan may take before falling back to the last known result
+     * @param serviceLatency Where the time the image service takes for each scan is recorded
+     */
+    ImageScanner(ImageService imageService, int maxInFlight, Duration timeout, LatencyHistogram serviceLatency) {
+        this(imageService, null, maxInFlight, timeout, serviceLatency);
+    }
+
+    /**
+     * @param imageService The service that performs the actual detection
+     * @param batcher Dispatcher that classifies frames in batches, or null to classify each frame on its own
+     * @param maxInFlight Maximum number of scans running at once
+     * @param timeout How long a scan may take before falling back to the last known result
+     * @param serviceLatency Where the time the image service takes for each scan is recorded, including
+     * any wait for the frame's batch
+     */
+    ImageScanner(ImageService imageService, MicroBatchDispatcher batcher, int maxInFlight, Duration timeout,
+                 LatencyHistogram serviceLatency) {
+        this.imageService = imageService;
+        this.batcher = batcher;
+        this.timeout = timeout;
+        this.inFlight = new Semaphore(maxInFlight);
+        this.serviceLatency = serviceLatency;
+    }
+
+    /**
+     * Starts a scan of the camera's image and supersedes any earlier scan of the camera that has not finished.
+     * @return A future completed with the scan result, with the last known result on timeout,
+     * or exceptionally if the scan was superseded, rejected or failed
+     */
+    CompletableFuture<DetectionResult> submit(String cameraId, BufferedImage image, float confidenceThreshhold) {
+        Scan scan = new Scan();
+        scan.thread = SCAN_THREADS.newThread(() -> scan(cameraId, scan, image, confidenceThreshhold));
+        cancel(latestScans.put(cameraId, scan));
+        if (!inFlight.tryAcquire()) {
+            latestScans.remove(cameraId, scan);
+            scan.result.completeExceptionally(new RejectedExecutionException("Too many image scans in flight"));
+            return scan.result.copy();
+        }
+        scan.thread.start();
+        //a copy, so callers cannot complete or cancel the scan themselves
+        return scan.result.copy();
+    }
+
+    /**
+     * Cancels the camera's unfinished scan and drops its last result.
+     */
+    void forget(String cameraId) {
+        cancel(latestScans.remove(cameraId));
+        lastResults.remove(cameraId);
+    }
+
+    private void scan(String cameraId, Scan scan, BufferedImage image, float confidenceThreshhold) {
+        DetectionResult result = null;
+        Throwable failure = null;
+        try (ScanScope scope = new ScanScope(timeout)) {
+            if (scan.result.isDone()) {
+                //superseded before it started
+                return;
+            }
+            Future<DetectionResult> detection = scope.fork(() -> {
+                long start = System.nanoTime();
+                DetectionResult detected = detect(image, confidenceThreshhold);
+                serviceLatency.recordSince(start);
+                return detected;
+            });
+            try {
+                scope.join();
+                result = detection.get();
+            } catch (TimeoutException e) {
+                //answered now, as closing the scope waits for the detection to stop
+                scan.result.complete(lastResults.getOrDefault(cameraId, NO_RESULT));
+            } catch (ExecutionException e) {
+                failure = e.getCause();
+            } catch (InterruptedException e) {
+                //superseded; closing the scope stops the detection
+                scan.result.cancel(false);
+            }
+        } finally {
+            latestScans.remove(cameraId, scan);
+            inFlight.release();
+        }
+        //answered once the permit is back, so the camera's next frame is never turned away
+        if (result != null) {
+            lastResults.put(cameraId, result);
+            scan.result.complete(result);
+        } else if (failure != null) {
+            scan.result.completeExceptionally(failure);
+        }
+    }
+
+    private DetectionResult detect(BufferedImage image, float confidenceThreshhold) throws Exception {
+        if (batcher == null) {
+            return imageService.classify(image, confidenceThreshhold);
+        }
+        try {
+            return batcher.submit(image).get();
+        } catch (ExecutionException e) {
+            //fail the scan with what the image service threw, as an unbatched scan would
+            throw e.getCause() instanceof Exception cause ? cause : e;
+        }
+    }
+
+    private static void cancel(Scan scan) {
+        if (scan != null && scan.result.cancel(false)) {
+            scan.thread.interrupt();
+        }
+    }
+
+    private static final class Scan {
+        private final CompletableFuture<DetectionResult> result = new CompletableFuture<>();
+        private Thread thread;
+    }
+}
@@ -0,0 +1,154 @@
+package org.example.catpoint.security.service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Structured scope for the work of one image scan. Subtasks forked in the scope run on virtual
+ * threads, join waits for them until the scope's deadline, and closing the scope cancels any
+ * subtask still running and waits for it to stop, so no work outlives the scan that started it.
+ *
+ * Behaves like StructuredTaskScope.ShutdownOnFailure with joinUntil, which is still a preview API
+ * in Java 21: the first subtask to fail cancels the others. Used by one owner thread; only fork
+ * and join may be called from the owner's subtasks as well.
+ */
+final class ScanScope implements AutoCloseable {
+
+    private static final ThreadFactory SUBTASK_THREADS = Thread.ofVirtual().name("image-scan-", 1).factory();
+
+    private final long deadlineNanos;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition finished = lock.newCondition();
+    private final List<FutureTask<?>> subtasks = new ArrayList<>();
+    private final List<Thread> threads = new ArrayList<>();
+    private int unfinished;
+    private Throwable failure;
+    private boolean shutdown;
+
+    /**
+     * @param timeout How long from now join waits for the subtasks
+     */
+    ScanScope(Duration timeout) {
+        this.deadlineNanos = System.nanoTime() + timeout.toNanos();
+    }
+
+    /**
+     * Starts a subtask on a new virtual thread. A subtask forked after the scope shut down is
+     * cancelled without running.
+     */
+    <T> Future<T> fork(Callable<T> task) {
+        FutureTask<T> subtask = new FutureTask<>(task) {
+            @Override
+            protected void done() {
+                finished(this);
+            }
+        };
+        Thread thread = SUBTASK_THREADS.newThread(subtask);
+        lock.lock();
+        try {
+            if (shutdown) {
+                subtask.cancel(false);
+                return subtask;
+            }
+            unfinished++;
+            subtasks.add(subtask);
+            threads.add(thread);
+        } finally {
+            lock.unlock();
+        }
+        thread.start();
+        return subtask;
+    }
+
+    /**
+     * Waits until every subtask has finished or one has failed.
+     * @throws TimeoutException If the deadline passed first; the subtasks are cancelled
+     * @throws ExecutionException If a subtask failed; the others are cancelled
+     */
+    void join() throws InterruptedException, TimeoutException, ExecutionException {
+        lock.lock();
+        try {
+            while (unfinished > 0 && failure == null) {
+                long remaining = deadlineNanos - System.nanoTime();
+                if (remaining <= 0) {
+                    shutdown();
+                    throw new TimeoutException("Scan did not finish in time");
+                }
+                finished.awaitNanos(remaining);
+            }
+            if (failure != null) {
+                throw new ExecutionException(failure);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Cancels the subtasks that are still running and waits for their threads to stop.
+     */
+    @Override
+    public void close() {
+        List<Thread> started;
+        lock.lock();
+        try {
+            shutdown();
+            started = List.copyOf(threads);
+        } finally {
+            lock.unlock();
+        }
+        boolean interrupted = false;
+        for (Thread thread : started) {
+            while (thread.isAlive()) {
+                try {
+                    thread.join();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Called with the lock held.
+     */
+    private void shutdown() {
+        shutdown = true;
+        for (FutureTask<?> subtask : subtasks) {
+            subtask.cancel(true);
+        }
+    }
+
+    private void finished(FutureTask<?> subtask) {
+        lock.lock();
+        try {
+            unfinished--;
+            if (failure == null && !subtask.isCancelled()) {
+                try {
+                    subtask.get();
+                } catch (ExecutionException e) {
+                    failure = e.getCause();
+                    shutdown();
+                } catch (InterruptedException e) {
+                    //cannot happen, the subtask is done
+                    Thread.currentThread().interrupt();
+                }
+            }
+            finished.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -1,20 +1,35 @@
 package org.example.catpoint.security.service;
 
 
+import com.google.common.util.concurrent.Striped;
+import org.example.catpoint.image.service.DetectionResult;
+import org.example.catpoint.image.service.ImageInput;
 import org.example.catpoint.image.service.ImageService;
+import org.example.catpoint.image.service.MicroBatchDispatcher;
 import org.example.catpoint.security.application.StatusListener;
 import org.example.catpoint.security.data.AlarmStatus;
 import org.example.catpoint.security.data.ArmingStatus;
 import org.example.catpoint.security.data.SecurityRepository;
 import org.example.catpoint.security.data.Sensor;
+import org.example.catpoint.security.metrics.LatencyHistogram;
+import org.example.catpoint.security.metrics.MetricsRegistry;
 
+import java.awt.EventQueue;
 import java.awt.image.BufferedImage;
-import java.util.HashSet;
-import java.util.Iterator;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Set;
-import java.util.concurrent.ConcurrentSkipListSet;
-import java.util.stream.Collectors;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Consumer;
 
 /**
  * Service that receives information about changes to the security system. Responsible for
@@ -22,22 +37,81 @@ import java.util.stream.Collectors;
  *
  * This is the class that should contain most of the business logic for our system, and it is the
  * class you will be writing unit tests for.
+ *
+ * The service may be called from many threads at once. Every read-modify-write of the alarm
+ * status happens under a single lock, so transitions such as PENDING_ALARM to ALARM are
+ * applied one at a time and listeners observe them in order. Activation changes lock only the
+ * affected sensor, so events for different sensors are processed in parallel.
+ *
+ * Images are processed per camera. Each camera keeps its own cat detection state, and a cat is
+ * considered present while any camera detects one. Asynchronous scans run on virtual threads, so
+ * many cameras are scanned in parallel, with a limit on the number of scans in flight. Those scans
+ * may also be collected into micro-batches, so the image service classifies frames from many
+ * cameras together. The methods without a camera id use a single default camera.
+ *
+ * Latencies and counts of the hot paths are recorded in a {@link MetricsRegistry}; see
+ * {@link ServiceMetrics} for what is recorded.
  */
 public class SecurityService {
 
-    private ImageService imageService;
-    private SecurityRepository securityRepository;
-    private Set<StatusListener> statusListeners = new HashSet<>();
-    private boolean isContainsCat = false;
+    private static final int SENSOR_LOCK_STRIPES = 64;
+    private static final float CAT_ENTER_CONFIDENCE = 50.0f;
+    private static final float CAT_EXIT_CONFIDENCE = 35.0f;
+    private static final int CAT_STABLE_FRAMES = 3;
+    private static final float CAT_STABLE_DELTA = 5.0f;
+    private static final Duration CAT_MAX_SKIP = Duration.ofSeconds(2);
+    //at most one scan per camera runs at a time, and each one waits on a cheap virtual thread
+    private static final int MAX_IMAGE_SCANS_IN_FLIGHT = 10_000;
+    private static final String DEFAULT_CAMERA = "default";
+    private static final Duration IMAGE_SCAN_TIMEOUT = Duration.ofSeconds(5);
+    private static final int MAX_IMAGE_BATCH_SIZE = 32;
 
+    private final ImageService imageService;
+    private final SecurityRepository securityRepository;
+    private final Set<StatusListener> statusListeners = new CopyOnWriteArraySet<>();
+    private final ConcurrentMap<String, Camera> cameras = new ConcurrentHashMap<>();
+    //changed only under the alarm lock
+    private volatile int camerasDetectingCat;
+
+    private final Object alarmLock = new Object();
+    private final Striped<Lock> sensorLocks = Striped.lock(SENSOR_LOCK_STRIPES);
+    //time of the newest gateway report applied per sensor, changed under the sensor's lock
+    private final ConcurrentMap<UUID, AtomicLong> lastReportedAt = new ConcurrentHashMap<>();
+    private final ImageScanner imageScanner;
+    private final ServiceMetrics metrics;
 
     public SecurityService(SecurityRepository securityRepository, ImageService imageService) {
+        this(securityRepository, imageService, MetricsRegistry.getDefault(), null);
+    }
+
+    /**
+     * Creates a service whose background scans, such as those of camera feeds, are classified in
+     * micro-batches: a frame waits up to the batch window for frames from other cameras, and the
+     * image service classifies them all at once.
+     * @param imageBatchWindow Longest time a frame waits for its batch
+     */
+    public SecurityService(SecurityRepository securityRepository, ImageService imageService, Duration imageBatchWindow) {
+        this(securityRepository, imageService, MetricsRegistry.getDefault(), imageBatchWindow);
+    }
+
+    SecurityService(SecurityRepository securityRepository, ImageService imageService, MetricsRegistry metricsRegistry) {
+        this(securityRepository, imageService, metricsRegistry, null);
+    }
+
+    private SecurityService(SecurityRepository securityRepository, ImageService imageService,
+                            MetricsRegistry metricsRegistry, Duration imageBatchWindow) {
         this.securityRepository = securityRepository;
         this.imageService = imageService;
+        this.metrics = new ServiceMetrics(metricsRegistry);
+        //the trackers always ask for the exit confidence, so one threshold serves every batch
+        MicroBatchDispatcher batcher = imageBatchWindow == null ? null
+                : new MicroBatchDispatcher(imageService, CAT_EXIT_CONFIDENCE, imageBatchWindow, MAX_IMAGE_BATCH_SIZE);
+        this.imageScanner = new ImageScanner(imageService, batcher, MAX_IMAGE_SCANS_IN_FLIGHT, IMAGE_SCAN_TIMEOUT,
+                metrics.imageService);
     }
 
-    Set<Sensor> getActiveSensors(){
-        return getSensors().stream().filter(Sensor::getActive).collect(Collectors.toSet());
+    Collection<Sensor> getActiveSensors(){
+        return securityRepository.getActiveSensors();
     }
 
     /**
@@ -46,16 +120,20 @@ public class SecurityService {
      * @param armingStatus
      */
     public void setArmingStatus(ArmingStatus armingStatus) {
+        ArmingStatus previous = securityRepository.getArmingStatus();
         if(armingStatus == ArmingStatus.DISARMED) {
             setAlarmStatus(AlarmStatus.NO_ALARM);
         } else if (isSystemArmedAwayOrArmedHome(armingStatus)){
-            if (isContainsCat){
-                setAlarmStatus(AlarmStatus.ALARM);
+            //checked under the lock, so a camera that stops seeing the cat meanwhile is not missed
+            synchronized (alarmLock) {
+                if (camerasDetectingCat > 0) {
+                    setAlarmStatus(AlarmStatus.ALARM);
+                }
             }
-            setActivationFalseForSensors(this.getActiveSensors());
+            deactivateSensors(this.getActiveSensors());
         }
         securityRepository.setArmingStatus(armingStatus);
-        statusListeners.forEach(StatusListener::sensorStatusChanged);
+        notifyListeners(metrics.armingListeners, sl -> sl.armingStatusChanged(previous, armingStatus));
     }
 
     /**
@@ -75,8 +153,12 @@ public class SecurityService {
      * @param status
      */
     public void setAlarmStatus(AlarmStatus status) {
-        securityRepository.setAlarmStatus(status);
-        statusListeners.forEach(sl -> sl.notify(status));
+        synchronized (alarmLock) {
+            AlarmStatus previous = securityRepository.getAlarmStatus();
+            securityRepository.setAlarmStatus(status);
+            metrics.alarmStatusChanged(previous, status);
+            notifyListeners(metrics.alarmListeners, sl -> sl.alarmStatusChanged(previous, status));
+        }
     }
 
     /**
@@ -85,32 +167,269 @@ public class SecurityService {
      * @param active
      */
     public void changeSensorActivationStatus(Sensor sensor, Boolean active) {
-        boolean wasActive = sensor.getActive();
-        Boolean activate = !wasActive && active;
-        Boolean deactivate = wasActive && !active;
+        Lock lock = sensorLocks.get(sensor.getSensorId());
+        lock.lock();
+        try {
+            boolean wasActive = sensor.getActive();
+            boolean activate = !wasActive && active;
+            boolean deactivate = wasActive && !active;
+
+            //store the new state first so the repository's active sensor count includes it
+            sensor.setActive(active);
+            securityRepository.updateSensor(sensor);
 
-        if (activate || deactivate){
             if (activate){
+                metrics.sensorsActivated.increment();
+                notifyListeners(metrics.sensorListeners, sl -> sl.sensorActivated(sensor));
                 handleSensorActivated();
-                System.out.println("Sensor activated " + sensor.getSensorId());
-            } else {
-                handleSensorDeactivated(sensor);
-                System.out.println("Sensor deactivated " + sensor.getSensorId());
+            } else if (deactivate){
+                metrics.sensorsDeactivated.increment();
+                notifyListeners(metrics.sensorListeners, sl -> sl.sensorDeactivated(sensor));
+                handleSensorDeactivated();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Applies sensor states reported in bulk, such as by hardware gateways. The result is the same
+     * as calling changeSensorActivationStatus for each record in order, except that:
+     * <ul>
+     *     <li>the repository is written once for the whole batch</li>
+     *     <li>the alarm status is set once, to where the records lead, and listeners hear one
+     *     alarm change rather than each step</li>
+     *     <li>a record older than the newest one already applied for its sensor is skipped, since
+     *     gateways spread over several threads or reconnecting may deliver reports out of order</li>
+     * </ul>
+     * Records for unknown sensors and records that leave a sensor unchanged are skipped. Once a
+     * sensor has been reported, the service itself creates no objects per record, though listeners
+     * told about a change may.
+     * @param batch The states to apply; its scratch space is used while applying it
+     * @return The number of records that changed a sensor
+     */
+    public int applySensorStates(SensorStateBatch batch) {
+        List<Sensor> changed = batch.changedSensors;
+        changed.clear();
+        int netActivations = 0;
+        for (int i = 0; i < batch.size(); i++) {
+            Sensor sensor = securityRepository.getSensor(batch.getMostSigBits(i), batch.getLeastSigBits(i));
+            if (sensor == null) {
+                continue;
+            }
+            boolean active = batch.isActive(i);
+            long timestamp = batch.getTimestamp(i);
+            AtomicLong reportedAt = lastReportedAt.get(sensor.getSensorId());
+            if (reportedAt == null) {
+                reportedAt = lastReportedAt.computeIfAbsent(sensor.getSensorId(), id -> new AtomicLong(Long.MIN_VALUE));
             }
+            Lock lock = sensorLocks.get(sensor.getSensorId());
+            lock.lock();
+            try {
+                if (timestamp < reportedAt.get()) {
+                    metrics.staleSensorReports.increment();
+                    continue;
+                }
+                reportedAt.set(timestamp);
+                if (sensor.getActive() == active) {
+                    continue;
+                }
+                sensor.setActive(active);
+            } finally {
+                lock.unlock();
+            }
+            batch.changedActive[changed.size()] = active;
+            changed.add(sensor);
+            netActivations += active ? 1 : -1;
+        }
+        if (changed.isEmpty()) {
+            return 0;
         }
-        sensor.setActive(active);
 
-        securityRepository.updateSensor(sensor);
+        securityRepository.updateSensors(changed);
+        int activations = (changed.size() + netActivations) / 2;
+        metrics.sensorsActivated.add(activations);
+        metrics.sensorsDeactivated.add(changed.size() - activations);
+        long start = System.nanoTime();
+        for (StatusListener listener : statusListeners) {
+            for (int i = 0; i < changed.size(); i++) {
+                if (batch.changedActive[i]) {
+                    listener.sensorActivated(changed.get(i));
+                } else {
+                    listener.sensorDeactivated(changed.get(i));
+                }
+            }
+        }
+        metrics.sensorListeners.recordSince(start);
+        handleSensorChanges(batch.changedActive, changed.size(), netActivations);
+        return changed.size();
     }
 
     /**
-     * Send an image to the SecurityService for processing. The securityService will use its provided
-     * ImageService to analyze the image for cats and update the alarm status accordingly.
+     * Send an image from the default camera to the SecurityService for processing. The securityService
+     * will use its provided ImageService to analyze the image for cats and update the alarm status accordingly.
      * @param currentCameraImage
      */
     public void processImage(BufferedImage currentCameraImage) {
-        isContainsCat = imageService.imageContainsCat(currentCameraImage, 50.0f);
-        catDetected(isContainsCat);
+        processImage(DEFAULT_CAMERA, currentCameraImage);
+    }
+
+    /**
+     * Send an image from the given camera to the SecurityService for processing.
+     *
+     * A cat is reported from 50% confidence and only cleared below 35%, so borderline images do not
+     * make the alarm flap between consecutive scans.
+     * @param cameraId Camera that took the image
+     * @param currentCameraImage
+     */
+    public void processImage(String cameraId, BufferedImage currentCameraImage) {
+        long start = System.nanoTime();
+        Camera camera = camera(cameraId);
+        //the image service may be slow, so only the state update happens under the alarm lock
+        DetectionResult result = imageService.classify(currentCameraImage, camera.tracker.getRequestConfidence());
+        metrics.imageService.recordSince(start);
+        applyDetection(camera, result);
+        metrics.processImage.recordSince(start);
+    }
+
+    public boolean processFrame(BufferedImage currentCameraImage) {
+        return processFrame(DEFAULT_CAMERA, currentCameraImage);
+    }
+
+    /**
+     * Send the next frame of a continuous camera feed for processing. Unlike processImage, the frame
+     * is not scanned while recent frames from the camera have agreed on a clear result, up to a couple
+     * of seconds after its last scan, which saves repeated expensive scans of an unchanging scene.
+     * Frames that barely differ from the camera's last scanned frame are not scanned either.
+     * @param cameraId Camera that took the frame
+     * @param currentCameraImage
+     * @return True if the frame was scanned, false if the previous result was kept
+     */
+    public boolean processFrame(String cameraId, BufferedImage currentCameraImage) {
+        if (!isScanDue(camera(cameraId), currentCameraImage)) {
+            return false;
+        }
+        processImage(cameraId, currentCameraImage);
+        return true;
+    }
+
+    /**
+     * Like processFrame, but a frame that is due for a scan is scanned on a virtual thread of its own
+     * and the result is applied on that thread.
+     * @return A future completed with true once a scanned frame's result has been applied, or
+     * completed with false right away if the previous result was kept
+     */
+    public CompletableFuture<Boolean> processFrameAsync(String cameraId, BufferedImage currentCameraImage) {
+        if (!isScanDue(camera(cameraId), currentCameraImage)) {
+            return CompletableFuture.completedFuture(false);
+        }
+        return processImageAsync(cameraId, currentCameraImage, Runnable::run).thenApply(cat -> true);
+    }
+
+    public void processImage(ImageInput currentCameraImage) {
+        processImage(DEFAULT_CAMERA, currentCameraImage);
+    }
+
+    /**
+     * Send an image to the SecurityService for processing. Encoded camera images are handed to the
+     * ImageService as they are, so services that accept encoded images avoid decoding and re-encoding them.
+     * The same confidence band applies as for decoded images.
+     * @param cameraId Camera that took the image
+     * @param currentCameraImage
+     */
+    public void processImage(String cameraId, ImageInput currentCameraImage) {
+        long start = System.nanoTime();
+        Camera camera = camera(cameraId);
+        DetectionResult result = imageService.classifyInput(currentCameraImage, camera.tracker.getRequestConfidence());
+        metrics.imageService.recordSince(start);
+        applyDetection(camera, result);
+        metrics.processImage.recordSince(start);
+    }
+
+    /**
+     * Scan an image from the default camera in the background. Scanning a new image cancels the scan of
+     * any earlier image from the same camera that has not finished yet, and a scan that times out falls
+     * back to the camera's last known result.
+     * If called on the Swing event dispatch thread, the alarm update and listener notifications
+     * are delivered back on that thread; otherwise they run on the scanning thread.
+     * @param currentCameraImage
+     * @return A future completed with whether a cat was detected once listeners have been notified
+     */
+    public CompletableFuture<Boolean> processImageAsync(BufferedImage currentCameraImage) {
+        Executor callbackExecutor = EventQueue.isDispatchThread() ? EventQueue::invokeLater : Runnable::run;
+        return processImageAsync(currentCameraImage, callbackExecutor);
+    }
+
+    /**
+     * Scan an image from the default camera in the background, applying the result and notifying
+     * listeners on the given executor.
+     * @param currentCameraImage
+     * @param callbackExecutor Executor that applies the result, such as SwingUtilities::invokeLater
+     */
+    public CompletableFuture<Boolean> processImageAsync(BufferedImage currentCameraImage, Executor callbackExecutor) {
+        return processImageAsync(DEFAULT_CAMERA, currentCameraImage, callbackExecutor);
+    }
+
+    /**
+     * Scan an image from the given camera in the background, applying the result and notifying
+     * listeners on the given executor.
+     * @param cameraId Camera that took the image
+     * @param currentCameraImage
+     * @param callbackExecutor Executor that applies the result, such as SwingUtilities::invokeLater
+     * @return A future completed with whether the camera detects a cat once listeners have been notified
+     */
+    public CompletableFuture<Boolean> processImageAsync(String cameraId, BufferedImage currentCameraImage,
+                                                        Executor callbackExecutor) {
+        long start = System.nanoTime();
+        Camera camera = camera(cameraId);
+        return imageScanner.submit(cameraId, currentCameraImage, camera.tracker.getRequestConfidence())
+                .thenApplyAsync(result -> {
+                    boolean cat = applyDetection(camera, result);
+                    metrics.processImage.recordSince(start);
+                    return cat;
+                }, callbackExecutor);
+    }
+
+    /**
+     * Applies the result of scanning an image from the given camera. The processImage methods call
+     * this once the image service has answered; it is public for images scanned elsewhere, such as
+     * by a remote client. A result for an unknown camera starts tracking that camera.
+     * @param cameraId Camera that took the image
+     * @param result What the image service found
+     * @return Whether the camera now detects a cat
+     */
+    public boolean processDetection(String cameraId, DetectionResult result) {
+        return applyDetection(camera(cameraId), result);
+    }
+
+    /**
+     * Forgets a camera that is no longer connected. If it was the only camera detecting a cat, the
+     * cat is no longer considered present.
+     * @param cameraId
+     */
+    public void removeCamera(String cameraId) {
+        synchronized (alarmLock) {
+            Camera camera = cameras.remove(cameraId);
+            imageScanner.forget(cameraId);
+            if (camera != null && camera.catDetected) {
+                camerasDetectingCat--;
+                catDetected(camerasDetectingCat > 0);
+            }
+        }
+    }
+
+    /**
+     * @return Fraction of frames passed to processFrame that were skipped because the scene had not
+     * changed, over all cameras
+     */
+    public double getFrameSkipRatio() {
+        long checked = 0;
+        long skipped = 0;
+        for (Camera camera : cameras.values()) {
+            checked += camera.frameChangeDetector.getFramesChecked();
+            skipped += camera.frameChangeDetector.getFramesSkipped();
+        }
+        return checked == 0 ? 0 : (double) skipped / checked;
     }
 
     public AlarmStatus getAlarmStatus() {
@@ -121,45 +440,113 @@ public class SecurityService {
         return securityRepository.getSensors();
     }
 
+    public int getSensorCount() {
+        return securityRepository.getSensorCount();
+    }
+
+    /**
+     * @return The sensor with the given id, or null if there is none
+     */
+    public Sensor getSensor(UUID sensorId) {
+        return securityRepository.getSensor(sensorId);
+    }
+
     public void addSensor(Sensor sensor) {
         securityRepository.addSensor(sensor);
+        notifyListeners(metrics.sensorListeners, sl -> sl.sensorAdded(sensor));
     }
 
     public void removeSensor(Sensor sensor) {
         securityRepository.removeSensor(sensor);
+        lastReportedAt.remove(sensor.getSensorId());
+        notifyListeners(metrics.sensorListeners, sl -> sl.sensorRemoved(sensor));
     }
 
     public ArmingStatus getArmingStatus() {
         return securityRepository.getArmingStatus();
     }
 
-    private void setActivationFalseForSensors(Set<Sensor> sensors) {
-        ConcurrentSkipListSet<Sensor> sensorCopies = new ConcurrentSkipListSet<>(sensors);
-        Iterator<Sensor> iterator = sensorCopies.iterator();
-        while (iterator.hasNext()){
-            Sensor sensor = iterator.next();
-            sensor.setActive(true);
-            changeSensorActivationStatus(sensor, false);
+    /**
+     * Deactivates the given sensors with one repository write and one alarm update, rather than
+     * going through changeSensorActivationStatus once per sensor.
+     */
+    private void deactivateSensors(Collection<Sensor> sensors) {
+        List<Sensor> deactivated = new ArrayList<>(sensors.size());
+        for (Sensor sensor : sensors) {
+            Lock lock = sensorLocks.get(sensor.getSensorId());
+            lock.lock();
+            try {
+                if (sensor.getActive()) {
+                    sensor.setActive(false);
+                    deactivated.add(sensor);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        if (deactivated.isEmpty()) {
+            return;
         }
+        securityRepository.updateSensors(deactivated);
+        metrics.sensorsDeactivated.add(deactivated.size());
+        for (Sensor sensor : deactivated) {
+            notifyListeners(metrics.sensorListeners, sl -> sl.sensorDeactivated(sensor));
+        }
+        handleSensorDeactivated();
     }
 
     /**
      * Internal method for updating the alarm status when a sensor has been deactivated
      * change in sensor state should not affect the alarm if it was already active
      */
-    private void handleSensorDeactivated(Sensor sensor) {
+    private void handleSensorDeactivated() {
         if (ArmingStatus.DISARMED == securityRepository.getArmingStatus()){
             return;
         }
-        if (securityRepository.getAlarmStatus() == AlarmStatus.PENDING_ALARM) {
-            Set<Sensor> sensors = getSensors();
-            sensors.remove(sensor);
-            if (allSensorsInactive()){
+        synchronized (alarmLock) {
+            if (securityRepository.getAlarmStatus() == AlarmStatus.PENDING_ALARM && allSensorsInactive()) {
                 setAlarmStatus(AlarmStatus.NO_ALARM);
             }
         }
     }
 
+    /**
+     * Internal method for updating the alarm status after a series of activation changes, stepping
+     * through them as handleSensorActivated and handleSensorDeactivated would but setting only the
+     * final status.
+     * @param activated Whether each change activated its sensor
+     * @param changes Number of changes
+     * @param netActivations Activations minus deactivations, already stored in the repository
+     */
+    private void handleSensorChanges(boolean[] activated, int changes, int netActivations) {
+        if (securityRepository.getArmingStatus() == ArmingStatus.DISARMED) {
+            return;
+        }
+        synchronized (alarmLock) {
+            AlarmStatus initial = securityRepository.getAlarmStatus();
+            AlarmStatus alarmStatus = initial;
+            int activeSensors = securityRepository.getActiveSensorCount() - netActivations;
+            for (int i = 0; i < changes; i++) {
+                if (activated[i]) {
+                    activeSensors++;
+                    alarmStatus = switch (alarmStatus) {
+                        case NO_ALARM -> AlarmStatus.PENDING_ALARM;
+                        case PENDING_ALARM -> AlarmStatus.ALARM;
+                        default -> alarmStatus;
+                    };
+                } else {
+                    activeSensors--;
+                    if (alarmStatus == AlarmStatus.PENDING_ALARM && activeSensors == 0) {
+                        alarmStatus = AlarmStatus.NO_ALARM;
+                    }
+                }
+            }
+            if (alarmStatus != initial) {
+                setAlarmStatus(alarmStatus);
+            }
+        }
+    }
+
     /**
      * Internal method for updating the alarm status when a sensor has been activated.
      */
@@ -167,17 +554,59 @@ public class SecurityService {
         if(securityRepository.getArmingStatus() == ArmingStatus.DISARMED) {
             return;
         }
-        AlarmStatus alarmStatus = securityRepository.getAlarmStatus();
-        switch(alarmStatus) {
-            case NO_ALARM -> setAlarmStatus(AlarmStatus.PENDING_ALARM);
-            case PENDING_ALARM -> setAlarmStatus(AlarmStatus.ALARM);
+        synchronized (alarmLock) {
+            AlarmStatus alarmStatus = securityRepository.getAlarmStatus();
+            switch(alarmStatus) {
+                case NO_ALARM -> setAlarmStatus(AlarmStatus.PENDING_ALARM);
+                case PENDING_ALARM -> setAlarmStatus(AlarmStatus.ALARM);
 
-            default -> {}
+                default -> {}
+            }
+        }
+    }
+
+    private Camera camera(String cameraId) {
+        return cameras.computeIfAbsent(cameraId, Camera::new);
+    }
+
+    private static boolean isScanDue(Camera camera, BufferedImage frame) {
+        //the change check runs only when a scan is due, so the reference stays the last scanned frame
+        return camera.tracker.shouldScan(System.nanoTime()) && camera.frameChangeDetector.hasChanged(frame);
+    }
+
+    /**
+     * Applies a scan result to the camera whose image was scanned. The result is dropped if that
+     * camera has been removed since, so a late result cannot bring a removed camera back.
+     * @return Whether the camera now detects a cat
+     */
+    private boolean applyDetection(Camera camera, DetectionResult result) {
+        if (cameras.get(camera.id) != camera) {
+            return false;
+        }
+        boolean cat = camera.tracker.update(result, System.nanoTime());
+        applyCatDetection(camera, cat);
+        return cat;
+    }
+
+    /**
+     * Records the camera's result and updates the alarm from the combined result of all cameras.
+     */
+    private void applyCatDetection(Camera camera, boolean cat) {
+        synchronized (alarmLock) {
+            //the camera may have been removed while its tracker was updated
+            if (cameras.get(camera.id) != camera) {
+                return;
+            }
+            if (cat != camera.catDetected) {
+                camera.catDetected = cat;
+                camerasDetectingCat += cat ? 1 : -1;
+            }
+            catDetected(camerasDetectingCat > 0);
         }
     }
 
     private boolean allSensorsInactive() {
-        return getSensors().stream().noneMatch(Sensor::getActive);
+        return securityRepository.getActiveSensorCount() == 0;
     }
 
     private boolean isSystemArmedAwayOrArmedHome(ArmingStatus armingStatus){
@@ -190,11 +619,38 @@ public class SecurityService {
      * @param cat True if a cat is detected, otherwise false.
      */
     private void catDetected(Boolean cat) {
-        if(cat && getArmingStatus() == ArmingStatus.ARMED_HOME) {
-            setAlarmStatus(AlarmStatus.ALARM);
-        } else if (!cat && allSensorsInactive()){
-            setAlarmStatus(AlarmStatus.NO_ALARM);
+        synchronized (alarmLock) {
+            if(cat && getArmingStatus() == ArmingStatus.ARMED_HOME) {
+                setAlarmStatus(AlarmStatus.ALARM);
+            } else if (!cat && allSensorsInactive()){
+                setAlarmStatus(AlarmStatus.NO_ALARM);
+            }
+        }
+        notifyListeners(metrics.catListeners, sl -> sl.catDetected(cat));
+    }
+
+    /**
+     * Tells every listener about one event and records how long that took.
+     */
+    private void notifyListeners(LatencyHistogram latency, Consumer<StatusListener> event) {
+        long start = System.nanoTime();
+        statusListeners.forEach(event);
+        latency.recordSince(start);
+    }
+
+    /**
+     * Detection state of one camera.
+     */
+    private static final class Camera {
+        private final String id;
+        private final CatDetectionTracker tracker = new CatDetectionTracker(CAT_ENTER_CONFIDENCE,
+                CAT_EXIT_CONFIDENCE, CAT_STABLE_FRAMES, CAT_STABLE_DELTA, CAT_MAX_SKIP.toNanos());
+        private final FrameChangeDetector frameChangeDetector = new FrameChangeDetector();
+        //guarded by the alarm lock
+        private boolean catDetected;
+
+        Camera(String id) {
+            this.id = id;
         }
-        statusListeners.forEach(sl -> sl.catDetected(cat));
     }
 }
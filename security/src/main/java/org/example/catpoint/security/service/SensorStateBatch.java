@@ -0,0 +1,87 @@
+package org.example.catpoint.security.service;
+
+import org.example.catpoint.security.data.Sensor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reusable batch of sensor states reported by gateways, for
+ * {@link SecurityService#applySensorStates(SensorStateBatch)}.
+ *
+ * Records are kept in primitive arrays, with sensor ids as the two halves of their UUID, so a
+ * batch can be filled straight from a network buffer and cleared for the next one without
+ * allocating anything. Not thread-safe; each ingesting thread uses its own batch.
+ */
+public class SensorStateBatch {
+
+    private final long[] mostSigBits;
+    private final long[] leastSigBits;
+    private final boolean[] active;
+    private final long[] timestamps;
+    private int size;
+
+    //scratch space for SecurityService, sized for the worst case so it never grows
+    final List<Sensor> changedSensors;
+    final boolean[] changedActive;
+
+    /**
+     * @param capacity Largest number of records the batch holds
+     */
+    public SensorStateBatch(int capacity) {
+        mostSigBits = new long[capacity];
+        leastSigBits = new long[capacity];
+        active = new boolean[capacity];
+        timestamps = new long[capacity];
+        changedSensors = new ArrayList<>(capacity);
+        changedActive = new boolean[capacity];
+    }
+
+    /**
+     * Adds the state of one sensor.
+     * @param timestamp When the gateway saw the state, in milliseconds since the epoch
+     * @throws IllegalStateException If the batch is full
+     */
+    public void add(long mostSigBits, long leastSigBits, boolean active, long timestamp) {
+        if (size == this.active.length) {
+            throw new IllegalStateException("Batch is full at " + size + " records");
+        }
+        this.mostSigBits[size] = mostSigBits;
+        this.leastSigBits[size] = leastSigBits;
+        this.active[size] = active;
+        this.timestamps[size] = timestamp;
+        size++;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return active.length;
+    }
+
+    public int remaining() {
+        return active.length - size;
+    }
+
+    public long getMostSigBits(int index) {
+        return mostSigBits[index];
+    }
+
+    public long getLeastSigBits(int index) {
+        return leastSigBits[index];
+    }
+
+    public boolean isActive(int index) {
+        return active[index];
+    }
+
+    public long getTimestamp(int index) {
+        return timestamps[index];
+    }
+}
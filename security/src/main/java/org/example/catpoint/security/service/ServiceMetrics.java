@@ -0,0 +1,65 @@
+package org.example.catpoint.security.service;
+
+import org.example.catpoint.security.data.AlarmStatus;
+import org.example.catpoint.security.metrics.LatencyHistogram;
+import org.example.catpoint.security.metrics.MetricsRegistry;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The metrics a SecurityService records, looked up once so the hot paths only record:
+ * <ul>
+ *     <li>processImage.total - scanning an image and applying the result, listeners included</li>
+ *     <li>processImage.imageService - the image service's part of that</li>
+ *     <li>listeners.sensor, listeners.alarmStatus, listeners.armingStatus, listeners.catDetected -
+ *     notifying every listener of one event, or of one batch from applySensorStates, so
+ *     listeners.catDetected is the fan-out part of processImage</li>
+ *     <li>sensors.activated, sensors.deactivated - activation changes</li>
+ *     <li>sensors.staleReports - gateway reports skipped because a newer one was already applied</li>
+ *     <li>alarm.[from].to.[to] - alarm status changes, such as alarm.NO_ALARM.to.PENDING_ALARM</li>
+ * </ul>
+ */
+final class ServiceMetrics {
+
+    final LatencyHistogram processImage;
+    final LatencyHistogram imageService;
+    final LatencyHistogram sensorListeners;
+    final LatencyHistogram alarmListeners;
+    final LatencyHistogram armingListeners;
+    final LatencyHistogram catListeners;
+    final LongAdder sensorsActivated;
+    final LongAdder sensorsDeactivated;
+    final LongAdder staleSensorReports;
+    private final LongAdder[][] alarmTransitions;
+
+    ServiceMetrics(MetricsRegistry registry) {
+        processImage = registry.histogram("processImage.total");
+        imageService = registry.histogram("processImage.imageService");
+        sensorListeners = registry.histogram("listeners.sensor");
+        alarmListeners = registry.histogram("listeners.alarmStatus");
+        armingListeners = registry.histogram("listeners.armingStatus");
+        catListeners = registry.histogram("listeners.catDetected");
+        sensorsActivated = registry.counter("sensors.activated");
+        sensorsDeactivated = registry.counter("sensors.deactivated");
+        staleSensorReports = registry.counter("sensors.staleReports");
+        AlarmStatus[] statuses = AlarmStatus.values();
+        alarmTransitions = new LongAdder[statuses.length][statuses.length];
+        for (AlarmStatus from : statuses) {
+            for (AlarmStatus to : statuses) {
+                if (from != to) {
+                    alarmTransitions[from.ordinal()][to.ordinal()] = registry.counter("alarm." + from + ".to." + to);
+                }
+            }
+        }
+    }
+
+    /**
+     * Counts a change of the alarm status. Setting the status it already had is not counted, nor
+     * is a change from an unknown status.
+     */
+    void alarmStatusChanged(AlarmStatus from, AlarmStatus to) {
+        if (from != null && to != null && from != to) {
+            alarmTransitions[from.ordinal()][to.ordinal()].increment();
+        }
+    }
+}
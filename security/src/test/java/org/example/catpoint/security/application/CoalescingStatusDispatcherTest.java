@@ -0,0 +1,107 @@
+package org.example.catpoint.security.application;
+
+import org.example.catpoint.security.data.AlarmStatus;
+import org.example.catpoint.security.data.ArmingStatus;
+import org.example.catpoint.security.data.Sensor;
+import org.example.catpoint.security.data.SensorType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class CoalescingStatusDispatcherTest {
+
+    @Mock
+    StatusListener listener;
+
+    private final Queue<Runnable> deliveries = new ArrayDeque<>();
+    private CoalescingStatusDispatcher dispatcher;
+
+    @BeforeEach
+    private void setUp() {
+        dispatcher = new CoalescingStatusDispatcher(deliveries::add, 3);
+        dispatcher.addStatusListener(listener);
+    }
+
+    private void deliver() {
+        Runnable delivery;
+        while ((delivery = deliveries.poll()) != null) {
+            delivery.run();
+        }
+    }
+
+    @Test
+    public void changesNotDeliveredOnCallingThread() {
+        dispatcher.alarmStatusChanged(AlarmStatus.NO_ALARM, AlarmStatus.PENDING_ALARM);
+        verifyNoInteractions(listener);
+        deliver();
+        verify(listener).alarmStatusChanged(AlarmStatus.NO_ALARM, AlarmStatus.PENDING_ALARM);
+    }
+
+    @Test
+    public void alarmChangesInOneBatchDeliveredAsOneTransition() {
+        dispatcher.alarmStatusChanged(AlarmStatus.NO_ALARM, AlarmStatus.PENDING_ALARM);
+        dispatcher.alarmStatusChanged(AlarmStatus.PENDING_ALARM, AlarmStatus.ALARM);
+        dispatcher.catDetected(true);
+        dispatcher.catDetected(false);
+        assertEquals(1, deliveries.size());
+        deliver();
+        verify(listener).alarmStatusChanged(AlarmStatus.NO_ALARM, AlarmStatus.ALARM);
+        verify(listener).catDetected(false);
+        verifyNoMoreInteractions(listener);
+    }
+
+    @Test
+    public void sensorEventsCoalescedPerSensor() {
+        Sensor added = new Sensor("door", SensorType.DOOR);
+        Sensor toggled = new Sensor("window", SensorType.WINDOW);
+        Sensor removed = new Sensor("motion", SensorType.MOTION);
+        dispatcher.sensorAdded(added);
+        dispatcher.sensorActivated(added);
+        dispatcher.sensorActivated(toggled);
+        dispatcher.sensorDeactivated(toggled);
+        dispatcher.sensorActivated(removed);
+        dispatcher.sensorRemoved(removed);
+        deliver();
+        InOrder inOrder = inOrder(listener);
+        inOrder.verify(listener).sensorAdded(added);
+        inOrder.verify(listener).sensorDeactivated(toggled);
+        inOrder.verify(listener).sensorRemoved(removed);
+        verifyNoMoreInteractions(listener);
+    }
+
+    @Test
+    public void bulkSensorChangesReplacedBySingleRefresh() {
+        dispatcher.armingStatusChanged(ArmingStatus.DISARMED, ArmingStatus.ARMED_HOME);
+        for (int i = 0; i < 10; i++) {
+            dispatcher.sensorDeactivated(new Sensor("sensor " + i, SensorType.DOOR));
+        }
+        dispatcher.armingStatusChanged(ArmingStatus.ARMED_HOME, ArmingStatus.ARMED_AWAY);
+        deliver();
+        verify(listener, never()).sensorDeactivated(any());
+        verify(listener).sensorStatusChanged();
+        verify(listener).armingStatusChanged(ArmingStatus.DISARMED, ArmingStatus.ARMED_AWAY);
+    }
+
+    @Test
+    public void changesAfterDeliveryStartNextBatch() {
+        dispatcher.catDetected(true);
+        deliver();
+        dispatcher.catDetected(false);
+        assertEquals(1, deliveries.size());
+        deliver();
+        InOrder inOrder = inOrder(listener);
+        inOrder.verify(listener).catDetected(true);
+        inOrder.verify(listener).catDetected(false);
+    }
+}
@@ -0,0 +1,153 @@
+package org.example.catpoint.security.camera;
+
+import org.example.catpoint.security.service.SecurityService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class CameraFeedTest {
+
+    @Mock
+    SecurityService securityService;
+
+    private CameraFeed feed;
+
+    @BeforeEach
+    private void setUp() {
+        lenient().when(securityService.processFrameAsync(any(), any())).thenReturn(CompletableFuture.completedFuture(false));
+    }
+
+    @AfterEach
+    private void tearDown() throws IOException {
+        if (feed != null) {
+            feed.close();
+        }
+    }
+
+    /**
+     * Emits the given number of one-byte frames, numbered from 0, then blocks until closed.
+     */
+    private static FrameSource frames(int count) {
+        CountDownLatch closed = new CountDownLatch(1);
+        return new FrameSource() {
+            @Override
+            public void read(Consumer<byte[]> frames) {
+                for (int i = 0; i < count; i++) {
+                    frames.accept(new byte[]{(byte) i});
+                }
+                try {
+                    closed.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+            @Override
+            public void close() {
+                closed.countDown();
+            }
+        };
+    }
+
+    private static BufferedImage image(byte[] bytes) {
+        BufferedImage image = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB);
+        image.setRGB(0, 0, bytes[0]);
+        return image;
+    }
+
+    @Test
+    public void newestFrameScannedOnce() throws Exception {
+        CountDownLatch scanned = new CountDownLatch(1);
+        when(securityService.processFrameAsync(eq("camera"), any())).thenAnswer(invocation -> {
+            scanned.countDown();
+            return CompletableFuture.completedFuture(true);
+        });
+        CountDownLatch decoded = new CountDownLatch(3);
+        feed = new CameraFeed("camera", frames(3), securityService, 1, 8, Duration.ofMillis(20), CameraFeedTest::image);
+        feed.addFrameListener(frame -> decoded.countDown());
+        feed.start();
+
+        assertTrue(decoded.await(5, TimeUnit.SECONDS));
+        assertTrue(scanned.await(5, TimeUnit.SECONDS));
+        Thread.sleep(100);
+        assertEquals(2, feed.getLatestFrame().getRGB(0, 0) & 0xFF);
+        verify(securityService, atMost(3)).processFrameAsync(eq("camera"), any());
+        assertEquals(3, feed.getFramesReceived());
+        assertEquals(0, feed.getFramesDropped());
+    }
+
+    @Test
+    public void slowDecodingDropsOldestWaitingFrames() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        List<Integer> decoded = new CopyOnWriteArrayList<>();
+        feed = new CameraFeed("camera", frames(10), securityService, 1, 2, Duration.ofSeconds(10), bytes -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            decoded.add((int) bytes[0]);
+            return image(bytes);
+        });
+        feed.start();
+
+        while (feed.getFramesReceived() < 10) {
+            Thread.sleep(10);
+        }
+        release.countDown();
+        while (decoded.size() < 3) {
+            Thread.sleep(10);
+        }
+        //the first frame was already decoding; of the rest only the two newest waited
+        assertEquals(List.of(0, 8, 9), decoded);
+        assertEquals(7, feed.getFramesDropped());
+        assertEquals(9, feed.getLatestFrame().getRGB(0, 0) & 0xFF);
+    }
+
+    @Test
+    public void undecodableFrameCountedAndSkipped() throws Exception {
+        CountDownLatch decoded = new CountDownLatch(1);
+        feed = new CameraFeed("camera", frames(2), securityService, 1, 4, Duration.ofSeconds(10), bytes -> {
+            if (bytes[0] == 0) {
+                throw new IllegalStateException("corrupt");
+            }
+            return image(bytes);
+        });
+        feed.addFrameListener(frame -> decoded.countDown());
+        feed.start();
+
+        assertTrue(decoded.await(5, TimeUnit.SECONDS));
+        assertEquals(1, feed.getFramesFailed());
+        assertEquals(1, feed.getLatestFrame().getRGB(0, 0) & 0xFF);
+    }
+
+    @Test
+    public void realDecoderRejectsGarbage() throws Exception {
+        CountDownLatch done = new CountDownLatch(1);
+        feed = new CameraFeed("camera", frames(1), securityService, 1, 4, Duration.ofSeconds(10));
+        feed.start();
+        while (feed.getFramesFailed() == 0) {
+            done.await(10, TimeUnit.MILLISECONDS);
+        }
+        assertNull(feed.getLatestFrame());
+    }
+}
@@ -0,0 +1,44 @@
+package org.example.catpoint.security.camera;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DirectoryFrameSourceTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void newImagesReadAndOtherFilesIgnored() throws Exception {
+        BlockingQueue<byte[]> frames = new LinkedBlockingQueue<>();
+        DirectoryFrameSource source = new DirectoryFrameSource(directory);
+        CompletableFuture<Void> reading = CompletableFuture.runAsync(() -> {
+            try {
+                source.read(frames::add);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+
+        Files.write(directory.resolve("notes.txt"), new byte[]{9});
+        Files.write(directory.resolve("snapshot.JPG"), new byte[]{1, 2, 3});
+        byte[] frame = frames.poll(30, TimeUnit.SECONDS);
+        assertArrayEquals(new byte[]{1, 2, 3}, frame);
+
+        source.close();
+        reading.get(5, TimeUnit.SECONDS);
+        for (byte[] other : frames) {
+            assertArrayEquals(new byte[]{1, 2, 3}, other);
+        }
+    }
+}
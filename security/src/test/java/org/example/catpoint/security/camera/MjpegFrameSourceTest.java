@@ -0,0 +1,136 @@
+package org.example.catpoint.security.camera;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MjpegFrameSourceTest {
+
+    private static byte[] jpeg(int... body) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(0xFF);
+        out.write(0xD8);
+        for (int b : body) {
+            out.write(b);
+        }
+        out.write(0xFF);
+        out.write(0xD9);
+        return out.toByteArray();
+    }
+
+    private static List<byte[]> read(byte[] stream, int maxFrameBytes) throws IOException {
+        List<byte[]> frames = new ArrayList<>();
+        new MjpegFrameSource(new ByteArrayInputStream(stream), Duration.ZERO, maxFrameBytes).read(frames::add);
+        return frames;
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] part : parts) {
+            out.writeBytes(part);
+        }
+        return out.toByteArray();
+    }
+
+    @Test
+    public void framesSplitAtMarkersIgnoringBytesBetween() throws IOException {
+        byte[] first = jpeg(1, 2, 3);
+        byte[] second = jpeg(0xFF, 0x00, 4);
+        byte[] header = "--frame\r\nContent-Type: image/jpeg\r\n\r\n".getBytes();
+        List<byte[]> frames = read(concat(header, first, header, second, header), 1024);
+        assertEquals(2, frames.size());
+        assertArrayEquals(first, frames.get(0));
+        assertArrayEquals(second, frames.get(1));
+    }
+
+    @Test
+    public void embeddedThumbnailStaysInFrame() throws IOException {
+        byte[] thumbnail = jpeg(7, 7);
+        byte[] body = concat(new byte[]{1}, thumbnail, new byte[]{2});
+        int[] bodyInts = new int[body.length];
+        for (int i = 0; i < body.length; i++) {
+            bodyInts[i] = body[i] & 0xFF;
+        }
+        byte[] frame = jpeg(bodyInts);
+        List<byte[]> frames = read(frame, 1024);
+        assertEquals(1, frames.size());
+        assertArrayEquals(frame, frames.get(0));
+    }
+
+    @Test
+    public void oversizedFrameDroppedAndNextFrameRead() throws IOException {
+        byte[] large = jpeg(new int[100]);
+        byte[] small = jpeg(5);
+        List<byte[]> frames = read(concat(large, small), 50);
+        assertEquals(1, frames.size());
+        assertArrayEquals(small, frames.get(0));
+    }
+
+    @Test
+    public void truncatedFrameNotDelivered() throws IOException {
+        byte[] frame = jpeg(1, 2, 3);
+        assertTrue(read(Arrays.copyOf(frame, frame.length - 1), 1024).isEmpty());
+    }
+
+    @Test
+    public void closeStopsBlockedRead() throws Exception {
+        CountDownLatch closed = new CountDownLatch(1);
+        InputStream camera = new InputStream() {
+            private final InputStream first = new ByteArrayInputStream(jpeg(1));
+
+            @Override
+            public int read() throws IOException {
+                byte[] b = new byte[1];
+                return read(b, 0, 1) == -1 ? -1 : b[0] & 0xFF;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                if (first.available() > 0) {
+                    return first.read(b, off, len);
+                }
+                //like a socket, a read blocked waiting for data fails once the stream is closed
+                try {
+                    closed.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                throw new IOException("Stream closed");
+            }
+
+            @Override
+            public void close() {
+                closed.countDown();
+            }
+        };
+        MjpegFrameSource source = new MjpegFrameSource(camera, Duration.ZERO, 1024);
+        List<byte[]> frames = new CopyOnWriteArrayList<>();
+        CompletableFuture<Void> reading = CompletableFuture.runAsync(() -> {
+            try {
+                source.read(frames::add);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        while (frames.isEmpty()) {
+            Thread.sleep(10);
+        }
+        source.close();
+        reading.get(5, TimeUnit.SECONDS);
+        assertEquals(1, frames.size());
+    }
+}
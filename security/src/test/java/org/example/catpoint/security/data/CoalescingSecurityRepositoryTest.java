@@ -0,0 +1,165 @@
+package org.example.catpoint.security.data;
+
+import org.example.catpoint.image.service.ImageService;
+import org.example.catpoint.security.service.SecurityService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class CoalescingSecurityRepositoryTest {
+
+    //a real repository, so the counts and lookups the decorator corrects are consistent
+    @Spy
+    InMemorySecurityRepositoryImpl delegate = new InMemorySecurityRepositoryImpl();
+
+    @Mock
+    ImageService imageService;
+
+    private CoalescingSecurityRepository repository;
+
+    @AfterEach
+    private void tearDown() throws IOException {
+        repository.close();
+    }
+
+    private CoalescingSecurityRepository open(Duration window, int maxBatchSize,
+                                              CoalescingSecurityRepository.Durability durability) {
+        repository = new CoalescingSecurityRepository(delegate, window, maxBatchSize, durability);
+        return repository;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Collection<Sensor> captureSingleBatch() {
+        ArgumentCaptor<Collection<Sensor>> captor = ArgumentCaptor.forClass(Collection.class);
+        verify(delegate, times(1)).updateSensors(captor.capture());
+        return captor.getValue();
+    }
+
+    @Test
+    public void repeatedUpdatesOfOneSensorWrittenOnceOnFlush() {
+        open(Duration.ofHours(1), 100, CoalescingSecurityRepository.Durability.BUFFERED);
+        Sensor sensor = new Sensor("door", SensorType.DOOR);
+        repository.addSensor(sensor);
+        for (int i = 0; i < 10; i++) {
+            sensor.setActive(i % 2 == 0);
+            repository.updateSensor(sensor);
+        }
+        verify(delegate, never()).updateSensors(anyCollection());
+        assertTrue(repository.getSensors().contains(sensor));
+
+        repository.flush();
+        assertEquals(List.of(sensor), List.copyOf(captureSingleBatch()));
+        verify(delegate, never()).updateSensor(any());
+    }
+
+    @Test
+    public void batchSizeReachedFlushedWithoutWaitingForWindow() {
+        open(Duration.ofHours(1), 3, CoalescingSecurityRepository.Durability.BUFFERED);
+        repository.addSensor(new Sensor("a", SensorType.DOOR));
+        repository.addSensor(new Sensor("b", SensorType.DOOR));
+        repository.addSensor(new Sensor("c", SensorType.DOOR));
+        assertEquals(3, captureSingleBatch().size());
+    }
+
+    @Test
+    public void flushWindowElapsedPendingChangesWritten() {
+        open(Duration.ofMillis(10), 100, CoalescingSecurityRepository.Durability.BUFFERED);
+        repository.addSensor(new Sensor("a", SensorType.WINDOW));
+        verify(delegate, timeout(2_000)).updateSensors(anyCollection());
+    }
+
+    @Test
+    public void sensorAddedThenRemovedOnlyRemovalWritten() {
+        open(Duration.ofHours(1), 100, CoalescingSecurityRepository.Durability.BUFFERED);
+        Sensor sensor = new Sensor("motion", SensorType.MOTION);
+        repository.addSensor(sensor);
+        repository.removeSensor(sensor);
+        repository.flush();
+        verify(delegate).removeSensor(sensor);
+        verify(delegate, never()).updateSensors(anyCollection());
+        assertFalse(repository.getSensors().contains(sensor));
+    }
+
+    @Test
+    public void syncAlarmStateDurabilityAlarmChangeWrittenImmediatelyWithPendingSensors() {
+        open(Duration.ofHours(1), 100, CoalescingSecurityRepository.Durability.SYNC_ALARM_STATE);
+        repository.addSensor(new Sensor("a", SensorType.DOOR));
+        repository.setAlarmStatus(AlarmStatus.ALARM);
+        verify(delegate).updateSensors(anyCollection());
+        verify(delegate).setAlarmStatus(AlarmStatus.ALARM);
+        assertEquals(AlarmStatus.ALARM, repository.getAlarmStatus());
+    }
+
+    @Test
+    public void bufferedDurabilityAlarmChangeWaitsForFlush() {
+        open(Duration.ofHours(1), 100, CoalescingSecurityRepository.Durability.BUFFERED);
+        repository.setAlarmStatus(AlarmStatus.PENDING_ALARM);
+        repository.setAlarmStatus(AlarmStatus.ALARM);
+        verify(delegate, never()).setAlarmStatus(any());
+        repository.flush();
+        verify(delegate, times(1)).setAlarmStatus(AlarmStatus.ALARM);
+    }
+
+    @Test
+    public void armingWithManyActiveSensorsSingleBatchWrite() {
+        open(Duration.ofHours(1), 1_000, CoalescingSecurityRepository.Durability.SYNC_ALARM_STATE);
+        SecurityService securityService = new SecurityService(repository, imageService);
+        for (int i = 0; i < 20; i++) {
+            Sensor sensor = new Sensor("sensor " + i, SensorType.WINDOW);
+            sensor.setActive(true);
+            securityService.addSensor(sensor);
+        }
+        repository.flush();
+        clearInvocations(delegate);
+
+        securityService.setArmingStatus(ArmingStatus.ARMED_AWAY);
+        assertEquals(20, captureSingleBatch().size());
+        verify(delegate).setArmingStatus(ArmingStatus.ARMED_AWAY);
+        assertTrue(repository.getSensors().stream().noneMatch(Sensor::getActive));
+    }
+
+    @Test
+    public void storedSensorsReadOnlyWhenNeededCountsIncludePendingChanges() {
+        Sensor door = new Sensor("door", SensorType.DOOR);
+        Sensor window = new Sensor("window", SensorType.WINDOW);
+        window.setActive(true);
+        delegate.updateSensors(List.of(door, window));
+        clearInvocations(delegate);
+
+        open(Duration.ofHours(1), 100, CoalescingSecurityRepository.Durability.BUFFERED);
+        verify(delegate, never()).getSensors();
+        assertEquals(2, repository.getSensorCount());
+        assertEquals(1, repository.getActiveSensorCount());
+
+        Sensor stored = repository.getSensor(door.getSensorId());
+        stored.setActive(true);
+        repository.updateSensor(stored);
+        repository.removeSensor(repository.getSensor(window.getSensorId()));
+        repository.addSensor(new Sensor("motion", SensorType.MOTION));
+        assertEquals(2, repository.getSensorCount());
+        assertEquals(1, repository.getActiveSensorCount());
+        assertEquals(1, repository.getActiveSensorCount(SensorType.DOOR));
+        assertEquals(0, repository.getActiveSensorCount(SensorType.WINDOW));
+        assertNull(repository.getSensor(window.getSensorId()));
+        assertEquals(List.of(stored), List.copyOf(repository.getActiveSensors()));
+
+        repository.flush();
+        assertEquals(2, repository.getSensorCount());
+        assertEquals(1, repository.getActiveSensorCount());
+        assertEquals(List.of("door", "motion"), repository.getSensors().stream().map(Sensor::getName).toList());
+    }
+}
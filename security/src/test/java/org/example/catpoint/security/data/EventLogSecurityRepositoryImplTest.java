@@ -0,0 +1,122 @@
+package org.example.catpoint.security.data;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EventLogSecurityRepositoryImplTest {
+
+    @TempDir
+    Path directory;
+
+    private EventLogSecurityRepositoryImpl open() {
+        return new EventLogSecurityRepositoryImpl(directory, 1_000, false);
+    }
+
+    @Test
+    public void reopenRepositoryStateIsReplayedFromLog() throws IOException {
+        Sensor door = new Sensor("door", SensorType.DOOR);
+        Sensor window = new Sensor("window", SensorType.WINDOW);
+        try (EventLogSecurityRepositoryImpl repository = open()) {
+            repository.addSensor(door);
+            repository.addSensor(window);
+            door.setActive(true);
+            repository.updateSensor(door);
+            repository.removeSensor(window);
+            repository.setArmingStatus(ArmingStatus.ARMED_AWAY);
+            repository.setAlarmStatus(AlarmStatus.PENDING_ALARM);
+        }
+
+        try (EventLogSecurityRepositoryImpl repository = open()) {
+            assertEquals(1, repository.getSensors().size());
+            Sensor restored = repository.getSensors().iterator().next();
+            assertEquals(door, restored);
+            assertEquals("door", restored.getName());
+            assertEquals(SensorType.DOOR, restored.getSensorType());
+            assertTrue(restored.getActive());
+            assertEquals(ArmingStatus.ARMED_AWAY, repository.getArmingStatus());
+            assertEquals(AlarmStatus.PENDING_ALARM, repository.getAlarmStatus());
+        }
+    }
+
+    @Test
+    public void compactionThresholdReachedLogIsFoldedIntoSnapshot() throws IOException {
+        Sensor motion = new Sensor("motion", SensorType.MOTION);
+        try (EventLogSecurityRepositoryImpl repository = new EventLogSecurityRepositoryImpl(directory, 10, false)) {
+            repository.addSensor(motion);
+            for (int i = 0; i < 24; i++) {
+                motion.setActive(i % 2 == 0);
+                repository.updateSensor(motion);
+            }
+        }
+        assertTrue(Files.exists(directory.resolve(EventLogSecurityRepositoryImpl.SNAPSHOT_FILE)));
+
+        try (EventLogSecurityRepositoryImpl repository = open()) {
+            assertEquals(1, repository.getSensors().size());
+            assertFalse(repository.getSensors().iterator().next().getActive());
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 5, 9, 20})
+    public void logTruncatedMidRecordLastRecordDroppedAndEarlierStateKept(int bytesCut) throws IOException {
+        Sensor door = new Sensor("door", SensorType.DOOR);
+        Sensor window = new Sensor("window", SensorType.WINDOW);
+        try (EventLogSecurityRepositoryImpl repository = open()) {
+            repository.addSensor(door);
+            repository.addSensor(window);
+        }
+        Path log = directory.resolve(EventLogSecurityRepositoryImpl.LOG_FILE);
+        truncate(log, Files.size(log) - bytesCut);
+
+        try (EventLogSecurityRepositoryImpl repository = open()) {
+            assertEquals(1, repository.getSensors().size());
+            assertTrue(repository.getSensors().contains(door));
+            repository.setAlarmStatus(AlarmStatus.ALARM);
+        }
+
+        //records appended after recovery must follow the last valid record
+        try (EventLogSecurityRepositoryImpl repository = open()) {
+            assertEquals(1, repository.getSensors().size());
+            assertEquals(AlarmStatus.ALARM, repository.getAlarmStatus());
+        }
+    }
+
+    @Test
+    public void corruptRecordChecksumReplayStopsBeforeCorruption() throws IOException {
+        Sensor door = new Sensor("door", SensorType.DOOR);
+        long firstRecordEnd;
+        try (EventLogSecurityRepositoryImpl repository = open()) {
+            repository.addSensor(door);
+            firstRecordEnd = Files.size(directory.resolve(EventLogSecurityRepositoryImpl.LOG_FILE));
+            repository.setArmingStatus(ArmingStatus.ARMED_HOME);
+        }
+        Path log = directory.resolve(EventLogSecurityRepositoryImpl.LOG_FILE);
+        try (FileChannel channel = FileChannel.open(log, StandardOpenOption.WRITE)) {
+            //flip the arming status ordinal in the last record's payload
+            channel.write(ByteBuffer.wrap(new byte[]{2}), firstRecordEnd + 9);
+        }
+
+        try (EventLogSecurityRepositoryImpl repository = open()) {
+            assertTrue(repository.getSensors().contains(door));
+            assertEquals(ArmingStatus.DISARMED, repository.getArmingStatus());
+            assertEquals(firstRecordEnd, Files.size(log));
+        }
+    }
+
+    private static void truncate(Path file, long length) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(length);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package org.example.catpoint.security.data;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.prefs.BackingStoreException;
+import java.util.prefs.Preferences;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PretendDatabaseSecurityRepositoryImplTest {
+
+    private Preferences prefs;
+
+    @BeforeEach
+    private void setUp() {
+        prefs = Preferences.userRoot().node("catpoint-test-" + UUID.randomUUID());
+    }
+
+    @AfterEach
+    private void tearDown() throws BackingStoreException {
+        prefs.removeNode();
+    }
+
+    private List<Sensor> addSensors(SecurityRepository repository, int count) {
+        List<Sensor> sensors = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Sensor sensor = new Sensor("sensor " + i, SensorType.values()[i % SensorType.values().length]);
+            sensor.setActive(i % 3 == 0);
+            sensors.add(sensor);
+        }
+        repository.updateSensors(sensors);
+        return sensors;
+    }
+
+    @Test
+    public void stateReloadedFromSamePreferences() {
+        PretendDatabaseSecurityRepositoryImpl repository = new PretendDatabaseSecurityRepositoryImpl(prefs);
+        List<Sensor> sensors = addSensors(repository, 5);
+        repository.setArmingStatus(ArmingStatus.ARMED_AWAY);
+        repository.setAlarmStatus(AlarmStatus.PENDING_ALARM);
+
+        PretendDatabaseSecurityRepositoryImpl reloaded = new PretendDatabaseSecurityRepositoryImpl(prefs);
+
+        assertEquals(repository.getSensors(), reloaded.getSensors());
+        assertEquals(ArmingStatus.ARMED_AWAY, reloaded.getArmingStatus());
+        assertEquals(AlarmStatus.PENDING_ALARM, reloaded.getAlarmStatus());
+        assertEquals(sensors.get(0).getName(), reloaded.getSensor(sensors.get(0).getSensorId()).getName());
+        assertNull(prefs.get("SENSOR_CHUNKS", null));
+    }
+
+    @Test
+    public void sensorsLargerThanOnePreferenceValueStoredInChunks() {
+        PretendDatabaseSecurityRepositoryImpl repository = new PretendDatabaseSecurityRepositoryImpl(prefs);
+        addSensors(repository, 1_000);
+
+        PretendDatabaseSecurityRepositoryImpl reloaded = new PretendDatabaseSecurityRepositoryImpl(prefs);
+
+        assertTrue(prefs.getInt("SENSOR_CHUNKS", 0) > 1);
+        assertEquals(1_000, reloaded.getSensors().size());
+        assertEquals(repository.getActiveSensorCount(), reloaded.getActiveSensorCount());
+    }
+
+    @Test
+    public void shrinkingBelowOneValueRemovesChunks() {
+        PretendDatabaseSecurityRepositoryImpl repository = new PretendDatabaseSecurityRepositoryImpl(prefs);
+        List<Sensor> sensors = addSensors(repository, 500);
+        for (Sensor sensor : sensors.subList(1, sensors.size())) {
+            repository.removeSensor(sensor);
+        }
+
+        PretendDatabaseSecurityRepositoryImpl reloaded = new PretendDatabaseSecurityRepositoryImpl(prefs);
+
+        assertEquals(0, prefs.getInt("SENSOR_CHUNKS", 0));
+        assertNull(prefs.get("SENSORS0", null));
+        assertEquals(List.of(sensors.get(0)), new ArrayList<>(reloaded.getSensors()));
+    }
+}
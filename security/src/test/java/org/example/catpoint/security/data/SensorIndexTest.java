@@ -0,0 +1,187 @@
+package org.example.catpoint.security.data;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SensorIndexTest {
+
+    private final SensorIndex index = new SensorIndex();
+
+    @Test
+    public void putAndRemoveManySensorsLookupsMatchHashMap() {
+        Random random = new Random(42);
+        Map<UUID, Sensor> expected = new HashMap<>();
+        List<Sensor> all = new ArrayList<>();
+        for (int i = 0; i < 5_000; i++) {
+            Sensor sensor = new Sensor("sensor " + random.nextInt(100), SensorType.DOOR);
+            all.add(sensor);
+            index.put(sensor);
+            expected.put(sensor.getSensorId(), sensor);
+            if (random.nextInt(3) == 0) {
+                Sensor removed = all.get(random.nextInt(all.size()));
+                assertSame(expected.remove(removed.getSensorId()), index.remove(removed.getSensorId()));
+            }
+        }
+        assertEquals(expected.size(), index.size());
+        for (Sensor sensor : all) {
+            assertSame(expected.get(sensor.getSensorId()), index.get(sensor.getSensorId()));
+        }
+    }
+
+    @Test
+    public void sortedViewSameOrderAsSensorComparator() {
+        TreeSet<Sensor> expected = new TreeSet<>();
+        for (int i = 0; i < 200; i++) {
+            Sensor sensor = new Sensor("sensor " + (i % 7), SensorType.values()[i % 3]);
+            expected.add(sensor);
+            index.put(sensor);
+        }
+        assertEquals(List.copyOf(expected), List.copyOf(index.sortedView()));
+    }
+
+    @Test
+    public void sensorRenamedWhileStoredUpdateMovesItInSortedView() {
+        Sensor alpha = new Sensor("alpha", SensorType.DOOR);
+        Sensor beta = new Sensor("beta", SensorType.DOOR);
+        index.put(alpha);
+        index.put(beta);
+
+        alpha.setName("gamma");
+        index.put(alpha);
+
+        assertEquals(List.of(beta, alpha), List.copyOf(index.sortedView()));
+        assertSame(alpha, index.remove(alpha.getSensorId()));
+        assertEquals(List.of(beta), List.copyOf(index.sortedView()));
+    }
+
+    @Test
+    public void sortedViewIsReadOnly() {
+        Sensor sensor = new Sensor("door", SensorType.DOOR);
+        index.put(sensor);
+        assertTrue(index.sortedView().contains(sensor));
+        assertThrows(UnsupportedOperationException.class, () -> index.sortedView().remove(sensor));
+    }
+
+    @Test
+    public void snapshotSharedUntilSensorsOrTheirOrderChange() {
+        Sensor door = new Sensor("door", SensorType.DOOR);
+        Sensor window = new Sensor("window", SensorType.WINDOW);
+        index.put(door);
+        Set<Sensor> first = index.snapshot();
+
+        door.setActive(true);
+        index.put(door);
+        assertSame(first, index.snapshot());
+
+        index.put(window);
+        Set<Sensor> second = index.snapshot();
+        assertEquals(List.of(door), List.copyOf(first));
+        assertEquals(List.of(door, window), List.copyOf(second));
+
+        door.setName("zebra door");
+        index.put(door);
+        assertEquals(List.of(window, door), List.copyOf(index.snapshot()));
+        assertEquals(List.of(door, window), List.copyOf(second));
+    }
+
+    @Test
+    public void sensorsLoadedFromSnapshotCreatedWhenLookedUp(@TempDir Path directory) throws IOException {
+        List<Sensor> stored = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            Sensor sensor = new Sensor("sensor " + i, SensorType.values()[i % 3]);
+            sensor.setActive(i % 4 == 0);
+            stored.add(sensor);
+        }
+        Path file = directory.resolve("snapshot.bin");
+        SensorSnapshot.write(file, stored, AlarmStatus.NO_ALARM, ArmingStatus.DISARMED);
+        index.load(SensorSnapshot.open(file));
+
+        assertEquals(100, index.size());
+        assertEquals(25, index.activeCount());
+        Sensor first = index.get(stored.get(0).getSensorId());
+        assertEquals("sensor 0", first.getName());
+        assertSame(first, index.get(stored.get(0).getSensorId()));
+
+        //changes made before the display order is built are kept in it
+        Sensor added = new Sensor("added", SensorType.DOOR);
+        index.put(added);
+        index.remove(stored.get(1).getSensorId());
+        first.setName("zzz");
+        index.put(first);
+        TreeSet<Sensor> expected = new TreeSet<>(stored.subList(2, 100));
+        expected.add(added);
+        expected.add(first);
+        assertEquals(List.copyOf(expected), List.copyOf(index.sortedView()));
+        assertCountsMatchScan();
+    }
+
+    /**
+     * Property: after any sequence of inserts, activations, type changes and removals, the
+     * incrementally maintained active counts equal a full scan of the stored sensors.
+     */
+    @ParameterizedTest
+    @ValueSource(longs = {1, 7, 42, 1234, 99991})
+    public void randomOperationSequenceActiveCountsMatchFullScan(long seed) {
+        Random random = new Random(seed);
+        List<Sensor> known = new ArrayList<>();
+        for (int step = 0; step < 5_000; step++) {
+            int operation = random.nextInt(10);
+            if (operation < 3 || known.isEmpty()) {
+                Sensor sensor = new Sensor("sensor " + step, randomType(random));
+                sensor.setActive(random.nextBoolean());
+                known.add(sensor);
+                index.put(sensor);
+            } else {
+                Sensor sensor = known.get(random.nextInt(known.size()));
+                if (operation < 7) {
+                    sensor.setActive(!sensor.getActive());
+                    index.put(sensor);
+                } else if (operation < 8) {
+                    sensor.setSensorType(randomType(random));
+                    index.put(sensor);
+                } else {
+                    index.remove(sensor.getSensorId());
+                }
+            }
+            assertCountsMatchScan();
+        }
+    }
+
+    private static SensorType randomType(Random random) {
+        return SensorType.values()[random.nextInt(SensorType.values().length)];
+    }
+
+    private void assertCountsMatchScan() {
+        int total = 0;
+        int[] byType = new int[SensorType.values().length];
+        Set<Sensor> active = new HashSet<>();
+        for (Sensor sensor : index.sortedView()) {
+            if (sensor.getActive()) {
+                active.add(sensor);
+                total++;
+                byType[sensor.getSensorType().ordinal()]++;
+            }
+        }
+        assertEquals(total, index.activeCount());
+        assertEquals(active, new HashSet<>(index.activeSensors()));
+        for (SensorType type : SensorType.values()) {
+            assertEquals(byType[type.ordinal()], index.activeCount(type));
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package org.example.catpoint.security.data;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class SensorSnapshotTest {
+
+    @TempDir
+    Path directory;
+
+    @Mock
+    SecurityRepository repository;
+
+    private Set<Sensor> getSensors(int count) {
+        Set<Sensor> sensors = new TreeSet<>();
+        for (int i = 0; i < count; i++) {
+            Sensor sensor = new Sensor("sensor " + (i % 3), SensorType.values()[i % SensorType.values().length]);
+            sensor.setActive(i % 2 == 0);
+            sensors.add(sensor);
+        }
+        return sensors;
+    }
+
+    @Test
+    public void writeThenOpenAllFieldsRoundTrip() throws IOException {
+        Path file = directory.resolve("state.bin");
+        List<Sensor> sensors = List.copyOf(getSensors(50));
+        SensorSnapshot.write(file, sensors, AlarmStatus.PENDING_ALARM, ArmingStatus.ARMED_HOME);
+
+        SensorSnapshot snapshot = SensorSnapshot.open(file);
+        assertEquals(50, snapshot.size());
+        assertEquals(AlarmStatus.PENDING_ALARM, snapshot.getAlarmStatus());
+        assertEquals(ArmingStatus.ARMED_HOME, snapshot.getArmingStatus());
+        for (int i = 0; i < sensors.size(); i++) {
+            Sensor expected = sensors.get(i);
+            Sensor actual = snapshot.get(i);
+            assertEquals(expected.getSensorId(), actual.getSensorId());
+            assertEquals(expected.getName(), actual.getName());
+            assertEquals(expected.getSensorType(), actual.getSensorType());
+            assertEquals(expected.getActive(), actual.getActive());
+        }
+    }
+
+    @Test
+    public void getSensorTwiceMaterializedOnceAndNamesShared() throws IOException {
+        Path file = directory.resolve("state.bin");
+        SensorSnapshot.write(file, getSensors(9), AlarmStatus.NO_ALARM, ArmingStatus.DISARMED);
+
+        SensorSnapshot snapshot = SensorSnapshot.open(file);
+        assertSame(snapshot.get(0), snapshot.get(0));
+        assertSame(snapshot.get(0).getName(), snapshot.get(1).getName());
+    }
+
+    @Test
+    public void recordAccessorsReadWithoutMaterializing() throws IOException {
+        Path file = directory.resolve("state.bin");
+        Sensor sensor = new Sensor("window", SensorType.WINDOW);
+        sensor.setActive(true);
+        SensorSnapshot.write(file, List.of(sensor), AlarmStatus.NO_ALARM, ArmingStatus.DISARMED);
+
+        SensorSnapshot snapshot = SensorSnapshot.open(file);
+        assertEquals(sensor.getSensorId(), snapshot.getSensorId(0));
+        assertEquals(SensorType.WINDOW, snapshot.getSensorType(0));
+        assertTrue(snapshot.isActive(0));
+        assertThrows(IndexOutOfBoundsException.class, () -> snapshot.get(1));
+    }
+
+    @Test
+    public void openFileWithoutSnapshotHeaderThrows() throws IOException {
+        Path file = directory.resolve("state.bin");
+        Files.write(file, "[{\"name\":\"door\"}]".getBytes());
+        assertThrows(IOException.class, () -> SensorSnapshot.open(file));
+    }
+
+    @Test
+    public void migrateFromRepositoryEventLogRepositoryStartsWithSameState() throws IOException {
+        Set<Sensor> sensors = getSensors(12);
+        when(repository.getSensors()).thenReturn(sensors);
+        when(repository.getAlarmStatus()).thenReturn(AlarmStatus.ALARM);
+        when(repository.getArmingStatus()).thenReturn(ArmingStatus.ARMED_AWAY);
+
+        try (EventLogSecurityRepositoryImpl migrated = EventLogSecurityRepositoryImpl.migrateFrom(() -> repository, directory)) {
+            assertEquals(sensors, migrated.getSensors());
+            assertEquals(AlarmStatus.ALARM, migrated.getAlarmStatus());
+            assertEquals(ArmingStatus.ARMED_AWAY, migrated.getArmingStatus());
+        }
+    }
+
+    @Test
+    public void migrateFromExistingStateSourceNotCreated() throws IOException {
+        try (EventLogSecurityRepositoryImpl repository = new EventLogSecurityRepositoryImpl(directory)) {
+            repository.addSensor(new Sensor("door", SensorType.DOOR));
+        }
+        try (EventLogSecurityRepositoryImpl reopened = EventLogSecurityRepositoryImpl.migrateFrom(
+                () -> fail("source created although the directory already holds state"), directory)) {
+            assertEquals(1, reopened.getSensorCount());
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package org.example.catpoint.security.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void emptyHistogramReportsZero() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getValueAtPercentile(99));
+        assertEquals(0.0, histogram.getMeanNanos());
+    }
+
+    @Test
+    public void smallValuesRecordedExactly() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 50; i++) {
+            histogram.record(i);
+        }
+        assertEquals(25, histogram.getValueAtPercentile(50));
+        assertEquals(50, histogram.getValueAtPercentile(100));
+        assertEquals(25.5, histogram.getMeanNanos());
+    }
+
+    @Test
+    public void percentilesWithinThreePercentAcrossRange() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        Random random = new Random(7);
+        List<Long> values = new ArrayList<>();
+        for (int i = 0; i < 100_000; i++) {
+            //from a microsecond to about ten seconds
+            long value = (long) Math.pow(10, 3 + random.nextDouble() * 7);
+            values.add(value);
+            histogram.record(value);
+        }
+        values.sort(null);
+        for (double percentile : new double[]{50, 90, 99, 99.9}) {
+            long exact = values.get((int) Math.ceil(percentile / 100 * values.size()) - 1);
+            long reported = histogram.getValueAtPercentile(percentile);
+            assertEquals(exact, reported, exact * 0.032, "p" + percentile);
+        }
+        assertEquals(values.get(values.size() - 1), histogram.getMaxNanos());
+    }
+
+    @Test
+    public void bucketsCoverEveryValue() {
+        for (long value : new long[]{0, 63, 64, 65, 1_000_000, Long.MAX_VALUE / 3, Long.MAX_VALUE}) {
+            int index = LatencyHistogram.index(value);
+            assertTrue(LatencyHistogram.highestValueIn(index) >= value, "value " + value);
+            assertTrue(index == 0 || LatencyHistogram.highestValueIn(index - 1) < value, "value " + value);
+        }
+    }
+
+    @Test
+    public void concurrentRecordingLosesNothing() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> tasks = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            tasks.add(executor.submit(() -> {
+                for (int i = 0; i < 100_000; i++) {
+                    histogram.record(i % 1000);
+                }
+            }));
+        }
+        for (Future<?> task : tasks) {
+            task.get();
+        }
+        executor.shutdown();
+        assertEquals(800_000, histogram.getCount());
+        assertEquals(999, histogram.getMaxNanos());
+    }
+}
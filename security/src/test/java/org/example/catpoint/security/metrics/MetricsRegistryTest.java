@@ -0,0 +1,66 @@
+package org.example.catpoint.security.metrics;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import javax.management.AttributeNotFoundException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MetricsRegistryTest {
+
+    private static final String NAME = "registry-test";
+
+    private final MetricsRegistry registry = new MetricsRegistry();
+    private final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+    @AfterEach
+    private void tearDown() {
+        registry.unregisterMBean(NAME);
+    }
+
+    @Test
+    public void sameNameSameMetric() {
+        assertSame(registry.histogram("scan"), registry.histogram("scan"));
+        assertSame(registry.counter("alarms"), registry.counter("alarms"));
+    }
+
+    @Test
+    public void metricsReadableOverJmx() throws Exception {
+        registry.counter("sensors.activated").add(3);
+        LatencyHistogram histogram = registry.histogram("processImage.total");
+        histogram.record(1_000);
+        histogram.record(2_000);
+        registry.registerMBean(NAME);
+        ObjectName objectName = MetricsRegistry.objectName(NAME);
+
+        assertEquals(3L, server.getAttribute(objectName, "sensors.activated"));
+        assertEquals(2L, server.getAttribute(objectName, "processImage.total.count"));
+        assertEquals(2_000L, server.getAttribute(objectName, "processImage.total.maxNanos"));
+        assertEquals(1_500.0, server.getAttribute(objectName, "processImage.total.meanNanos"));
+        assertThrows(AttributeNotFoundException.class, () -> server.getAttribute(objectName, "processImage.total.p42Nanos"));
+    }
+
+    @Test
+    public void metricsCreatedAfterRegistrationListed() throws Exception {
+        registry.registerMBean(NAME);
+        registry.histogram("repository.eventLog.write").record(10);
+
+        Set<String> attributes = Arrays.stream(server.getMBeanInfo(MetricsRegistry.objectName(NAME)).getAttributes())
+                .map(MBeanAttributeInfo::getName).collect(Collectors.toSet());
+        assertTrue(attributes.contains("repository.eventLog.write.p99Nanos"));
+    }
+
+    @Test
+    public void registeringSameNameTwiceRefused() {
+        registry.registerMBean(NAME);
+        assertThrows(IllegalStateException.class, () -> new MetricsRegistry().registerMBean(NAME));
+    }
+}
@@ -0,0 +1,73 @@
+package org.example.catpoint.security.service;
+
+import org.example.catpoint.image.service.DetectionResult;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CatDetectionTrackerTest {
+
+    private static final long MAX_SKIP = 1_000;
+
+    private CatDetectionTracker tracker;
+    private long now;
+
+    @BeforeEach
+    private void setUp() {
+        tracker = new CatDetectionTracker(50.0f, 35.0f, 2, 5.0f, MAX_SKIP);
+    }
+
+    private boolean scan(float confidence) {
+        return tracker.update(new DetectionResult(confidence >= 35.0f, confidence), ++now);
+    }
+
+    @Test
+    public void catReportedFromEnterConfidenceAndClearedBelowExitConfidence() {
+        assertFalse(scan(45.0f));
+        assertTrue(scan(50.0f));
+        assertTrue(scan(40.0f));
+        assertTrue(scan(35.0f));
+        assertFalse(scan(34.9f));
+        assertFalse(scan(49.0f));
+    }
+
+    @Test
+    public void resultWithoutConfidenceTakenAtFaceValue() {
+        assertTrue(tracker.update(new DetectionResult(true, Float.NaN), ++now));
+        assertFalse(tracker.update(new DetectionResult(false, Float.NaN), ++now));
+        assertTrue(tracker.shouldScan(now));
+    }
+
+    @Test
+    public void agreeingClearFramesAllowScansToBeSkippedUntilMaxSkip() {
+        scan(90.0f);
+        scan(92.0f);
+        assertTrue(tracker.shouldScan(now));
+        scan(89.0f);
+
+        assertFalse(tracker.shouldScan(now + 1));
+        assertTrue(tracker.shouldScan(now + MAX_SKIP));
+    }
+
+    @Test
+    public void agreeingFramesInsideBandNeverStable() {
+        for (int i = 0; i < 10; i++) {
+            scan(42.0f);
+        }
+
+        assertTrue(tracker.shouldScan(now));
+    }
+
+    @Test
+    public void confidenceJumpResetsStability() {
+        scan(10.0f);
+        scan(11.0f);
+        scan(12.0f);
+        assertFalse(tracker.shouldScan(now));
+
+        scan(30.0f);
+
+        assertTrue(tracker.shouldScan(now));
+    }
+}
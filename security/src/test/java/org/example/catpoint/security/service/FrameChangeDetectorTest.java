@@ -0,0 +1,124 @@
+package org.example.catpoint.security.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FrameChangeDetectorTest {
+
+    private FrameChangeDetector detector;
+
+    @BeforeEach
+    private void setUp() {
+        detector = new FrameChangeDetector();
+    }
+
+    private static BufferedImage frame(int type, Color background, int squareX) {
+        BufferedImage image = new BufferedImage(320, 240, type);
+        Graphics2D g = image.createGraphics();
+        g.setColor(background);
+        g.fillRect(0, 0, 320, 240);
+        g.setColor(Color.WHITE);
+        g.fillRect(squareX, 80, 60, 60);
+        g.dispose();
+        return image;
+    }
+
+    @Test
+    public void firstFrameAlwaysChanged() {
+        assertTrue(detector.hasChanged(frame(BufferedImage.TYPE_INT_RGB, Color.DARK_GRAY, 20)));
+    }
+
+    @Test
+    public void identicalFrameNotChanged() {
+        detector.hasChanged(frame(BufferedImage.TYPE_INT_RGB, Color.DARK_GRAY, 20));
+        assertFalse(detector.hasChanged(frame(BufferedImage.TYPE_INT_RGB, Color.DARK_GRAY, 20)));
+    }
+
+    @Test
+    public void sensorNoiseNotChanged() {
+        BufferedImage reference = frame(BufferedImage.TYPE_INT_RGB, Color.DARK_GRAY, 20);
+        BufferedImage noisy = frame(BufferedImage.TYPE_INT_RGB, Color.DARK_GRAY, 20);
+        Random random = new Random(7);
+        for (int y = 0; y < noisy.getHeight(); y++) {
+            for (int x = 0; x < noisy.getWidth(); x++) {
+                int rgb = noisy.getRGB(x, y);
+                int delta = random.nextInt(9) - 4;
+                int r = Math.max(0, Math.min(255, ((rgb >> 16) & 0xFF) + delta));
+                noisy.setRGB(x, y, (rgb & 0xFF00FFFF) | (r << 16));
+            }
+        }
+        detector.hasChanged(reference);
+        assertFalse(detector.hasChanged(noisy));
+    }
+
+    @Test
+    public void movedObjectChanged() {
+        detector.hasChanged(frame(BufferedImage.TYPE_INT_RGB, Color.DARK_GRAY, 20));
+        assertTrue(detector.hasChanged(frame(BufferedImage.TYPE_INT_RGB, Color.DARK_GRAY, 200)));
+    }
+
+    @Test
+    public void slowDriftAgainstLastChangedFrameEventuallyChanged() {
+        detector.hasChanged(frame(BufferedImage.TYPE_INT_RGB, new Color(100, 100, 100), 20));
+        boolean changed = false;
+        for (int level = 104; level <= 140 && !changed; level += 4) {
+            changed = detector.hasChanged(frame(BufferedImage.TYPE_INT_RGB, new Color(level, level, level), 20));
+        }
+        assertTrue(changed);
+    }
+
+    @Test
+    public void differentSizeChanged() {
+        detector.hasChanged(new BufferedImage(320, 240, BufferedImage.TYPE_INT_RGB));
+        assertTrue(detector.hasChanged(new BufferedImage(640, 480, BufferedImage.TYPE_INT_RGB)));
+    }
+
+    @Test
+    public void emptyFrameChangedAndNotAdopted() {
+        detector.hasChanged(frame(BufferedImage.TYPE_INT_RGB, Color.DARK_GRAY, 20));
+        assertTrue(detector.hasChanged(new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB) {
+            @Override
+            public int getWidth() {
+                return 0;
+            }
+        }));
+        assertFalse(detector.hasChanged(frame(BufferedImage.TYPE_INT_RGB, Color.DARK_GRAY, 20)));
+    }
+
+    @Test
+    public void otherImageTypesCompared() {
+        int[] types = {BufferedImage.TYPE_3BYTE_BGR, BufferedImage.TYPE_INT_ARGB,
+                BufferedImage.TYPE_BYTE_GRAY, BufferedImage.TYPE_BYTE_INDEXED};
+        for (int type : types) {
+            FrameChangeDetector typed = new FrameChangeDetector();
+            typed.hasChanged(frame(type, Color.DARK_GRAY, 20));
+            assertFalse(typed.hasChanged(frame(type, Color.DARK_GRAY, 20)), "type " + type);
+            assertTrue(typed.hasChanged(frame(type, Color.DARK_GRAY, 200)), "type " + type);
+        }
+    }
+
+    @Test
+    public void resetNextFrameChanged() {
+        detector.hasChanged(frame(BufferedImage.TYPE_INT_RGB, Color.DARK_GRAY, 20));
+        detector.reset();
+        assertTrue(detector.hasChanged(frame(BufferedImage.TYPE_INT_RGB, Color.DARK_GRAY, 20)));
+    }
+
+    @Test
+    public void skipRatioCountsUnchangedFrames() {
+        assertEquals(0.0, detector.getSkipRatio());
+        for (int i = 0; i < 4; i++) {
+            detector.hasChanged(frame(BufferedImage.TYPE_INT_RGB, Color.DARK_GRAY, 20));
+        }
+        assertEquals(4, detector.getFramesChecked());
+        assertEquals(3, detector.getFramesSkipped());
+        assertEquals(0.75, detector.getSkipRatio());
+    }
+}
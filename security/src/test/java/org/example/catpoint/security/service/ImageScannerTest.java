@@ -0,0 +1,139 @@
+package org.example.catpoint.security.service;
+
+import org.example.catpoint.image.service.DetectionResult;
+import org.example.catpoint.image.service.ImageService;
+import org.example.catpoint.image.service.MicroBatchDispatcher;
+import org.example.catpoint.security.metrics.LatencyHistogram;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.awt.image.BufferedImage;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyFloat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class ImageScannerTest {
+
+    @Mock
+    ImageService imageService;
+
+    private final BufferedImage first = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB);
+    private final BufferedImage second = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB);
+    private final DetectionResult cat = new DetectionResult(true, 90.0f);
+    private final DetectionResult noCat = new DetectionResult(false, 5.0f);
+
+    @Test
+    public void submitImageResultDeliveredWithoutBlockingCaller() throws Exception {
+        when(imageService.classify(eq(first), anyFloat())).thenReturn(cat);
+        ImageScanner scanner = new ImageScanner(imageService, 1, Duration.ofSeconds(5), new LatencyHistogram());
+        assertSame(cat, scanner.submit("camera", first, 50.0f).get(2, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void newerFrameSubmittedOlderScanCancelled() throws Exception {
+        CountDownLatch firstStarted = new CountDownLatch(1);
+        when(imageService.classify(eq(first), anyFloat())).thenAnswer(invocation -> {
+            firstStarted.countDown();
+            Thread.sleep(10_000);
+            return cat;
+        });
+        when(imageService.classify(eq(second), anyFloat())).thenReturn(noCat);
+        ImageScanner scanner = new ImageScanner(imageService, 2, Duration.ofSeconds(5), new LatencyHistogram());
+
+        CompletableFuture<DetectionResult> older = scanner.submit("camera", first, 50.0f);
+        assertTrue(firstStarted.await(2, TimeUnit.SECONDS));
+        CompletableFuture<DetectionResult> newer = scanner.submit("camera", second, 50.0f);
+
+        ExecutionException failure = assertThrows(ExecutionException.class, () -> older.get(2, TimeUnit.SECONDS));
+        assertTrue(failure.getCause() instanceof java.util.concurrent.CancellationException);
+        assertSame(noCat, newer.get(2, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void scanExceedsTimeoutLastKnownResultReturned() throws Exception {
+        when(imageService.classify(eq(first), anyFloat())).thenReturn(cat);
+        when(imageService.classify(eq(second), anyFloat())).thenAnswer(invocation -> {
+            Thread.sleep(10_000);
+            return noCat;
+        });
+        ImageScanner scanner = new ImageScanner(imageService, 1, Duration.ofMillis(200), new LatencyHistogram());
+
+        assertSame(cat, scanner.submit("camera", first, 50.0f).get(2, TimeUnit.SECONDS));
+        assertSame(cat, scanner.submit("camera", second, 50.0f).get(2, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void framesFromDifferentCamerasScannedInParallel() throws Exception {
+        CountDownLatch bothStarted = new CountDownLatch(2);
+        when(imageService.classify(eq(first), anyFloat())).thenAnswer(invocation -> {
+            bothStarted.countDown();
+            bothStarted.await(2, TimeUnit.SECONDS);
+            return cat;
+        });
+        when(imageService.classify(eq(second), anyFloat())).thenAnswer(invocation -> {
+            bothStarted.countDown();
+            bothStarted.await(2, TimeUnit.SECONDS);
+            return noCat;
+        });
+        ImageScanner scanner = new ImageScanner(imageService, 2, Duration.ofSeconds(5), new LatencyHistogram());
+
+        CompletableFuture<DetectionResult> front = scanner.submit("front", first, 50.0f);
+        CompletableFuture<DetectionResult> back = scanner.submit("back", second, 50.0f);
+
+        assertSame(cat, front.get(2, TimeUnit.SECONDS));
+        assertSame(noCat, back.get(2, TimeUnit.SECONDS));
+        assertEquals(0, bothStarted.getCount());
+    }
+
+    @Test
+    public void tooManyScansInFlightNewFrameRejected() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        when(imageService.classify(eq(first), anyFloat())).thenAnswer(invocation -> {
+            release.await(2, TimeUnit.SECONDS);
+            return cat;
+        });
+        ImageScanner scanner = new ImageScanner(imageService, 1, Duration.ofSeconds(5), new LatencyHistogram());
+
+        CompletableFuture<DetectionResult> running = scanner.submit("front", first, 50.0f);
+        ExecutionException failure = assertThrows(ExecutionException.class,
+                () -> scanner.submit("back", second, 50.0f).get(2, TimeUnit.SECONDS));
+        assertTrue(failure.getCause() instanceof java.util.concurrent.RejectedExecutionException);
+
+        release.countDown();
+        assertSame(cat, running.get(2, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void framesFromDifferentCamerasClassifiedInOneBatch() throws Exception {
+        //the scans reach the dispatcher in either order
+        when(imageService.classifyBatch(anyList(), eq(35.0f))).thenAnswer(invocation ->
+                invocation.<List<BufferedImage>>getArgument(0).stream().map(image -> image == first ? cat : noCat).toList());
+        MicroBatchDispatcher batcher = new MicroBatchDispatcher(imageService, 35.0f, Duration.ofSeconds(1), 2);
+        ImageScanner scanner = new ImageScanner(imageService, batcher, 2, Duration.ofSeconds(5), new LatencyHistogram());
+
+        CompletableFuture<DetectionResult> front = scanner.submit("front", first, 35.0f);
+        //the second frame fills the batch, so it is classified without waiting out the window
+        CompletableFuture<DetectionResult> back = scanner.submit("back", second, 35.0f);
+
+        assertSame(cat, front.get(2, TimeUnit.SECONDS));
+        assertSame(noCat, back.get(2, TimeUnit.SECONDS));
+        verify(imageService).classifyBatch(anyList(), eq(35.0f));
+        verify(imageService, never()).classify(any(), anyFloat());
+        batcher.close();
+    }
+}
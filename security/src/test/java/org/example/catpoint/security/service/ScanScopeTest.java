@@ -0,0 +1,74 @@
+package org.example.catpoint.security.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ScanScopeTest {
+
+    @Test
+    public void subtasksFinishJoinReturnsResults() throws Exception {
+        try (ScanScope scope = new ScanScope(Duration.ofSeconds(5))) {
+            Future<String> first = scope.fork(() -> "first");
+            Future<String> second = scope.fork(() -> {
+                Thread.sleep(20);
+                return "second";
+            });
+            scope.join();
+            assertEquals("first", first.get());
+            assertEquals("second", second.get());
+        }
+    }
+
+    @Test
+    public void subtasksRunOnVirtualThreads() throws Exception {
+        try (ScanScope scope = new ScanScope(Duration.ofSeconds(5))) {
+            Future<Boolean> virtual = scope.fork(() -> Thread.currentThread().isVirtual());
+            scope.join();
+            assertTrue(virtual.get());
+        }
+    }
+
+    @Test
+    public void deadlinePassesSubtaskInterruptedAndStoppedByClose() throws Exception {
+        CountDownLatch interrupted = new CountDownLatch(1);
+        Future<String> slow;
+        try (ScanScope scope = new ScanScope(Duration.ofMillis(100))) {
+            slow = scope.fork(() -> {
+                try {
+                    Thread.sleep(10_000);
+                } catch (InterruptedException e) {
+                    interrupted.countDown();
+                    throw e;
+                }
+                return "late";
+            });
+            assertThrows(TimeoutException.class, scope::join);
+        }
+        assertTrue(slow.isCancelled());
+        assertTrue(interrupted.await(0, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void subtaskFailsOthersCancelled() throws Exception {
+        try (ScanScope scope = new ScanScope(Duration.ofSeconds(5))) {
+            Future<String> slow = scope.fork(() -> {
+                Thread.sleep(10_000);
+                return "late";
+            });
+            scope.fork(() -> {
+                throw new IllegalStateException("Service down");
+            });
+            ExecutionException failure = assertThrows(ExecutionException.class, scope::join);
+            assertTrue(failure.getCause() instanceof IllegalStateException);
+            assertTrue(slow.isCancelled());
+        }
+    }
+}
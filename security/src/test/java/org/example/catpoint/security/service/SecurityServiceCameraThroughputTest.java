@@ -0,0 +1,130 @@
+package org.example.catpoint.security.service;
+
+import org.example.catpoint.image.service.DetectionResult;
+import org.example.catpoint.image.service.ImageService;
+import org.example.catpoint.security.data.*;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs dozens of simulated cameras against one SecurityService, each sending frames as fast as its
+ * scans complete, and checks that the combined result is right and that scans run in parallel.
+ * The timing check depends on the machine, so it only runs with the performance profile.
+ */
+public class SecurityServiceCameraThroughputTest {
+
+    private static final int CAMERAS = 48;
+    private static final int FRAMES_PER_CAMERA = 10;
+    private static final long SCAN_MILLIS = 5;
+    private static final String CAT_CAMERA = "camera-0";
+
+    @TempDir
+    Path directory;
+
+    private EventLogSecurityRepositoryImpl repository;
+    private SecurityService securityService;
+    private ExecutorService cameras;
+    private volatile boolean catVisible = true;
+
+    /**
+     * Image service that takes a fixed time per scan and only sees a cat in the first camera's frames.
+     */
+    private final ImageService imageService = new ImageService() {
+        @Override
+        public boolean imageContainsCat(BufferedImage image, float confidenceThreshhold) {
+            return classify(image, confidenceThreshhold).containsCat();
+        }
+
+        @Override
+        public DetectionResult classify(BufferedImage image, float confidenceThreshhold) {
+            try {
+                Thread.sleep(SCAN_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            boolean cat = catVisible && image.getRGB(0, 0) == 0xFFFFFFFF;
+            return new DetectionResult(cat, cat ? 90.0f : 5.0f);
+        }
+    };
+
+    @BeforeEach
+    private void setUp() {
+        repository = new EventLogSecurityRepositoryImpl(directory);
+        securityService = new SecurityService(repository, imageService);
+        cameras = Executors.newFixedThreadPool(CAMERAS);
+    }
+
+    @AfterEach
+    private void tearDown() throws IOException {
+        cameras.shutdownNow();
+        repository.close();
+    }
+
+    private static BufferedImage frame(boolean cat) {
+        BufferedImage image = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB);
+        image.setRGB(0, 0, cat ? 0xFFFFFF : 0);
+        return image;
+    }
+
+    /**
+     * Each camera sends its frames one after another, waiting for each scan like a camera feed does.
+     * @return Time taken until every camera's frames were scanned
+     */
+    private Duration runCameras() throws Exception {
+        List<Future<?>> done = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int i = 0; i < CAMERAS; i++) {
+            String cameraId = "camera-" + i;
+            BufferedImage frame = frame(cameraId.equals(CAT_CAMERA));
+            done.add(cameras.submit(() -> {
+                for (int f = 0; f < FRAMES_PER_CAMERA; f++) {
+                    securityService.processImageAsync(cameraId, frame, Runnable::run).join();
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : done) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        return Duration.ofNanos(System.nanoTime() - start);
+    }
+
+    @Test
+    public void manyCamerasResultsCombined() throws Exception {
+        securityService.setArmingStatus(ArmingStatus.ARMED_HOME);
+
+        runCameras();
+        //one camera seeing a cat is enough, whatever the others report
+        assertEquals(AlarmStatus.ALARM, securityService.getAlarmStatus());
+
+        catVisible = false;
+        runCameras();
+        assertEquals(AlarmStatus.NO_ALARM, securityService.getAlarmStatus());
+    }
+
+    @Test
+    @Tag(SecurityServiceScaleTest.PERFORMANCE)
+    public void manyCamerasScannedInParallel() throws Exception {
+        Duration elapsed = runCameras();
+
+        Duration serial = Duration.ofMillis(SCAN_MILLIS * CAMERAS * FRAMES_PER_CAMERA);
+        assertTrue(elapsed.compareTo(serial.multipliedBy(3).dividedBy(4)) < 0,
+                "Scanning " + CAMERAS + " cameras took " + elapsed + ", one at a time would take " + serial);
+    }
+}
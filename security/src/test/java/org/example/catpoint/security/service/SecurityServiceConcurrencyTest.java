@@ -0,0 +1,151 @@
+package org.example.catpoint.security.service;
+
+import org.example.catpoint.image.service.ImageService;
+import org.example.catpoint.security.application.StatusListener;
+import org.example.catpoint.security.data.*;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.RepeatedTest;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Multi-threaded stress tests for the alarm state machine. Each test releases many threads at
+ * the same moment and checks invariants that only hold if transitions are applied atomically.
+ */
+public class SecurityServiceConcurrencyTest {
+
+    private static final int THREADS = 16;
+
+    @TempDir
+    Path directory;
+
+    private EventLogSecurityRepositoryImpl repository;
+    private SecurityService securityService;
+    private ExecutorService executor;
+    private final List<AlarmStatus> observedTransitions = Collections.synchronizedList(new ArrayList<>());
+
+    @BeforeEach
+    private void setUp() {
+        repository = new EventLogSecurityRepositoryImpl(directory);
+        securityService = new SecurityService(repository, mock(ImageService.class));
+        securityService.addStatusListener(new StatusListener() {
+            @Override
+            public void notify(AlarmStatus status) {
+                observedTransitions.add(status);
+            }
+
+            @Override
+            public void catDetected(boolean catDetected) {
+            }
+
+            @Override
+            public void sensorStatusChanged() {
+            }
+        });
+        executor = Executors.newFixedThreadPool(THREADS);
+    }
+
+    @AfterEach
+    private void tearDown() throws IOException {
+        executor.shutdownNow();
+        repository.close();
+    }
+
+    /**
+     * Runs the task on every thread at once and waits for all of them to finish.
+     */
+    private void runConcurrently(IntTask task) throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            int thread = t;
+            futures.add(executor.submit(() -> {
+                start.await();
+                task.run(thread);
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+    }
+
+    @RepeatedTest(20)
+    public void manySensorsActivatedAtOnceAlarmPassesThroughPendingExactlyOnce() throws Exception {
+        List<Sensor> sensors = new ArrayList<>();
+        for (int i = 0; i < THREADS * 4; i++) {
+            Sensor sensor = new Sensor("sensor " + i, SensorType.WINDOW);
+            sensors.add(sensor);
+            securityService.addSensor(sensor);
+        }
+        securityService.setArmingStatus(ArmingStatus.ARMED_AWAY);
+        observedTransitions.clear();
+
+        runConcurrently(thread -> {
+            for (int i = thread; i < sensors.size(); i += THREADS) {
+                securityService.changeSensorActivationStatus(sensors.get(i), true);
+            }
+        });
+
+        assertEquals(List.of(AlarmStatus.PENDING_ALARM, AlarmStatus.ALARM), observedTransitions);
+        assertEquals(AlarmStatus.ALARM, securityService.getAlarmStatus());
+        assertEquals(sensors.size(), repository.getActiveSensorCount());
+    }
+
+    @RepeatedTest(20)
+    public void pendingAlarmWithSensorsDeactivatedAtOnceReturnsToNoAlarmOnce() throws Exception {
+        List<Sensor> sensors = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            Sensor sensor = new Sensor("sensor " + i, SensorType.DOOR);
+            sensors.add(sensor);
+            securityService.addSensor(sensor);
+        }
+        securityService.setArmingStatus(ArmingStatus.ARMED_HOME);
+        sensors.forEach(sensor -> {
+            sensor.setActive(true);
+            repository.updateSensor(sensor);
+        });
+        securityService.setAlarmStatus(AlarmStatus.PENDING_ALARM);
+        observedTransitions.clear();
+
+        runConcurrently(thread -> securityService.changeSensorActivationStatus(sensors.get(thread), false));
+
+        assertEquals(List.of(AlarmStatus.NO_ALARM), observedTransitions);
+        assertEquals(0, repository.getActiveSensorCount());
+    }
+
+    @Test
+    public void oneSensorToggledFromManyThreadsActiveCountStaysConsistent() throws Exception {
+        Sensor sensor = new Sensor("door", SensorType.DOOR);
+        securityService.addSensor(sensor);
+
+        runConcurrently(thread -> {
+            for (int i = 0; i < 500; i++) {
+                securityService.changeSensorActivationStatus(sensor, (i + thread) % 2 == 0);
+            }
+        });
+
+        assertEquals(sensor.getActive() ? 1 : 0, repository.getActiveSensorCount());
+    }
+
+    @FunctionalInterface
+    private interface IntTask {
+        void run(int thread) throws Exception;
+    }
+}
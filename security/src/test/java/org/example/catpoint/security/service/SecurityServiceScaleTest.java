@@ -0,0 +1,152 @@
+package org.example.catpoint.security.service;
+
+import org.example.catpoint.image.service.ImageService;
+import org.example.catpoint.security.data.*;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Checks that adding, toggling and arming stay correct and fast with a very large number of
+ * sensors. The time bounds are loose, but far below what an operation that walks every sensor
+ * would take. They still depend on the machine, so those tests are tagged "performance" and only
+ * run with the performance profile.
+ */
+public class SecurityServiceScaleTest {
+
+    static final String PERFORMANCE = "performance";
+
+    private static final int SENSORS = 100_000;
+    private static final int TOGGLES = 20_000;
+    private static final Duration MAX_P99_LATENCY = Duration.ofMillis(5);
+    private static final Duration MAX_ARMING_TIME = Duration.ofSeconds(5);
+
+    @TempDir
+    Path directory;
+
+    private EventLogSecurityRepositoryImpl repository;
+    private SecurityService securityService;
+    private final List<Sensor> sensors = new ArrayList<>(SENSORS);
+
+    @BeforeEach
+    private void setUp() {
+        repository = new EventLogSecurityRepositoryImpl(directory, SENSORS, false);
+        securityService = new SecurityService(repository, mock(ImageService.class));
+        for (int i = 0; i < SENSORS; i++) {
+            sensors.add(new Sensor("Sensor " + i, SensorType.values()[i % SensorType.values().length]));
+        }
+    }
+
+    @AfterEach
+    private void tearDown() throws IOException {
+        repository.close();
+    }
+
+    private static Duration p99(long[] latencies) {
+        long[] sorted = latencies.clone();
+        Arrays.sort(sorted);
+        return Duration.ofNanos(sorted[(int) (sorted.length * 0.99)]);
+    }
+
+    private void addAll() {
+        for (Sensor sensor : sensors) {
+            securityService.addSensor(sensor);
+        }
+    }
+
+    /**
+     * @return How long each add took
+     */
+    private long[] addAllTimed() {
+        long[] latencies = new long[SENSORS];
+        for (int i = 0; i < SENSORS; i++) {
+            long start = System.nanoTime();
+            securityService.addSensor(sensors.get(i));
+            latencies[i] = System.nanoTime() - start;
+        }
+        return latencies;
+    }
+
+    /**
+     * Arms the system, then toggles every fifth sensor.
+     * @return How long each toggle took
+     */
+    private long[] toggleTimed() {
+        addAll();
+        securityService.setArmingStatus(ArmingStatus.ARMED_HOME);
+        long[] latencies = new long[TOGGLES];
+        for (int i = 0; i < TOGGLES; i++) {
+            Sensor sensor = sensors.get(i * (SENSORS / TOGGLES));
+            long start = System.nanoTime();
+            securityService.changeSensorActivationStatus(sensor, !sensor.getActive());
+            latencies[i] = System.nanoTime() - start;
+        }
+        return latencies;
+    }
+
+    /**
+     * Activates every sensor, then arms the system.
+     * @return How long arming took
+     */
+    private Duration armAllActiveTimed() {
+        addAll();
+        sensors.forEach(sensor -> sensor.setActive(true));
+        repository.updateSensors(sensors);
+        long start = System.nanoTime();
+        securityService.setArmingStatus(ArmingStatus.ARMED_AWAY);
+        return Duration.ofNanos(System.nanoTime() - start);
+    }
+
+    @Test
+    public void addSensor_manySensors_allStored() {
+        addAllTimed();
+        assertEquals(SENSORS, securityService.getSensorCount());
+    }
+
+    @Test
+    @Tag(PERFORMANCE)
+    public void addSensor_manySensors_latencyBounded() {
+        Duration p99 = p99(addAllTimed());
+        assertTrue(p99.compareTo(MAX_P99_LATENCY) < 0, "99th percentile add latency " + p99);
+    }
+
+    @Test
+    public void changeSensorActivationStatus_manySensors_activeCountAndAlarmKept() {
+        toggleTimed();
+        assertEquals(TOGGLES, repository.getActiveSensorCount());
+        assertEquals(AlarmStatus.ALARM, securityService.getAlarmStatus());
+    }
+
+    @Test
+    @Tag(PERFORMANCE)
+    public void changeSensorActivationStatus_manySensors_latencyBounded() {
+        Duration p99 = p99(toggleTimed());
+        assertTrue(p99.compareTo(MAX_P99_LATENCY) < 0, "99th percentile toggle latency " + p99);
+    }
+
+    @Test
+    public void setArmingStatus_allSensorsActive_deactivatesAll() {
+        armAllActiveTimed();
+        assertEquals(0, repository.getActiveSensorCount());
+        assertEquals(AlarmStatus.NO_ALARM, securityService.getAlarmStatus());
+    }
+
+    @Test
+    @Tag(PERFORMANCE)
+    public void setArmingStatus_allSensorsActive_deactivatesAllWithinBound() {
+        Duration elapsed = armAllActiveTimed();
+        assertTrue(elapsed.compareTo(MAX_ARMING_TIME) < 0, "Arming took " + elapsed);
+    }
+}
@@ -1,7 +1,12 @@
 package org.example.catpoint.security.service;
 
+import org.example.catpoint.image.service.DetectionResult;
+import org.example.catpoint.image.service.ImageInput;
 import org.example.catpoint.image.service.ImageService;
+import org.example.catpoint.security.application.StatusListener;
 import org.example.catpoint.security.data.*;
+import org.example.catpoint.security.metrics.LatencyHistogram;
+import org.example.catpoint.security.metrics.MetricsRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -16,10 +21,16 @@ import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.awt.image.BufferedImage;
 import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.assertAll;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -123,7 +134,7 @@ public class SecurityServiceTest {
     @Test
     public void changeAlarmStateImageContainingCatDetectedAndSystemArmedChangeToAlarmStatus(){
         when(repository.getArmingStatus()).thenReturn(ArmingStatus.ARMED_HOME);
-        when(imageService.imageContainsCat(any(), anyFloat())).thenReturn(true);
+        when(imageService.classify(any(), anyFloat())).thenReturn(new DetectionResult(true, 90.0f));
         securityService.processImage(mock(BufferedImage.class));
         ArgumentCaptor<AlarmStatus> alarmStatusArgumentCaptor = ArgumentCaptor.forClass(AlarmStatus.class);
         verify(repository, atMostOnce()).setAlarmStatus(alarmStatusArgumentCaptor.capture());
@@ -143,9 +154,8 @@ public class SecurityServiceTest {
 
     @Test
     public void changeAlarmStateNoCatImageIdentifiedAndSensorsAreInactiveChangeToAlarmStatus(){
-        Set<Sensor> inactiveSensors = getSensors(false, 4);
-        when(repository.getSensors()).thenReturn(inactiveSensors);
-        when(imageService.imageContainsCat(any(), anyFloat())).thenReturn(false);
+        when(repository.getActiveSensorCount()).thenReturn(0);
+        when(imageService.classify(any(), anyFloat())).thenReturn(new DetectionResult(false, 5.0f));
         securityService.processImage(mock(BufferedImage.class));
         ArgumentCaptor<AlarmStatus> alarmStatusArgumentCaptor = ArgumentCaptor.forClass(AlarmStatus.class);
         verify(repository, atMostOnce()).setAlarmStatus(alarmStatusArgumentCaptor.capture());
@@ -157,7 +167,7 @@ public class SecurityServiceTest {
     public void updateSensorsSystemArmedDeactivateAllSensors(ArmingStatus armingStatus){
         // If the system is armed, reset all sensors to inactive. (Case 10)
         Set<Sensor> sensors = getSensors(true, 4);
-        when(repository.getSensors()).thenReturn(sensors);
+        when(repository.getActiveSensors()).thenReturn(sensors);
         securityService.setArmingStatus(armingStatus);
         List<Executable> executableList = new ArrayList<>();
         sensors.forEach(it -> executableList.add(() -> assertEquals(it.getActive(), false)));
@@ -167,7 +177,7 @@ public class SecurityServiceTest {
     @Test
     public void changeAlarmStatusSystemArmedHomeAndCatDetectedChangeToAlarmStatus(){
         //If the system is armed-home while the camera shows a cat, set the alarm status to alarm.(Case 11)
-        when(imageService.imageContainsCat(any(), anyFloat())).thenReturn(true);
+        when(imageService.classify(any(), anyFloat())).thenReturn(new DetectionResult(true, 90.0f));
         when(repository.getArmingStatus()).thenReturn(ArmingStatus.ARMED_HOME);
         securityService.processImage(mock(BufferedImage.class));
         ArgumentCaptor<AlarmStatus> alarmStatusArgumentCaptor = ArgumentCaptor.forClass(AlarmStatus.class);
@@ -175,16 +185,242 @@ public class SecurityServiceTest {
         assertEquals(alarmStatusArgumentCaptor.getValue(), AlarmStatus.ALARM);
     }
 
+    @Test
+    public void processImageBorderlineConfidenceAfterCatDetectedAlarmNotCleared(){
+        when(imageService.classify(any(), anyFloat()))
+                .thenReturn(new DetectionResult(true, 90.0f), new DetectionResult(true, 40.0f));
+        when(repository.getArmingStatus()).thenReturn(ArmingStatus.ARMED_HOME);
+        securityService.processImage(mock(BufferedImage.class));
+        securityService.processImage(mock(BufferedImage.class));
+        verify(repository, never()).setAlarmStatus(AlarmStatus.NO_ALARM);
+        verify(repository, times(2)).setAlarmStatus(AlarmStatus.ALARM);
+    }
+
+    @Test
+    public void processFrameConfidenceStableFurtherFramesNotScanned(){
+        when(imageService.classify(any(), anyFloat())).thenReturn(new DetectionResult(false, 5.0f));
+        when(repository.getActiveSensorCount()).thenReturn(0);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(securityService.processFrame(mock(BufferedImage.class)));
+        }
+        assertFalse(securityService.processFrame(mock(BufferedImage.class)));
+        verify(imageService, times(4)).classify(any(), anyFloat());
+    }
+
+    @Test
+    public void processFrameSceneUnchangedFrameNotScanned(){
+        when(imageService.classify(any(), anyFloat())).thenReturn(new DetectionResult(false, 5.0f));
+        when(repository.getActiveSensorCount()).thenReturn(0);
+        BufferedImage frame = new BufferedImage(64, 48, BufferedImage.TYPE_INT_RGB);
+        assertTrue(securityService.processFrame(frame));
+        assertFalse(securityService.processFrame(new BufferedImage(64, 48, BufferedImage.TYPE_INT_RGB)));
+        verify(imageService, times(1)).classify(any(), anyFloat());
+        assertEquals(0.5, securityService.getFrameSkipRatio());
+    }
+
+    @Test
+    public void processEncodedImageCatDetectedAndSystemArmedHomeEncodedImagePassedToImageService(){
+        ImageInput encodedImage = ImageInput.ofEncoded(new byte[]{(byte) 0xFF, (byte) 0xD8});
+        when(imageService.classifyInput(same(encodedImage), anyFloat())).thenReturn(new DetectionResult(true, 90.0f));
+        when(repository.getArmingStatus()).thenReturn(ArmingStatus.ARMED_HOME);
+        securityService.processImage(encodedImage);
+        verify(imageService, never()).imageContainsCat(any(), anyFloat());
+        verify(repository).setAlarmStatus(AlarmStatus.ALARM);
+    }
+
+    @Test
+    public void processEncodedImageInsideConfidenceBandAfterCatAlarmNotCleared(){
+        ImageInput catImage = ImageInput.ofEncoded(new byte[]{(byte) 0xFF, (byte) 0xD8, 1});
+        ImageInput borderlineImage = ImageInput.ofEncoded(new byte[]{(byte) 0xFF, (byte) 0xD8, 2});
+        when(imageService.classifyInput(same(catImage), anyFloat())).thenReturn(new DetectionResult(true, 90.0f));
+        when(imageService.classifyInput(same(borderlineImage), anyFloat())).thenReturn(new DetectionResult(true, 40.0f));
+        when(repository.getArmingStatus()).thenReturn(ArmingStatus.ARMED_HOME);
+        securityService.processImage(catImage);
+        securityService.processImage(borderlineImage);
+        //once a cat is seen, results are requested down to the lower threshold
+        verify(imageService).classifyInput(borderlineImage, 35.0f);
+        verify(repository, never()).setAlarmStatus(AlarmStatus.NO_ALARM);
+    }
+
+    @Test
+    public void processImageOtherCameraStillSeesCatAlarmNotCleared(){
+        BufferedImage frontImage = mock(BufferedImage.class);
+        BufferedImage backImage = mock(BufferedImage.class);
+        when(imageService.classify(same(frontImage), anyFloat())).thenReturn(new DetectionResult(true, 90.0f));
+        when(imageService.classify(same(backImage), anyFloat())).thenReturn(new DetectionResult(false, 5.0f));
+        when(repository.getArmingStatus()).thenReturn(ArmingStatus.ARMED_HOME);
+        securityService.processImage("front", frontImage);
+        securityService.processImage("back", backImage);
+        verify(repository, never()).setAlarmStatus(AlarmStatus.NO_ALARM);
+        verify(repository, times(2)).setAlarmStatus(AlarmStatus.ALARM);
+    }
+
+    @Test
+    public void removeCameraOnlyCameraSeeingCatAndSensorsInactiveChangeToNoAlarm(){
+        when(imageService.classify(any(), anyFloat())).thenReturn(new DetectionResult(true, 90.0f));
+        when(repository.getActiveSensorCount()).thenReturn(0);
+        StatusListener listener = mock(StatusListener.class);
+        securityService.addStatusListener(listener);
+        securityService.processImage("front", mock(BufferedImage.class));
+        securityService.removeCamera("front");
+        verify(listener).catDetected(false);
+        verify(repository).setAlarmStatus(AlarmStatus.NO_ALARM);
+    }
+
     @Test
     public void changeAlarmStatusAlarmPendingAndAllSensorsInactiveChangeToNoAlarm(){
         Set<Sensor> allSensors = getSensors(false, 4);
         Sensor last = allSensors.iterator().next();
         last.setActive(true);
-        when(repository.getSensors()).thenReturn(allSensors);
+        when(repository.getActiveSensorCount()).thenReturn(0);
         when(repository.getAlarmStatus()).thenReturn(AlarmStatus.PENDING_ALARM);
         securityService.changeSensorActivationStatus(last, false);
         ArgumentCaptor<AlarmStatus> alarmStatusArgumentCaptor = ArgumentCaptor.forClass(AlarmStatus.class);
         verify(repository, atMostOnce()).setAlarmStatus(alarmStatusArgumentCaptor.capture());
         assertEquals(alarmStatusArgumentCaptor.getValue(), AlarmStatus.NO_ALARM);
     }
+
+    @Test
+    public void processImageAsyncCatDetectedAndSystemArmedHomeAlarmAppliedOnCallbackExecutor() throws Exception {
+        when(imageService.classify(any(), anyFloat())).thenReturn(new DetectionResult(true, 90.0f));
+        when(repository.getArmingStatus()).thenReturn(ArmingStatus.ARMED_HOME);
+        BlockingQueue<Runnable> callbacks = new LinkedBlockingQueue<>();
+        CompletableFuture<Boolean> result = securityService.processImageAsync(mock(BufferedImage.class), callbacks::add);
+
+        //nothing is applied until the callback executor runs the update
+        Runnable callback = callbacks.poll(2, TimeUnit.SECONDS);
+        verify(repository, never()).setAlarmStatus(any());
+        callback.run();
+
+        assertTrue(result.get(2, TimeUnit.SECONDS));
+        verify(repository).setAlarmStatus(AlarmStatus.ALARM);
+    }
+
+    @Test
+    public void processImageAsyncCameraRemovedWhileScanInFlightResultDropped() throws Exception {
+        when(imageService.classify(any(), anyFloat())).thenReturn(new DetectionResult(true, 90.0f));
+        StatusListener listener = mock(StatusListener.class);
+        securityService.addStatusListener(listener);
+        BlockingQueue<Runnable> callbacks = new LinkedBlockingQueue<>();
+        CompletableFuture<Boolean> result = securityService.processImageAsync("front", mock(BufferedImage.class),
+                callbacks::add);
+
+        //the scan has finished but its result has not been applied yet
+        Runnable callback = callbacks.poll(2, TimeUnit.SECONDS);
+        securityService.removeCamera("front");
+        callback.run();
+
+        assertFalse(result.get(2, TimeUnit.SECONDS));
+        verify(listener, never()).catDetected(anyBoolean());
+        verify(repository, never()).setAlarmStatus(any());
+    }
+
+    @Test
+    public void changeSensorActivationStatusSystemArmedListenersToldWhichSensorAndTransition(){
+        StatusListener listener = mock(StatusListener.class);
+        securityService.addStatusListener(listener);
+        when(repository.getArmingStatus()).thenReturn(ArmingStatus.ARMED_HOME);
+        when(repository.getAlarmStatus()).thenReturn(AlarmStatus.NO_ALARM);
+        securityService.changeSensorActivationStatus(sensor, true);
+        verify(listener).sensorActivated(sensor);
+        verify(listener).alarmStatusChanged(AlarmStatus.NO_ALARM, AlarmStatus.PENDING_ALARM);
+        verify(listener, never()).sensorStatusChanged();
+    }
+
+    @Test
+    public void addAndRemoveSensorListenersToldWhichSensor(){
+        StatusListener listener = mock(StatusListener.class);
+        securityService.addStatusListener(listener);
+        securityService.addSensor(sensor);
+        securityService.removeSensor(sensor);
+        verify(listener).sensorAdded(sensor);
+        verify(listener).sensorRemoved(sensor);
+    }
+
+    @Test
+    public void listenerWithOriginalMethodsOnlyStillNotified(){
+        List<String> calls = new ArrayList<>();
+        securityService.addStatusListener(new StatusListener() {
+            @Override
+            public void notify(AlarmStatus status) {
+                calls.add("notify " + status);
+            }
+
+            @Override
+            public void catDetected(boolean catDetected) {
+            }
+
+            @Override
+            public void sensorStatusChanged() {
+                calls.add("sensorStatusChanged");
+            }
+        });
+        when(repository.getArmingStatus()).thenReturn(ArmingStatus.ARMED_HOME);
+        securityService.setAlarmStatus(AlarmStatus.ALARM);
+        securityService.setArmingStatus(ArmingStatus.DISARMED);
+        securityService.addSensor(sensor);
+        assertEquals(List.of("notify ALARM", "notify NO_ALARM", "sensorStatusChanged"), calls);
+    }
+
+    @Test
+    public void sensorActivatedWhileArmedTransitionAndListenerTimeRecorded() {
+        MetricsRegistry metrics = new MetricsRegistry();
+        securityService = new SecurityService(repository, imageService, metrics);
+        securityService.addStatusListener(mock(StatusListener.class));
+        when(repository.getArmingStatus()).thenReturn(ArmingStatus.ARMED_HOME);
+        when(repository.getAlarmStatus()).thenReturn(AlarmStatus.NO_ALARM);
+
+        securityService.changeSensorActivationStatus(sensor, true);
+
+        assertEquals(1L, metrics.getCounterValues().get("sensors.activated"));
+        assertEquals(1L, metrics.getCounterValues().get("alarm.NO_ALARM.to.PENDING_ALARM"));
+        assertEquals(0L, metrics.getCounterValues().get("alarm.PENDING_ALARM.to.ALARM"));
+        assertEquals(1, metrics.histogram("listeners.sensor").getCount());
+        assertEquals(1, metrics.histogram("listeners.alarmStatus").getCount());
+    }
+
+    @Test
+    public void processImageImageServiceAndListenerTimeRecordedSeparately() {
+        MetricsRegistry metrics = new MetricsRegistry();
+        securityService = new SecurityService(repository, imageService, metrics);
+        when(imageService.classify(any(), anyFloat())).thenAnswer(invocation -> {
+            Thread.sleep(20);
+            return new DetectionResult(false, 5.0f);
+        });
+
+        securityService.processImage(mock(BufferedImage.class));
+
+        LatencyHistogram total = metrics.histogram("processImage.total");
+        LatencyHistogram service = metrics.histogram("processImage.imageService");
+        assertEquals(1, total.getCount());
+        assertEquals(1, service.getCount());
+        assertEquals(1, metrics.histogram("listeners.catDetected").getCount());
+        assertTrue(service.getMaxNanos() >= TimeUnit.MILLISECONDS.toNanos(20));
+        assertTrue(total.getMaxNanos() >= service.getMaxNanos());
+    }
+
+    @Test
+    public void olderGatewayReportForSensorSkipped() {
+        MetricsRegistry metrics = new MetricsRegistry();
+        securityService = new SecurityService(repository, imageService, metrics);
+        long mostSigBits = sensor.getSensorId().getMostSignificantBits();
+        long leastSigBits = sensor.getSensorId().getLeastSignificantBits();
+        when(repository.getSensor(mostSigBits, leastSigBits)).thenReturn(sensor);
+        when(repository.getArmingStatus()).thenReturn(ArmingStatus.DISARMED);
+        SensorStateBatch batch = new SensorStateBatch(2);
+
+        batch.add(mostSigBits, leastSigBits, true, 2_000);
+        assertEquals(1, securityService.applySensorStates(batch));
+        //reported before the state just applied, but delivered after it
+        batch.clear();
+        batch.add(mostSigBits, leastSigBits, false, 1_000);
+        assertEquals(0, securityService.applySensorStates(batch));
+
+        assertTrue(sensor.getActive());
+        assertEquals(1L, metrics.getCounterValues().get("sensors.staleReports"));
+        batch.clear();
+        batch.add(mostSigBits, leastSigBits, false, 3_000);
+        assertEquals(1, securityService.applySensorStates(batch));
+        assertFalse(sensor.getActive());
+    }
 }